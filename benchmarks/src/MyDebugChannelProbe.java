@@ -0,0 +1,39 @@
+import java.awt.Color;
+
+public class MyDebugChannelProbe implements bench.DebugChannelProbe {
+
+  private BufferedVisualizer visualizer;
+  private MyStrategy.DebugChannels channels;
+
+  @Override
+  public void setUp(String spec) {
+    visualizer =
+        new BufferedVisualizer() {
+          @Override
+          public void sync(int tickIndex) {
+            clearLayers();
+          }
+
+          @Override
+          public void close() {}
+        };
+    channels = new MyStrategy.DebugChannels(visualizer);
+    channels.configure(spec);
+    channels.startTick(0);
+  }
+
+  @Override
+  public double baseline(double x, double y) {
+    return x * y;
+  }
+
+  @Override
+  public double guarded(double x, double y) {
+    if (channels.walls.active) {
+      visualizer.fillRect(x, y, x + 20, y + 20, Color.pink);
+      visualizer.drawBeforeScene();
+      visualizer.sync(0);
+    }
+    return x * y;
+  }
+}
@@ -0,0 +1,54 @@
+import java.util.Random;
+
+public class MyRangeKernelProbe implements bench.RangeKernelProbe {
+
+  private static final double MAP_SIZE = 4000;
+  private static final double MAX_RANGE = 100;
+
+  private MyStrategy.RangeKernels kernels;
+  private int count;
+  private double[] x;
+  private double[] y;
+  private double[] range;
+  private int[] selected;
+
+  @Override
+  public void setUp(String name, int units) {
+    switch (name) {
+      case "scalar":
+        kernels = new MyStrategy.ScalarRangeKernels();
+        break;
+      case "vector":
+        kernels = new VectorRangeKernels();
+        break;
+      default:
+        throw new IllegalArgumentException("unknown kernels " + name);
+    }
+    Random random = new Random(units);
+    count = units;
+    x = new double[units];
+    y = new double[units];
+    range = new double[units];
+    selected = new int[units];
+    for (int i = 0; i < units; ++i) {
+      x[i] = MAP_SIZE * random.nextDouble();
+      y[i] = MAP_SIZE * random.nextDouble();
+      range[i] = MAX_RANGE * random.nextDouble();
+    }
+  }
+
+  @Override
+  public int selectInRange() {
+    return kernels.selectInRange(x, y, range, MAX_RANGE, count, x[0], y[0], selected);
+  }
+
+  @Override
+  public boolean anyInRange() {
+    return kernels.anyInRange(x, y, range, 0, count, -2 * MAX_RANGE, -2 * MAX_RANGE);
+  }
+
+  @Override
+  public int nearest() {
+    return kernels.nearest(x, y, count, MAP_SIZE / 2, MAP_SIZE / 2);
+  }
+}
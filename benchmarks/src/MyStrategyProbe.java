@@ -0,0 +1,376 @@
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import model.ActionType;
+import model.Faction;
+import model.Game;
+import model.Minion;
+import model.MinionType;
+import model.Move;
+import model.PlayerContext;
+import model.Projectile;
+import model.ProjectileType;
+import model.Status;
+import model.Unit;
+import model.Wizard;
+import model.World;
+
+public class MyStrategyProbe implements bench.StrategyProbe {
+
+  private static final double MIDDLE_LANE_HALF_WIDTH = 400;
+  private static final int ROLLOUT_TICKS = 30;
+
+  private MyStrategy.Brain brain;
+  private Wizard self;
+  private World world;
+  private Game game;
+  private MyStrategy.Square start;
+  private MyStrategy.Square goal;
+  private MyStrategy.Point walkingTarget;
+  private MyStrategy.Simulation snapshot;
+  private MyStrategy.Simulation simulation;
+  private Move candidate;
+  private MyStrategy.RolloutSearch rolloutSearch;
+  private List<Move> rolloutCandidates;
+  private World dodgeWorld;
+  private World shooterWorld;
+  private List<MyStrategy.Square> longPathGoals;
+
+  @Override
+  public int load(String logPath, String scenario) {
+    GameLog.Recording recording;
+    try {
+      recording = GameLog.read(logPath);
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+    List<PlayerContext> ticks = recording.getTicks();
+    game = recording.getGame();
+    int tick = pickTick(ticks, scenario);
+
+    for (int i = 0; i <= tick; ++i) {
+      PlayerContext playerContext = ticks.get(i);
+      Wizard wizard = playerContext.getWizards()[0];
+      if (brain == null) {
+        brain = new MyStrategy.Brain(wizard, playerContext.getWorld(), game);
+      }
+      brain.move(wizard, playerContext.getWorld(), game, new Move());
+    }
+
+    self = ticks.get(tick).getWizards()[0];
+    world = ticks.get(tick).getWorld();
+    walkingTarget = brain.field.getNextWaypoint();
+    start = MyStrategy.Square.containing(self);
+    goal = MyStrategy.Square.containing(walkingTarget);
+    snapshot = new MyStrategy.Simulation(self, world, game);
+    simulation = new MyStrategy.Simulation(snapshot);
+    candidate = new Move();
+    candidate.setSpeed(game.getWizardForwardSpeed());
+    candidate.setTurn(game.getWizardMaxTurnAngle() / 2);
+    candidate.setAction(ActionType.MAGIC_MISSILE);
+    return world.getTickIndex();
+  }
+
+  private int pickTick(List<PlayerContext> ticks, String scenario) {
+    int[] density = new int[ticks.size()];
+    for (int i = 0; i < ticks.size(); ++i) {
+      density[i] = countUnitsInVision(ticks.get(i));
+    }
+    switch (scenario) {
+      case "dense":
+        int best = 0;
+        int bestOnLane = -1;
+        for (int i = 0; i < ticks.size(); ++i) {
+          if (density[i] > density[best]) {
+            best = i;
+          }
+          if (isOnMiddleLane(ticks.get(i).getWizards()[0])
+              && (bestOnLane == -1 || density[i] > density[bestOnLane])) {
+            bestOnLane = i;
+          }
+        }
+        return bestOnLane != -1 ? bestOnLane : best;
+      case "median":
+        int[] sorted = density.clone();
+        Arrays.sort(sorted);
+        int median = sorted[sorted.length / 2];
+        for (int i = 0; i < ticks.size(); ++i) {
+          if (density[i] == median) {
+            return i;
+          }
+        }
+        return ticks.size() / 2;
+      default:
+        throw new IllegalArgumentException("unknown scenario " + scenario);
+    }
+  }
+
+  private int countUnitsInVision(PlayerContext playerContext) {
+    Wizard wizard = playerContext.getWizards()[0];
+    World world = playerContext.getWorld();
+    int count = 0;
+    for (Unit[] units :
+        new Unit[][] {world.getWizards(), world.getMinions(), world.getBuildings()}) {
+      for (Unit unit : units) {
+        if (wizard.getDistanceTo(unit) < wizard.getVisionRange()) {
+          ++count;
+        }
+      }
+    }
+    return count;
+  }
+
+  private boolean isOnMiddleLane(Wizard wizard) {
+    return Math.abs(wizard.getX() + wizard.getY() - game.getMapSize()) < MIDDLE_LANE_HALF_WIDTH;
+  }
+
+  @Override
+  public int findPath() {
+    List<MyStrategy.Square> path = brain.field.searchPath(start, goal);
+    return path.size();
+  }
+
+  @Override
+  public int findCachedPath() {
+    List<MyStrategy.Square> path = brain.field.findPath(start, goal);
+    return path == null ? 0 : path.size();
+  }
+
+  @Override
+  public int squaresOnLine() {
+    return (int) brain.field.getSquaresOnLine(start, goal).count();
+  }
+
+  @Override
+  public boolean lineClear() {
+    return brain.field.isLineClear(start, goal);
+  }
+
+  @Override
+  public void prepareLongPaths() {
+    double mapSize = game.getMapSize();
+    longPathGoals = new ArrayList<>();
+    for (MyStrategy.Point point :
+        new MyStrategy.Point[] {
+          brain.field.getPreviousWaypoint(),
+          brain.field.getFactionBaseWaypoint(),
+          new MyStrategy.Point(mapSize * 0.3, mapSize * 0.3),
+          new MyStrategy.Point(mapSize * 0.7, mapSize * 0.7),
+        }) {
+      longPathGoals.add(MyStrategy.Square.containing(point));
+    }
+  }
+
+  @Override
+  public int longPaths(boolean bidirectional) {
+    int squares = 0;
+    for (MyStrategy.Square longPathGoal : longPathGoals) {
+      squares += searchLongPath(longPathGoal, bidirectional).size();
+    }
+    return squares;
+  }
+
+  @Override
+  public String describeLongPaths(boolean bidirectional) {
+    StringBuilder sb = new StringBuilder();
+    for (MyStrategy.Square longPathGoal : longPathGoals) {
+      List<MyStrategy.Square> path = searchLongPath(longPathGoal, bidirectional);
+      MyStrategy.Square last = path.get(path.size() - 1);
+      int cost = 0;
+      for (int i = 1; i < path.size(); ++i) {
+        int dp = path.get(i).getP() - path.get(i - 1).getP();
+        int dq = path.get(i).getQ() - path.get(i - 1).getQ();
+        cost += dp * dp + dq * dq + brain.field.getDangerCost(path.get(i));
+      }
+      sb.append(start)
+          .append(" -> ")
+          .append(longPathGoal)
+          .append(": ")
+          .append(last.equals(longPathGoal) ? "reached" : "gave up at " + last)
+          .append(", ")
+          .append(path.size())
+          .append(" squares, cost ")
+          .append(cost)
+          .append('\n');
+    }
+    return sb.toString();
+  }
+
+  private List<MyStrategy.Square> searchLongPath(MyStrategy.Square end, boolean bidirectional) {
+    return bidirectional
+        ? brain.field.searchPathBidirectional(start, end)
+        : brain.field.searchPath(start, end);
+  }
+
+  @Override
+  public void fieldUpdate() {
+    // Field is lazy and the world does not change between calls, so update it directly.
+    brain.field.update(self, world, game);
+    brain.field.update();
+  }
+
+  @Override
+  public double dangerMapUpdate() {
+    brain.team.updateDangerMap();
+    return brain.team.dangerMap.get(start);
+  }
+
+  @Override
+  public double walkerGoTo() {
+    Move move = new Move();
+    brain.walker.goTo(walkingTarget, move);
+    return move.getSpeed() + move.getStrafeSpeed();
+  }
+
+  @Override
+  public Object shooterGetTarget() {
+    return brain.shooter.getTarget(self.getVisionRange());
+  }
+
+  @Override
+  public void prepareShooter(int minions) {
+    Random random = new Random(minions);
+    Faction enemy = self.getFaction() == Faction.ACADEMY ? Faction.RENEGADES : Faction.ACADEMY;
+    Minion[] units = Arrays.copyOf(world.getMinions(), world.getMinions().length + minions);
+    for (int i = 0; i < minions; ++i) {
+      double direction = 2 * Math.PI * random.nextDouble();
+      double distance = self.getVisionRange() * random.nextDouble();
+      double heading = 2 * Math.PI * random.nextDouble();
+      boolean fetish = i % 3 == 0;
+      units[units.length - minions + i] =
+          new Minion(
+              2000000 + i,
+              self.getX() + distance * Math.cos(direction),
+              self.getY() + distance * Math.sin(direction),
+              game.getMinionSpeed() * Math.cos(heading),
+              game.getMinionSpeed() * Math.sin(heading),
+              heading,
+              enemy,
+              game.getMinionRadius(),
+              1 + random.nextInt(game.getMinionLife()),
+              game.getMinionLife(),
+              new Status[0],
+              fetish ? MinionType.FETISH_BLOWDART : MinionType.ORC_WOODCUTTER,
+              game.getMinionVisionRange(),
+              fetish ? game.getDartDirectDamage() : game.getOrcWoodcutterDamage(),
+              fetish
+                  ? game.getFetishBlowdartActionCooldownTicks()
+                  : game.getOrcWoodcutterActionCooldownTicks(),
+              0);
+    }
+    shooterWorld =
+        new World(
+            world.getTickIndex(),
+            world.getTickCount(),
+            world.getWidth(),
+            world.getHeight(),
+            world.getPlayers(),
+            world.getWizards(),
+            units,
+            world.getProjectiles(),
+            world.getBonuses(),
+            world.getBuildings(),
+            world.getTrees());
+    brain.shooter.update(self, shooterWorld, game);
+    brain.shooter.update();
+  }
+
+  @Override
+  public void shooterUpdate() {
+    brain.shooter.update(self, shooterWorld, game);
+    brain.shooter.update();
+  }
+
+  @Override
+  public double brainMove() {
+    Move move = new Move();
+    brain.move(self, world, game, move);
+    return move.getSpeed() + move.getTurn();
+  }
+
+  @Override
+  public double simulationRollout() {
+    simulation.copyFrom(snapshot);
+    return simulation.evaluate(candidate, ROLLOUT_TICKS);
+  }
+
+  @Override
+  public void prepareRolloutSearch(int parallelism, int candidates) {
+    rolloutSearch = new MyStrategy.RolloutSearch(parallelism, ROLLOUT_TICKS);
+    rolloutCandidates = new ArrayList<>();
+    for (int i = 0; i < candidates; ++i) {
+      double direction = 2 * Math.PI * i / candidates;
+      Move move = new Move();
+      move.setSpeed(game.getWizardForwardSpeed() * Math.cos(direction));
+      move.setStrafeSpeed(game.getWizardStrafeSpeed() * Math.sin(direction));
+      move.setTurn(game.getWizardMaxTurnAngle() * ((i % 3) - 1));
+      move.setAction(i % 2 == 0 ? ActionType.MAGIC_MISSILE : null);
+      rolloutCandidates.add(move);
+    }
+  }
+
+  @Override
+  public int rolloutSearch() {
+    int before = rolloutSearch.getRollouts();
+    rolloutSearch.search(snapshot, rolloutCandidates, Long.MAX_VALUE);
+    return rolloutSearch.getRollouts() - before;
+  }
+
+  @Override
+  public void shutdownRolloutSearch() {
+    rolloutSearch.shutdown();
+  }
+
+  @Override
+  public void prepareDodge(int projectiles) {
+    Random random = new Random(projectiles);
+    Faction enemy = self.getFaction() == Faction.ACADEMY ? Faction.RENEGADES : Faction.ACADEMY;
+    Projectile[] incoming = new Projectile[projectiles];
+    for (int i = 0; i < projectiles; ++i) {
+      boolean dart = i % 4 == 3;
+      double speed = dart ? game.getDartSpeed() : game.getMagicMissileSpeed();
+      double range = dart ? game.getFetishBlowdartAttackRange() : game.getWizardCastRange();
+      double direction = 2 * Math.PI * random.nextDouble();
+      double distance = range * random.nextDouble();
+      double aim = direction + Math.PI + 0.2 * (random.nextDouble() - 0.5);
+      incoming[i] =
+          new Projectile(
+              1000000 + i,
+              self.getX() + distance * Math.cos(direction),
+              self.getY() + distance * Math.sin(direction),
+              speed * Math.cos(aim),
+              speed * Math.sin(aim),
+              aim,
+              enemy,
+              dart ? game.getDartRadius() : game.getMagicMissileRadius(),
+              dart ? ProjectileType.DART : ProjectileType.MAGIC_MISSILE,
+              -1,
+              -1);
+    }
+    dodgeWorld =
+        new World(
+            world.getTickIndex(),
+            world.getTickCount(),
+            world.getWidth(),
+            world.getHeight(),
+            world.getPlayers(),
+            world.getWizards(),
+            world.getMinions(),
+            incoming,
+            world.getBonuses(),
+            world.getBuildings(),
+            world.getTrees());
+  }
+
+  @Override
+  public int dodge() {
+    brain.dodger.update(self, dodgeWorld, game);
+    Move move = new Move();
+    move.setSpeed(game.getWizardForwardSpeed());
+    return brain.dodger.dodge(move).ordinal();
+  }
+}
@@ -0,0 +1,111 @@
+import java.util.Random;
+
+public class MyTrigProbe implements bench.TrigProbe {
+
+  private static final double MAP_SIZE = 4000;
+
+  private boolean fast;
+  private int count;
+  private double[] angle;
+  private double[] x;
+  private double[] y;
+
+  @Override
+  public void setUp(String impl, int count) {
+    switch (impl) {
+      case "math":
+        fast = false;
+        break;
+      case "fast":
+        fast = true;
+        break;
+      default:
+        throw new IllegalArgumentException("unknown implementation " + impl);
+    }
+    Random random = new Random(count);
+    this.count = count;
+    angle = new double[count];
+    x = new double[count];
+    y = new double[count];
+    for (int i = 0; i < count; ++i) {
+      angle[i] = drawAngle(random);
+      x[i] = drawOffset(random);
+      y[i] = drawOffset(random);
+    }
+  }
+
+  @Override
+  public double sin() {
+    double sum = 0;
+    for (int i = 0; i < count; ++i) {
+      sum += fast ? MyStrategy.FastMath.sin(angle[i]) : Math.sin(angle[i]);
+    }
+    return sum;
+  }
+
+  @Override
+  public double cos() {
+    double sum = 0;
+    for (int i = 0; i < count; ++i) {
+      sum += fast ? MyStrategy.FastMath.cos(angle[i]) : Math.cos(angle[i]);
+    }
+    return sum;
+  }
+
+  @Override
+  public double atan2() {
+    double sum = 0;
+    for (int i = 0; i < count; ++i) {
+      sum += fast ? MyStrategy.FastMath.atan2(y[i], x[i]) : Math.atan2(y[i], x[i]);
+    }
+    return sum;
+  }
+
+  @Override
+  public double hypot() {
+    double sum = 0;
+    for (int i = 0; i < count; ++i) {
+      sum += fast ? MyStrategy.FastMath.hypot(x[i], y[i]) : Math.hypot(x[i], y[i]);
+    }
+    return sum;
+  }
+
+  @Override
+  public double maxError(String function, int count) {
+    Random random = new Random(count);
+    double max = 0;
+    for (int i = 0; i < count; ++i) {
+      double a = drawAngle(random);
+      double px = drawOffset(random);
+      double py = drawOffset(random);
+      double error;
+      switch (function) {
+        case "sin":
+          error = Math.abs(MyStrategy.FastMath.sin(a) - StrictMath.sin(a));
+          break;
+        case "cos":
+          error = Math.abs(MyStrategy.FastMath.cos(a) - StrictMath.cos(a));
+          break;
+        case "atan2":
+          error = Math.abs(MyStrategy.FastMath.atan2(py, px) - StrictMath.atan2(py, px));
+          break;
+        case "hypot":
+          double exact = StrictMath.hypot(px, py);
+          error = Math.abs(MyStrategy.FastMath.hypot(px, py) - exact) / exact;
+          break;
+        default:
+          throw new IllegalArgumentException("unknown function " + function);
+      }
+      max = Math.max(max, error);
+    }
+    return max;
+  }
+
+  private static double drawAngle(Random random) {
+    return 4 * Math.PI * (random.nextDouble() - 0.5);
+  }
+
+  private static double drawOffset(Random random) {
+    return MAP_SIZE * (random.nextDouble() - 0.5);
+  }
+}
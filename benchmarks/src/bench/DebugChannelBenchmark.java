@@ -0,0 +1,52 @@
+package bench;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Cost of a debug drawing call site. With {@code channels=none} {@link #guarded} should match
+ * {@link #baseline}, and {@code -prof gc} should show no allocation for it.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DebugChannelBenchmark {
+
+  @Param({"none", "walls"})
+  public String channels;
+
+  private DebugChannelProbe probe;
+  private double x = 1200;
+  private double y = 2800;
+
+  @Setup(Level.Trial)
+  public void setUp() {
+    probe = DebugChannelProbe.create();
+    probe.setUp(channels);
+  }
+
+  @Benchmark
+  public double baseline() {
+    return probe.baseline(x, y);
+  }
+
+  @Benchmark
+  public double guarded() {
+    return probe.guarded(x, y);
+  }
+}
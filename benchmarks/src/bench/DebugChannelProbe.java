@@ -0,0 +1,28 @@
+package bench;
+
+/**
+ * Entry points into {@code MyStrategy.DebugChannels} for {@link DebugChannelBenchmark}, loaded by
+ * name for the same reason as {@link StrategyProbe}.
+ */
+public interface DebugChannelProbe {
+
+  static DebugChannelProbe create() {
+    try {
+      return (DebugChannelProbe)
+          Class.forName("MyDebugChannelProbe").getConstructor().newInstance();
+    } catch (ReflectiveOperationException e) {
+      throw new RuntimeException("Cannot load MyDebugChannelProbe", e);
+    }
+  }
+
+  /**
+   * Creates channels drawing to an in-memory visualizer, configured like {@code debug.channels}.
+   */
+  void setUp(String channels);
+
+  /** Does the work of a drawing call site without any debug drawing. */
+  double baseline(double x, double y);
+
+  /** Draws a square on the walls channel behind an {@code active} check. */
+  double guarded(double x, double y);
+}
@@ -0,0 +1,53 @@
+package bench;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Cost of dodging projectiles per tick, from none up to more than a 10-wizard endgame fight keeps
+ * in flight. Run with {@code -prof gc} to check that it does not grow with the projectile count.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DodgerBenchmark {
+
+  @Param({"./out/game.cwlog"})
+  public String log;
+
+  @Param({"dense"})
+  public String scenario;
+
+  @Param({"0", "10", "40", "80"})
+  public int projectiles;
+
+  private StrategyProbe probe;
+
+  @Setup(Level.Trial)
+  public void setUp() {
+    probe = StrategyProbe.create();
+    int tick = probe.load(log, scenario);
+    probe.prepareDodge(projectiles);
+    System.out.println("benchmarking tick " + tick + " of " + log);
+  }
+
+  @Benchmark
+  public int dodge() {
+    return probe.dodge();
+  }
+}
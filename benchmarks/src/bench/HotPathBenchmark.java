@@ -0,0 +1,90 @@
+package bench;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+@State(Scope.Thread)
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class HotPathBenchmark {
+
+  @Param({"./out/game.cwlog"})
+  public String log;
+
+  @Param({"dense", "median"})
+  public String scenario;
+
+  private StrategyProbe probe;
+
+  @Setup(Level.Trial)
+  public void setUp() {
+    probe = StrategyProbe.create();
+    int tick = probe.load(log, scenario);
+    System.out.println("benchmarking tick " + tick + " of " + log);
+  }
+
+  @Benchmark
+  public int findPath() {
+    return probe.findPath();
+  }
+
+  @Benchmark
+  public int findCachedPath() {
+    return probe.findCachedPath();
+  }
+
+  @Benchmark
+  public int getSquaresOnLine() {
+    return probe.squaresOnLine();
+  }
+
+  @Benchmark
+  public boolean isLineClear() {
+    return probe.lineClear();
+  }
+
+  @Benchmark
+  public void fieldUpdate() {
+    probe.fieldUpdate();
+  }
+
+  @Benchmark
+  public double dangerMapUpdate() {
+    return probe.dangerMapUpdate();
+  }
+
+  @Benchmark
+  public double walkerGoTo() {
+    return probe.walkerGoTo();
+  }
+
+  @Benchmark
+  public Object shooterGetTarget() {
+    return probe.shooterGetTarget();
+  }
+
+  @Benchmark
+  public double brainMove() {
+    return probe.brainMove();
+  }
+
+  @Benchmark
+  public double simulationRollout() {
+    return probe.simulationRollout();
+  }
+}
@@ -0,0 +1,54 @@
+package bench;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * One-sided against bidirectional search on long queries of a recorded game. Time alone is not
+ * the whole story, as a search may give up short of the goal; setup prints where each one ends.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PathSearchBenchmark {
+
+  @Param({"./out/game.cwlog"})
+  public String log;
+
+  @Param({"dense", "median"})
+  public String scenario;
+
+  @Param({"false", "true"})
+  public boolean bidirectional;
+
+  private StrategyProbe probe;
+
+  @Setup(Level.Trial)
+  public void setUp() {
+    probe = StrategyProbe.create();
+    int tick = probe.load(log, scenario);
+    probe.prepareLongPaths();
+    System.out.println("benchmarking tick " + tick + " of " + log);
+    System.out.print(probe.describeLongPaths(bidirectional));
+  }
+
+  @Benchmark
+  public int longPaths() {
+    return probe.longPaths(bidirectional);
+  }
+}
@@ -0,0 +1,59 @@
+package bench;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Scalar against Vector API range kernels. For their effect on the strategy, compare {@code
+ * HotPathBenchmark.fieldUpdate}, which builds the footprints of all trees, with and without {@code
+ * -jvmArgsAppend --add-modules=jdk.incubator.vector}.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "--add-modules=jdk.incubator.vector")
+public class RangeKernelBenchmark {
+
+  @Param({"scalar", "vector"})
+  public String kernels;
+
+  @Param({"16", "256", "1024"})
+  public int units;
+
+  private RangeKernelProbe probe;
+
+  @Setup(Level.Trial)
+  public void setUp() {
+    probe = RangeKernelProbe.create();
+    probe.setUp(kernels, units);
+  }
+
+  @Benchmark
+  public int selectInRange() {
+    return probe.selectInRange();
+  }
+
+  @Benchmark
+  public boolean anyInRange() {
+    return probe.anyInRange();
+  }
+
+  @Benchmark
+  public int nearest() {
+    return probe.nearest();
+  }
+}
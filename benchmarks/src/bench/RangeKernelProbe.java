@@ -0,0 +1,30 @@
+package bench;
+
+/**
+ * Entry points into {@code MyStrategy.RangeKernels} for {@link RangeKernelBenchmark}, loaded by
+ * name for the same reason as {@link StrategyProbe}.
+ */
+public interface RangeKernelProbe {
+
+  static RangeKernelProbe create() {
+    try {
+      return (RangeKernelProbe) Class.forName("MyRangeKernelProbe").getConstructor().newInstance();
+    } catch (ReflectiveOperationException e) {
+      throw new RuntimeException("Cannot load MyRangeKernelProbe", e);
+    }
+  }
+
+  /**
+   * Picks the kernels ({@code scalar} or {@code vector}) and scatters {@code units} units with
+   * attack ranges over the map, like trees and minions in a crowded game.
+   */
+  void setUp(String kernels, int units);
+
+  /** Selects the units whose range covers a point with a handful of them in range. */
+  int selectInRange();
+
+  /** Looks for a unit whose range covers a point that none covers, so all units are tested. */
+  boolean anyInRange();
+
+  int nearest();
+}
@@ -0,0 +1,70 @@
+package bench;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Scaling of the parallel rollout search: run with {@code -p parallelism=1,2,4,8} and compare the
+ * {@code rollouts} rate, which is rollouts per second.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RolloutSearchBenchmark {
+
+  @Param({"./out/game.cwlog"})
+  public String log;
+
+  @Param({"dense"})
+  public String scenario;
+
+  @Param({"1", "2", "4", "8"})
+  public int parallelism;
+
+  @Param({"256"})
+  public int candidates;
+
+  private StrategyProbe probe;
+
+  @State(Scope.Thread)
+  @AuxCounters(AuxCounters.Type.OPERATIONS)
+  public static class Counters {
+
+    public long rollouts;
+  }
+
+  @Setup(Level.Trial)
+  public void setUp() {
+    probe = StrategyProbe.create();
+    int tick = probe.load(log, scenario);
+    probe.prepareRolloutSearch(parallelism, candidates);
+    System.out.println("benchmarking tick " + tick + " of " + log);
+  }
+
+  @TearDown(Level.Trial)
+  public void tearDown() {
+    probe.shutdownRolloutSearch();
+  }
+
+  @Benchmark
+  public void search(Counters counters) {
+    counters.rollouts += probe.rolloutSearch();
+  }
+}
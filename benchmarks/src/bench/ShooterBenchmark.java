@@ -0,0 +1,58 @@
+package bench;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Target selection with crowds of enemy minions: {@code update} solves the intercepts of every
+ * enemy in one batch, {@code getTarget} ranks them.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ShooterBenchmark {
+
+  @Param({"./out/game.cwlog"})
+  public String log;
+
+  @Param({"dense"})
+  public String scenario;
+
+  @Param({"50", "100", "200"})
+  public int minions;
+
+  private StrategyProbe probe;
+
+  @Setup(Level.Trial)
+  public void setUp() {
+    probe = StrategyProbe.create();
+    int tick = probe.load(log, scenario);
+    probe.prepareShooter(minions);
+    System.out.println("benchmarking tick " + tick + " of " + log);
+  }
+
+  @Benchmark
+  public void update() {
+    probe.shooterUpdate();
+  }
+
+  @Benchmark
+  public Object getTarget() {
+    return probe.shooterGetTarget();
+  }
+}
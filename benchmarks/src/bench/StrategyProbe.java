@@ -0,0 +1,98 @@
+package bench;
+
+/**
+ * Entry points into the strategy for benchmarks. The strategy lives in the default package, which
+ * JMH benchmarks cannot import, so the implementation ({@code MyStrategyProbe}) is loaded by name.
+ */
+public interface StrategyProbe {
+
+  static StrategyProbe create() {
+    try {
+      return (StrategyProbe) Class.forName("MyStrategyProbe").getConstructor().newInstance();
+    } catch (ReflectiveOperationException e) {
+      throw new RuntimeException("Cannot load MyStrategyProbe", e);
+    }
+  }
+
+  /**
+   * Replays {@code logPath} up to the tick picked by {@code scenario} so that the strategy state
+   * is the one it had on that tick in the recorded game.
+   *
+   * @param scenario {@code dense}: the tick with the most units in vision range of our wizard on
+   *     the middle lane; {@code median}: the tick with the median number of units in vision range
+   * @return the chosen tick index
+   */
+  int load(String logPath, String scenario);
+
+  /** Searches a path from our wizard to its walking target, bypassing the path cache. */
+  int findPath();
+
+  /**
+   * Looks the same path up in the {@code MyStrategy.PathCache}, which the first call fills, and
+   * checks that every square on it is unchanged.
+   */
+  int findCachedPath();
+
+  /**
+   * Prepares {@link #longPaths} on the loaded tick: paths from our wizard to the retreat waypoints
+   * and to both bonuses, which span much of the map.
+   */
+  void prepareLongPaths();
+
+  /** Searches every prepared long path, bypassing the path cache, and returns their squares. */
+  int longPaths(boolean bidirectional);
+
+  /** One line per prepared long path: whether the search reached the goal, its length and cost. */
+  String describeLongPaths(boolean bidirectional);
+
+  int squaresOnLine();
+
+  /** Tests the line from start to goal against the walls and units with ray templates. */
+  boolean lineClear();
+
+  void fieldUpdate();
+
+  /**
+   * Adds the enemies of the loaded tick to the {@code MyStrategy.DangerMap}, as on every tick, and
+   * returns the danger at our wizard. The buildings layer is kept from the previous call.
+   */
+  double dangerMapUpdate();
+
+  double walkerGoTo();
+
+  Object shooterGetTarget();
+
+  double brainMove();
+
+  /** Resets a {@code MyStrategy.Simulation} of the loaded tick and plays one 30-tick rollout. */
+  double simulationRollout();
+
+  /**
+   * Prepares {@link #rolloutSearch} on the loaded tick: {@code candidates} distinct moves scored
+   * by a {@code MyStrategy.RolloutSearch} with {@code parallelism} workers.
+   */
+  void prepareRolloutSearch(int parallelism, int candidates);
+
+  /** Runs one search without a deadline and returns the number of rollouts. */
+  int rolloutSearch();
+
+  void shutdownRolloutSearch();
+
+  /**
+   * Prepares {@link #dodge} on the loaded tick: the world with {@code projectiles} enemy magic
+   * missiles and darts in flight, aimed roughly at our wizard from up to their range away.
+   */
+  void prepareDodge(int projectiles);
+
+  /** Updates the {@code MyStrategy.Dodger} with the prepared world and dodges a forward move. */
+  int dodge();
+
+  /**
+   * Prepares {@link #shooterUpdate} and {@link #shooterGetTarget} on the world of the loaded tick
+   * with {@code minions} enemy minions walking around our wizard within its vision range.
+   */
+  void prepareShooter(int minions);
+
+  /** Updates the {@code MyStrategy.Shooter}, which solves the intercepts of all enemies. */
+  void shooterUpdate();
+}
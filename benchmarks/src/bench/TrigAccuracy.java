@@ -0,0 +1,35 @@
+package bench;
+
+/**
+ * Checks {@code MyStrategy.FastMath} against {@code StrictMath} over random angles and offsets of
+ * the game, see {@link TrigProbe#maxError}, and exits with status 1 if any error is over its
+ * bound. The optional argument is the number of inputs per function.
+ */
+public class TrigAccuracy {
+
+  private static final String[] FUNCTIONS = {"sin", "cos", "atan2", "hypot"};
+
+  /** The bound that the {@code FastMath} documentation promises. */
+  private static final double MAX_ERROR = 1e-15;
+
+  public static void main(String[] args) {
+    int count = args.length > 0 ? Integer.parseInt(args[0]) : 20_000_000;
+    TrigProbe probe = TrigProbe.create();
+    boolean ok = true;
+    for (String function : FUNCTIONS) {
+      double error = probe.maxError(function, count);
+      boolean within = error <= MAX_ERROR;
+      System.out.printf(
+          "%-5s max %s error %.2g over %d inputs%s%n",
+          function,
+          function.equals("hypot") ? "relative" : "absolute",
+          error,
+          count,
+          within ? "" : ", over " + MAX_ERROR);
+      ok &= within;
+    }
+    if (!ok) {
+      System.exit(1);
+    }
+  }
+}
@@ -0,0 +1,63 @@
+package bench;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * {@code Math} against {@code MyStrategy.FastMath}. For their effect on the strategy, compare
+ * {@code HotPathBenchmark.simulationRollout} before and after the switch.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TrigBenchmark {
+
+  @Param({"math", "fast"})
+  public String impl;
+
+  @Param({"1024"})
+  public int count;
+
+  private TrigProbe probe;
+
+  @Setup(Level.Trial)
+  public void setUp() {
+    probe = TrigProbe.create();
+    probe.setUp(impl, count);
+  }
+
+  @Benchmark
+  public double sin() {
+    return probe.sin();
+  }
+
+  @Benchmark
+  public double cos() {
+    return probe.cos();
+  }
+
+  @Benchmark
+  public double atan2() {
+    return probe.atan2();
+  }
+
+  @Benchmark
+  public double hypot() {
+    return probe.hypot();
+  }
+}
@@ -0,0 +1,41 @@
+package bench;
+
+/**
+ * Entry points into {@code MyStrategy.FastMath} for {@link TrigBenchmark}, loaded by name for the
+ * same reason as {@link StrategyProbe}.
+ */
+public interface TrigProbe {
+
+  static TrigProbe create() {
+    try {
+      return (TrigProbe) Class.forName("MyTrigProbe").getConstructor().newInstance();
+    } catch (ReflectiveOperationException e) {
+      throw new RuntimeException("Cannot load MyTrigProbe", e);
+    }
+  }
+
+  /**
+   * Picks the implementation ({@code math} or {@code fast}) and draws {@code count} angles and
+   * offsets of the size the strategy works with.
+   */
+  void setUp(String impl, int count);
+
+  /** Sums the sines of all angles. */
+  double sin();
+
+  /** Sums the cosines of all angles. */
+  double cos();
+
+  /** Sums the angles of all offsets. */
+  double atan2();
+
+  /** Sums the lengths of all offsets. */
+  double hypot();
+
+  /**
+   * The largest error of {@code FastMath} against {@code StrictMath} over {@code count} angles or
+   * offsets drawn as in {@link #setUp}: absolute for {@code sin}, {@code cos} and {@code atan2},
+   * relative for {@code hypot}.
+   */
+  double maxError(String function, int count);
+}
@@ -0,0 +1,103 @@
+import java.awt.Color;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Collects debug drawings into the three layers of russian-ai-cup-visual (before the scene, after
+ * the scene and in absolute coordinates) and encodes them into its text protocol. Subclasses decide
+ * where a tick's layers go in {@link #sync}.
+ */
+public abstract class BufferedVisualizer implements MyStrategy.Visualizer {
+
+  static final int BEFORE_SCENE = 0;
+  static final int AFTER_SCENE = 1;
+  static final int ABSOLUTE = 2;
+  static final int LAYER_COUNT = 3;
+
+  static final byte[] LINE_SEPARATOR = System.lineSeparator().getBytes(StandardCharsets.US_ASCII);
+
+  private static final byte[][] BEGIN_LAYER = {
+    ascii("begin pre"), ascii("begin post"), ascii("begin abs"),
+  };
+  private static final byte[][] END_LAYER = {ascii("end pre"), ascii("end post"), ascii("end abs")};
+
+  private final DebugCommandBuffer buf = new DebugCommandBuffer();
+  private final DebugCommandBuffer[] layers = {
+    new DebugCommandBuffer(), new DebugCommandBuffer(), new DebugCommandBuffer(),
+  };
+
+  public void drawBeforeScene() {
+    buf.moveTo(layers[BEFORE_SCENE]);
+  }
+
+  public void drawAfterScene() {
+    buf.moveTo(layers[AFTER_SCENE]);
+  }
+
+  public void drawAbsolute() {
+    buf.moveTo(layers[ABSOLUTE]);
+  }
+
+  public void drawCircle(double x, double y, double r, Color color) {
+    buf.add(DebugCommandBuffer.CIRCLE, color.getRGB(), x, y, r);
+  }
+
+  public void fillCircle(double x, double y, double r, Color color) {
+    buf.add(DebugCommandBuffer.FILL_CIRCLE, color.getRGB(), x, y, r);
+  }
+
+  public void drawArc(
+      double x, double y, double radius, double startAngle, double arcAngle, Color color) {
+    buf.add(DebugCommandBuffer.ARC, color.getRGB(), x, y, radius, startAngle, arcAngle);
+  }
+
+  public void fillArc(
+      double x, double y, double radius, double startAngle, double arcAngle, Color color) {
+    buf.add(DebugCommandBuffer.FILL_ARC, color.getRGB(), x, y, radius, startAngle, arcAngle);
+  }
+
+  public void drawRect(double x1, double y1, double x2, double y2, Color color) {
+    buf.add(DebugCommandBuffer.RECT, color.getRGB(), x1, y1, x2, y2);
+  }
+
+  public void fillRect(double x1, double y1, double x2, double y2, Color color) {
+    buf.add(DebugCommandBuffer.FILL_RECT, color.getRGB(), x1, y1, x2, y2);
+  }
+
+  public void drawLine(double x1, double y1, double x2, double y2, Color color) {
+    buf.add(DebugCommandBuffer.LINE, color.getRGB(), x1, y1, x2, y2);
+  }
+
+  public void showText(double x, double y, String msg, Color color) {
+    buf.addText(color.getRGB(), x, y, msg);
+  }
+
+  /** An upper bound of the number of bytes {@link #encodeLayer} writes, in almost all cases. */
+  protected final int maxEncodedLength(int layer) {
+    return BEGIN_LAYER[layer].length
+        + END_LAYER[layer].length
+        + 2 * LINE_SEPARATOR.length
+        + layers[layer].maxEncodedLength(LINE_SEPARATOR.length);
+  }
+
+  /**
+   * Writes the layer, including its begin and end lines. Throws {@link
+   * java.nio.BufferOverflowException} only for absurdly large numbers, which are longer than
+   * {@link #maxEncodedLength} expects.
+   */
+  protected final void encodeLayer(int layer, ByteBuffer out) {
+    out.put(BEGIN_LAYER[layer]).put(LINE_SEPARATOR);
+    layers[layer].encode(out, LINE_SEPARATOR);
+    out.put(END_LAYER[layer]).put(LINE_SEPARATOR);
+  }
+
+  protected final void clearLayers() {
+    for (DebugCommandBuffer layer : layers) {
+      layer.clear();
+    }
+  }
+
+  private static byte[] ascii(String s) {
+    return s.getBytes(StandardCharsets.US_ASCII);
+  }
+}
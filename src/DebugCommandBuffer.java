@@ -0,0 +1,227 @@
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Locale;
+
+/**
+ * Debug drawing commands stored as primitives (opcode, packed RGB, coordinates) and serialized
+ * straight into the russian-ai-cup-visual text protocol, without {@link java.util.Formatter} or
+ * intermediate strings. Numbers are written with one decimal digit, like {@code %1.1f}.
+ */
+final class DebugCommandBuffer {
+
+  static final byte CIRCLE = 0;
+  static final byte FILL_CIRCLE = 1;
+  static final byte ARC = 2;
+  static final byte FILL_ARC = 3;
+  static final byte RECT = 4;
+  static final byte FILL_RECT = 5;
+  static final byte LINE = 6;
+  static final byte TEXT = 7;
+
+  private static final byte[][] NAMES = {
+    ascii("circle"),
+    ascii("fill_circle"),
+    ascii("arc"),
+    ascii("fill_arc"),
+    ascii("rect"),
+    ascii("fill_rect"),
+    ascii("line"),
+    ascii("text"),
+  };
+  private static final int[] ARG_COUNTS = {3, 3, 5, 5, 4, 4, 4, 2};
+
+  /** " r.r" for every colour component value 0..255, i.e. the component / 255 as {@code %1.1f}. */
+  private static final byte[][] COLOR_COMPONENTS = new byte[256][];
+
+  private static final int MAX_NUMBER_LENGTH = 24;
+  private static final int MAX_COMMAND_LENGTH = 16 + 5 * MAX_NUMBER_LENGTH + 3 * 4 + 2;
+
+  static {
+    for (int i = 0; i < 256; ++i) {
+      long tenths = Math.round(i / 255.0 * 10);
+      COLOR_COMPONENTS[i] = ascii(" " + tenths / 10 + "." + tenths % 10);
+    }
+  }
+
+  private byte[] opcodes = new byte[256];
+  private int[] colors = new int[256];
+  private double[] args = new double[1024];
+  private String[] texts = new String[16];
+  private int size;
+  private int argsSize;
+  private int textsSize;
+  private int textsLength;
+
+  private final byte[] digits = new byte[MAX_NUMBER_LENGTH];
+
+  void add(byte opcode, int rgb, double a, double b, double c) {
+    ensureCapacity(3);
+    args[argsSize++] = a;
+    args[argsSize++] = b;
+    args[argsSize++] = c;
+    addOpcode(opcode, rgb);
+  }
+
+  void add(byte opcode, int rgb, double a, double b, double c, double d) {
+    ensureCapacity(4);
+    args[argsSize++] = a;
+    args[argsSize++] = b;
+    args[argsSize++] = c;
+    args[argsSize++] = d;
+    addOpcode(opcode, rgb);
+  }
+
+  void add(byte opcode, int rgb, double a, double b, double c, double d, double e) {
+    ensureCapacity(5);
+    args[argsSize++] = a;
+    args[argsSize++] = b;
+    args[argsSize++] = c;
+    args[argsSize++] = d;
+    args[argsSize++] = e;
+    addOpcode(opcode, rgb);
+  }
+
+  void addText(int rgb, double x, double y, String text) {
+    ensureCapacity(2);
+    args[argsSize++] = x;
+    args[argsSize++] = y;
+    if (textsSize == texts.length) {
+      texts = Arrays.copyOf(texts, textsSize * 2);
+    }
+    texts[textsSize++] = text;
+    textsLength += text.length();
+    addOpcode(TEXT, rgb);
+  }
+
+  /** Appends all commands of this buffer to {@code target} and clears this buffer. */
+  void moveTo(DebugCommandBuffer target) {
+    target.ensureCapacity(argsSize);
+    if (target.size + size > target.opcodes.length) {
+      int capacity = Math.max(target.opcodes.length * 2, target.size + size);
+      target.opcodes = Arrays.copyOf(target.opcodes, capacity);
+      target.colors = Arrays.copyOf(target.colors, capacity);
+    }
+    System.arraycopy(opcodes, 0, target.opcodes, target.size, size);
+    System.arraycopy(colors, 0, target.colors, target.size, size);
+    System.arraycopy(args, 0, target.args, target.argsSize, argsSize);
+    target.size += size;
+    target.argsSize += argsSize;
+    for (int i = 0; i < textsSize; ++i) {
+      if (target.textsSize == target.texts.length) {
+        target.texts = Arrays.copyOf(target.texts, target.textsSize * 2);
+      }
+      target.texts[target.textsSize++] = texts[i];
+    }
+    target.textsLength += textsLength;
+    clear();
+  }
+
+  void clear() {
+    size = 0;
+    argsSize = 0;
+    Arrays.fill(texts, 0, textsSize, null);
+    textsSize = 0;
+    textsLength = 0;
+  }
+
+  int size() {
+    return size;
+  }
+
+  /** An upper bound of the number of bytes {@link #encode} writes. */
+  int maxEncodedLength(int lineSeparatorLength) {
+    return size * (MAX_COMMAND_LENGTH + lineSeparatorLength) + textsLength * 3;
+  }
+
+  /** Writes one line per command; {@code out} must have {@link #maxEncodedLength} bytes left. */
+  void encode(ByteBuffer out, byte[] lineSeparator) {
+    int arg = 0;
+    int text = 0;
+    for (int i = 0; i < size; ++i) {
+      byte opcode = opcodes[i];
+      out.put(NAMES[opcode]);
+      int argCount = ARG_COUNTS[opcode];
+      for (int j = 0; j < argCount; ++j) {
+        out.put((byte) ' ');
+        putNumber(out, args[arg++]);
+      }
+      if (opcode == TEXT) {
+        out.put((byte) ' ');
+        putText(out, texts[text++]);
+      }
+      int rgb = colors[i];
+      out.put(COLOR_COMPONENTS[(rgb >> 16) & 0xFF]);
+      out.put(COLOR_COMPONENTS[(rgb >> 8) & 0xFF]);
+      out.put(COLOR_COMPONENTS[rgb & 0xFF]);
+      out.put(lineSeparator);
+    }
+  }
+
+  private void putNumber(ByteBuffer out, double value) {
+    if (Double.isNaN(value) || Double.isInfinite(value) || Math.abs(value) >= 1e15) {
+      out.put(ascii(String.format(Locale.US, "%1.1f", value)));
+      return;
+    }
+    if (value < 0) {
+      out.put((byte) '-');
+      value = -value;
+    }
+    double scaled = value * 10;
+    long tenths = Math.round(scaled);
+    if (Math.abs(scaled - Math.floor(scaled) - 0.5) < 1e-6) {
+      // Formatter rounds the shortest decimal representation half up, e.g. 952.85 (which is
+      // 952.84999... in binary) to 952.9; only values this close to a tie need that.
+      tenths =
+          new BigDecimal(Double.toString(value))
+              .setScale(1, RoundingMode.HALF_UP)
+              .unscaledValue()
+              .longValue();
+    }
+    int length = 0;
+    long integer = tenths / 10;
+    do {
+      digits[length++] = (byte) ('0' + integer % 10);
+      integer /= 10;
+    } while (integer != 0);
+    while (length > 0) {
+      out.put(digits[--length]);
+    }
+    out.put((byte) '.');
+    out.put((byte) ('0' + tenths % 10));
+  }
+
+  private static void putText(ByteBuffer out, String text) {
+    int length = text.length();
+    for (int i = 0; i < length; ++i) {
+      char c = text.charAt(i);
+      if (c >= 0x80) {
+        out.put(text.substring(i).getBytes(StandardCharsets.UTF_8));
+        return;
+      }
+      out.put((byte) c);
+    }
+  }
+
+  private void addOpcode(byte opcode, int rgb) {
+    if (size == opcodes.length) {
+      opcodes = Arrays.copyOf(opcodes, size * 2);
+      colors = Arrays.copyOf(colors, size * 2);
+    }
+    opcodes[size] = opcode;
+    colors[size] = rgb;
+    ++size;
+  }
+
+  private void ensureCapacity(int extraArgs) {
+    if (argsSize + extraArgs > args.length) {
+      args = Arrays.copyOf(args, Math.max(args.length * 2, argsSize + extraArgs));
+    }
+  }
+
+  private static byte[] ascii(String s) {
+    return s.getBytes(StandardCharsets.US_ASCII);
+  }
+}
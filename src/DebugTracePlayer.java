@@ -0,0 +1,122 @@
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Streams a trace written by {@link DebugTraceRecorder} to russian-ai-cup-visual.
+ *
+ * <p>Usage: {@code java -cp out/strategy.jar DebugTracePlayer <trace> [first tick] [ticks per
+ * second]}. Starts at the first recorded tick not before the given one and plays at the given rate
+ * (60 by default, 0 for as fast as the renderer reads).
+ */
+public final class DebugTracePlayer {
+
+  private static final int DEFAULT_TICKS_PER_SECOND = 60;
+
+  private final ByteBuffer trace;
+  private final ByteBuffer index;
+  private final int tickCount;
+
+  public DebugTracePlayer(String path) throws IOException {
+    String name = DebugTraceRecorder.baseName(path);
+    trace = map(name + DebugTraceRecorder.TRACE_SUFFIX);
+    index = map(name + DebugTraceRecorder.INDEX_SUFFIX);
+
+    int entries =
+        (index.limit() - DebugTraceRecorder.HEADER_LENGTH)
+            / DebugTraceRecorder.INDEX_ENTRY_LENGTH;
+    int count = 0;
+    while (count < entries && getLength(count) != 0) {
+      ++count;
+    }
+    tickCount = count;
+  }
+
+  public static void main(String[] args) throws IOException, InterruptedException {
+    if (args.length < 1) {
+      System.err.println("usage: DebugTracePlayer <trace> [first tick] [ticks per second]");
+      System.exit(2);
+    }
+    DebugTracePlayer player = new DebugTracePlayer(args[0]);
+    int firstTick = args.length > 1 ? Integer.parseInt(args[1]) : 0;
+    int ticksPerSecond = args.length > 2 ? Integer.parseInt(args[2]) : DEFAULT_TICKS_PER_SECOND;
+
+    int first = player.seek(firstTick);
+    System.out.println(
+        "ticks = " + player.getTickCount() + ", playing from entry " + first + " of the trace");
+    try (SocketChannel channel =
+        SocketChannel.open(
+            new InetSocketAddress(DebugVisualizer.DEFAULT_HOST, DebugVisualizer.DEFAULT_PORT))) {
+      player.play(channel, first, ticksPerSecond);
+    }
+  }
+
+  public int getTickCount() {
+    return tickCount;
+  }
+
+  public int getTickIndex(int entry) {
+    return index.getInt(entryOffset(entry));
+  }
+
+  /** Returns the first entry whose tick index is not less than the given one. */
+  public int seek(int tickIndex) {
+    int low = 0;
+    int high = tickCount;
+    while (low < high) {
+      int middle = (low + high) >>> 1;
+      if (getTickIndex(middle) < tickIndex) {
+        low = middle + 1;
+      } else {
+        high = middle;
+      }
+    }
+    return low;
+  }
+
+  /** Returns the frame of the entry, exactly as {@link DebugVisualizer} would have sent it. */
+  public ByteBuffer getFrame(int entry) {
+    ByteBuffer frame = trace.duplicate();
+    int offset = (int) index.getLong(entryOffset(entry) + 4);
+    frame.limit(offset + getLength(entry)).position(offset);
+    return frame;
+  }
+
+  public void play(SocketChannel channel, int first, int ticksPerSecond)
+      throws IOException, InterruptedException {
+    long startTime = System.nanoTime();
+    for (int entry = first; entry < tickCount; ++entry) {
+      if (ticksPerSecond > 0) {
+        long frameTime = startTime + (entry - first) * 1000000000L / ticksPerSecond;
+        long delayNanos = frameTime - System.nanoTime();
+        if (delayNanos > 0) {
+          Thread.sleep(delayNanos / 1000000, (int) (delayNanos % 1000000));
+        }
+      }
+      ByteBuffer frame = getFrame(entry);
+      while (frame.hasRemaining()) {
+        channel.write(frame);
+      }
+    }
+  }
+
+  private int getLength(int entry) {
+    return index.getInt(entryOffset(entry) + 12);
+  }
+
+  private static int entryOffset(int entry) {
+    return DebugTraceRecorder.HEADER_LENGTH + entry * DebugTraceRecorder.INDEX_ENTRY_LENGTH;
+  }
+
+  private static ByteBuffer map(String path) throws IOException {
+    try (FileChannel channel = FileChannel.open(Paths.get(path), StandardOpenOption.READ)) {
+      ByteBuffer file = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+      DebugTraceRecorder.checkHeader(file, path);
+      return file;
+    }
+  }
+}
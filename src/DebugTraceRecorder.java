@@ -0,0 +1,149 @@
+import java.io.IOException;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Records debug drawings to disk instead of sending them to russian-ai-cup-visual, so they can be
+ * captured in games nobody watches and shown later with {@link DebugTracePlayer}.
+ *
+ * <p>Writes two append-only, memory-mapped files. {@code <name>.trace} holds every tick's layers
+ * exactly as {@link DebugVisualizer} would send them. {@code <name>.index} holds a {@link
+ * #INDEX_ENTRY_LENGTH}-byte entry per tick: the tick index, the offset and the length of its
+ * frame in the trace. Both start with {@link #MAGIC} and {@link #VERSION}. Until {@link #close}
+ * truncates them, the files end with zeros, so an entry of length 0 marks the end of a trace that
+ * was not closed.
+ */
+public class DebugTraceRecorder extends BufferedVisualizer {
+
+  static final String TRACE_SUFFIX = ".trace";
+  static final String INDEX_SUFFIX = ".index";
+  static final int MAGIC = 0x43574454; // "CWDT"
+  static final int VERSION = 1;
+  static final int HEADER_LENGTH = 8;
+  static final int INDEX_ENTRY_LENGTH = 16;
+
+  private static final int TRACE_REGION_SIZE = 16 << 20;
+  private static final int INDEX_REGION_SIZE = 1 << 20;
+
+  private final MappedFile trace;
+  private final MappedFile index;
+  private boolean failed;
+
+  public DebugTraceRecorder(String name) throws IOException {
+    trace = new MappedFile(Paths.get(name + TRACE_SUFFIX), TRACE_REGION_SIZE);
+    index = new MappedFile(Paths.get(name + INDEX_SUFFIX), INDEX_REGION_SIZE);
+    trace.reserve(HEADER_LENGTH).putInt(MAGIC).putInt(VERSION);
+    index.reserve(HEADER_LENGTH).putInt(MAGIC).putInt(VERSION);
+  }
+
+  public void sync(int tickIndex) {
+    if (!failed) {
+      try {
+        append(tickIndex);
+      } catch (IOException e) {
+        System.err.println("DebugTraceRecorder: " + e.getMessage());
+        failed = true;
+      }
+    }
+    clearLayers();
+  }
+
+  public void close() {
+    try {
+      trace.close();
+      index.close();
+    } catch (IOException e) {
+      throw new RuntimeException(e);
+    }
+  }
+
+  private void append(int tickIndex) throws IOException {
+    int length = 0;
+    for (int layer = 0; layer < LAYER_COUNT; ++layer) {
+      length += maxEncodedLength(layer);
+    }
+    long offset = trace.position();
+    while (true) {
+      ByteBuffer out = trace.reserve(length);
+      int start = out.position();
+      try {
+        for (int layer = 0; layer < LAYER_COUNT; ++layer) {
+          encodeLayer(layer, out);
+        }
+        length = out.position() - start;
+        break;
+      } catch (BufferOverflowException e) {
+        out.position(start);
+        length *= 2;
+      }
+    }
+    index.reserve(INDEX_ENTRY_LENGTH).putInt(tickIndex).putLong(offset).putInt(length);
+  }
+
+  static String baseName(String path) {
+    for (String suffix : new String[] {TRACE_SUFFIX, INDEX_SUFFIX}) {
+      if (path.endsWith(suffix)) {
+        return path.substring(0, path.length() - suffix.length());
+      }
+    }
+    return path;
+  }
+
+  static void checkHeader(ByteBuffer file, String path) throws IOException {
+    if (file.remaining() < HEADER_LENGTH || file.getInt(0) != MAGIC) {
+      throw new IOException(path + ": not a debug trace");
+    }
+    if (file.getInt(4) != VERSION) {
+      throw new IOException(path + ": unsupported version " + file.getInt(4));
+    }
+  }
+
+  /** A file that is written through a mapped region, which moves forward as the file grows. */
+  private static final class MappedFile {
+
+    private final FileChannel channel;
+    private final int regionSize;
+    private MappedByteBuffer region;
+    private long regionStart;
+
+    MappedFile(Path path, int regionSize) throws IOException {
+      channel =
+          FileChannel.open(
+              path,
+              StandardOpenOption.CREATE,
+              StandardOpenOption.TRUNCATE_EXISTING,
+              StandardOpenOption.READ,
+              StandardOpenOption.WRITE);
+      this.regionSize = regionSize;
+      region = channel.map(FileChannel.MapMode.READ_WRITE, 0, regionSize);
+    }
+
+    long position() {
+      return regionStart + region.position();
+    }
+
+    /** Returns the region, positioned at the end of the file, with at least length bytes left. */
+    ByteBuffer reserve(int length) throws IOException {
+      if (region.remaining() < length) {
+        regionStart = position();
+        region =
+            channel.map(FileChannel.MapMode.READ_WRITE, regionStart, Math.max(regionSize, length));
+      }
+      return region;
+    }
+
+    void close() throws IOException {
+      if (!channel.isOpen()) {
+        return;
+      }
+      region.force();
+      channel.truncate(position());
+      channel.close();
+    }
+  }
+}
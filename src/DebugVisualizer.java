@@ -1,214 +1,138 @@
-import java.awt.Color;
 import java.io.IOException;
-import java.io.OutputStream;
-import java.net.Socket;
-import java.util.ArrayList;
-import java.util.Formatter;
-import java.util.List;
-import java.util.Locale;
-
-public class DebugVisualizer implements MyStrategy.Visualizer {
+import java.net.InetSocketAddress;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Sends debug drawings to russian-ai-cup-visual.
+ *
+ * <p>{@link #sync} encodes the queued commands of a tick into a frame of reusable direct buffers,
+ * one per layer, and hands it to a sender thread that writes it with a single gathering write. A
+ * fixed number of frames is in flight; when the renderer falls behind and none is free, the whole
+ * frame is dropped, so the strategy thread never blocks on the socket.
+ */
+public class DebugVisualizer extends BufferedVisualizer {
 
   static final String DEFAULT_HOST = "127.0.0.1";
   static final int DEFAULT_PORT = 13579;
 
-  private Socket socket;
-  private OutputStream outputStream;
-  private List<String> buf = new ArrayList<>();
-  private List<String> queueBeforeScene = new ArrayList<>();
-  private List<String> queueAfterScene = new ArrayList<>();
-  private List<String> queueAbsolute = new ArrayList<>();
+  private static final int FRAMES_IN_FLIGHT = 4;
+  private static final long STOP_TIMEOUT_MILLIS = 1000;
+  private static final int INITIAL_LAYER_CAPACITY = 1 << 16;
+
+  private final SocketChannel channel;
+  private final BlockingQueue<Frame> freeFrames = new ArrayBlockingQueue<>(FRAMES_IN_FLIGHT);
+  private final BlockingQueue<Frame> pendingFrames = new ArrayBlockingQueue<>(FRAMES_IN_FLIGHT);
+  private final Thread sender;
+  private volatile boolean stopped;
+  private long droppedFrames;
 
   public DebugVisualizer() {
     this(DEFAULT_HOST, DEFAULT_PORT);
   }
 
   public DebugVisualizer(String host, int port) {
-    Locale.setDefault(new Locale("en", "US"));
     try {
-      socket = new Socket(host, port);
-      outputStream = socket.getOutputStream();
+      channel = SocketChannel.open(new InetSocketAddress(host, port));
     } catch (IOException e) {
       throw new RuntimeException(e);
     }
+    for (int i = 0; i < FRAMES_IN_FLIGHT; ++i) {
+      freeFrames.add(new Frame());
+    }
+    sender = new Thread(this::sendFrames, "DebugVisualizer sender");
+    sender.setDaemon(true);
+    sender.start();
   }
 
   public void stop() {
+    stopped = true;
     try {
-      outputStream.close();
-      socket.close();
+      sender.join(STOP_TIMEOUT_MILLIS);
+      sender.interrupt();
+      sender.join();
+      channel.close();
     } catch (IOException e) {
       throw new RuntimeException(e);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
     }
   }
 
-  public void drawBeforeScene() {
-    queueBeforeScene.addAll(buf);
-    buf.clear();
-  }
-
-  public void drawAfterScene() {
-    queueAfterScene.addAll(buf);
-    buf.clear();
-  }
-
-  public void drawAbsolute() {
-    queueAbsolute.addAll(buf);
-    buf.clear();
-  }
-
-  public void drawCircle(double x, double y, double r, Color color) {
-    Formatter f = new Formatter();
-    queueCommand(
-        f.format(
-                "circle %1.1f %1.1f %1.1f %1.1f %1.1f %1.1f",
-                x,
-                y,
-                r,
-                (float) color.getRed() / 255,
-                (float) color.getGreen() / 255,
-                (float) color.getBlue() / 255)
-            .toString());
-  }
-
-  public void fillCircle(double x, double y, double r, Color color) {
-    Formatter f = new Formatter();
-    queueCommand(
-        f.format(
-                "fill_circle %1.1f %1.1f %1.1f %1.1f %1.1f %1.1f",
-                x,
-                y,
-                r,
-                (float) color.getRed() / 255,
-                (float) color.getGreen() / 255,
-                (float) color.getBlue() / 255)
-            .toString());
-  }
-
-  public void drawArc(
-      double x, double y, double radius, double startAngle, double arcAngle, Color color) {
-    Formatter f = new Formatter();
-    queueCommand(
-        f.format(
-                "arc %1.1f %1.1f %1.1f %1.1f %1.1f %1.1f %1.1f %1.1f",
-                x,
-                y,
-                radius,
-                startAngle,
-                arcAngle,
-                (float) color.getRed() / 255,
-                (float) color.getGreen() / 255,
-                (float) color.getBlue() / 255)
-            .toString());
-  }
-
-  public void fillArc(
-      double x, double y, double radius, double startAngle, double arcAngle, Color color) {
-    Formatter f = new Formatter();
-    queueCommand(
-        f.format(
-                "fill_arc %1.1f %1.1f %1.1f %1.1f %1.1f %1.1f %1.1f %1.1f",
-                x,
-                y,
-                radius,
-                startAngle,
-                arcAngle,
-                (float) color.getRed() / 255,
-                (float) color.getGreen() / 255,
-                (float) color.getBlue() / 255)
-            .toString());
+  public long getDroppedFrames() {
+    return droppedFrames;
   }
 
-  public void drawRect(double x1, double y1, double x2, double y2, Color color) {
-    Formatter f = new Formatter();
-    queueCommand(
-        f.format(
-                "rect %1.1f %1.1f %1.1f %1.1f %1.1f %1.1f %1.1f",
-                x1,
-                y1,
-                x2,
-                y2,
-                (float) color.getRed() / 255,
-                (float) color.getGreen() / 255,
-                (float) color.getBlue() / 255)
-            .toString());
-  }
-
-  public void fillRect(double x1, double y1, double x2, double y2, Color color) {
-    Formatter f = new Formatter();
-    queueCommand(
-        f.format(
-                "fill_rect %1.1f %1.1f %1.1f %1.1f %1.1f %1.1f %1.1f",
-                x1,
-                y1,
-                x2,
-                y2,
-                (float) color.getRed() / 255,
-                (float) color.getGreen() / 255,
-                (float) color.getBlue() / 255)
-            .toString());
-  }
-
-  public void drawLine(double x1, double y1, double x2, double y2, Color color) {
-    Formatter f = new Formatter();
-    queueCommand(
-        f.format(
-                "line %1.1f %1.1f %1.1f %1.1f %1.1f %1.1f %1.1f",
-                x1,
-                y1,
-                x2,
-                y2,
-                (float) color.getRed() / 255,
-                (float) color.getGreen() / 255,
-                (float) color.getBlue() / 255)
-            .toString());
-  }
-
-  public void showText(double x, double y, String msg, Color color) {
-    Formatter f = new Formatter();
-    queueCommand(
-        f.format(
-                "text %1.1f %1.1f %s %1.1f %1.1f %1.1f",
-                x,
-                y,
-                msg,
-                (float) color.getRed() / 255,
-                (float) color.getGreen() / 255,
-                (float) color.getBlue() / 255)
-            .toString());
-  }
-
-  private void sendCommand(String command) {
-    try {
-      outputStream.write((command + System.lineSeparator()).getBytes());
-      outputStream.flush();
-    } catch (IOException e) {
-      throw new RuntimeException(e);
+  public void sync(int tickIndex) {
+    Frame frame = freeFrames.poll();
+    if (frame == null) {
+      ++droppedFrames;
+    } else {
+      for (int layer = 0; layer < LAYER_COUNT; ++layer) {
+        frame.layers[layer] = encodeGrowing(layer, frame.layers[layer]);
+      }
+      pendingFrames.add(frame);
+    }
+    clearLayers();
+  }
+
+  public void close() {
+    stop();
+  }
+
+  private ByteBuffer encodeGrowing(int layer, ByteBuffer out) {
+    int capacity = maxEncodedLength(layer);
+    while (true) {
+      if (out.capacity() < capacity) {
+        out = ByteBuffer.allocateDirect(Math.max(out.capacity() * 2, capacity));
+      }
+      out.clear();
+      try {
+        encodeLayer(layer, out);
+        out.flip();
+        return out;
+      } catch (BufferOverflowException e) {
+        capacity = out.capacity() * 2;
+      }
     }
   }
 
-  private void queueCommand(String command) {
-    buf.add(command);
-  }
-
-  private void dequeueCommands(List<String> queue) {
-    for (String command : queue) {
-      sendCommand(command);
+  private void sendFrames() {
+    while (!stopped || !pendingFrames.isEmpty()) {
+      Frame frame;
+      try {
+        frame = pendingFrames.poll(100, TimeUnit.MILLISECONDS);
+      } catch (InterruptedException e) {
+        return;
+      }
+      if (frame == null) {
+        continue;
+      }
+      try {
+        while (frame.layers[2].hasRemaining()) {
+          channel.write(frame.layers);
+        }
+      } catch (IOException e) {
+        if (!stopped) {
+          System.err.println("DebugVisualizer: " + e.getMessage());
+        }
+        stopped = true;
+        return;
+      }
+      freeFrames.add(frame);
     }
-    queue.clear();
   }
 
-  public void sync() {
-    sendCommand("begin pre");
-    dequeueCommands(queueBeforeScene);
-    sendCommand("end pre");
-
-    sendCommand("begin post");
-    dequeueCommands(queueAfterScene);
-    sendCommand("end post");
+  private static final class Frame {
 
-    sendCommand("begin abs");
-    dequeueCommands(queueAbsolute);
-    sendCommand("end abs");
+    private final ByteBuffer[] layers = {
+      ByteBuffer.allocateDirect(INITIAL_LAYER_CAPACITY),
+      ByteBuffer.allocateDirect(INITIAL_LAYER_CAPACITY),
+      ByteBuffer.allocateDirect(INITIAL_LAYER_CAPACITY),
+    };
   }
 }
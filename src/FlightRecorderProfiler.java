@@ -0,0 +1,164 @@
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.EventType;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+public class FlightRecorderProfiler implements MyStrategy.Profiler {
+
+  // Without a recording that enables them, no events are allocated.
+  private static final EventType TICK = EventType.getEventType(TickEvent.class);
+  private static final EventType FIND_PATH = EventType.getEventType(FindPathEvent.class);
+  private static final EventType TARGET_DECISION =
+      EventType.getEventType(TargetDecisionEvent.class);
+
+  private int tickIndex;
+  private long wizardId;
+  private TickEvent tick;
+  private FindPathEvent findPath;
+
+  public void tickStarted(int tickIndex, long wizardId) {
+    this.tickIndex = tickIndex;
+    this.wizardId = wizardId;
+    if (!TICK.isEnabled()) {
+      tick = null;
+      return;
+    }
+    tick = new TickEvent();
+    tick.tickIndex = tickIndex;
+    tick.wizardId = wizardId;
+    tick.begin();
+  }
+
+  public void tickFinished() {
+    if (tick != null) {
+      tick.commit();
+    }
+  }
+
+  public void findPathStarted() {
+    if (!FIND_PATH.isEnabled()) {
+      findPath = null;
+      return;
+    }
+    findPath = new FindPathEvent();
+    findPath.begin();
+  }
+
+  public void findPathFinished(
+      int startP, int startQ, int goalP, int goalQ, int nodesExpanded, boolean completed) {
+    if (findPath == null || !findPath.shouldCommit()) {
+      return;
+    }
+    findPath.tickIndex = tickIndex;
+    findPath.wizardId = wizardId;
+    findPath.startP = startP;
+    findPath.startQ = startQ;
+    findPath.goalP = goalP;
+    findPath.goalQ = goalQ;
+    findPath.nodesExpanded = nodesExpanded;
+    findPath.completed = completed;
+    findPath.commit();
+  }
+
+  public void targetChosen(
+      String reason,
+      double walkingTargetX,
+      double walkingTargetY,
+      long shootingTargetId,
+      String action) {
+    if (!TARGET_DECISION.isEnabled()) {
+      return;
+    }
+    TargetDecisionEvent event = new TargetDecisionEvent();
+    if (!event.shouldCommit()) {
+      return;
+    }
+    event.tickIndex = tickIndex;
+    event.wizardId = wizardId;
+    event.reason = reason;
+    event.walkingTargetX = walkingTargetX;
+    event.walkingTargetY = walkingTargetY;
+    event.shootingTargetId = shootingTargetId;
+    event.action = action;
+    event.commit();
+  }
+
+  @Name("codewizards.Tick")
+  @Label("Tick")
+  @Description("One call of MyStrategy.move")
+  @Category({"CodeWizards", "Strategy"})
+  @StackTrace(false)
+  static class TickEvent extends Event {
+
+    @Label("Tick Index")
+    int tickIndex;
+
+    @Label("Wizard Id")
+    long wizardId;
+  }
+
+  @Name("codewizards.FindPath")
+  @Label("Find Path")
+  @Description("One A* search in Field.findPath")
+  @Category({"CodeWizards", "Strategy"})
+  @StackTrace(false)
+  static class FindPathEvent extends Event {
+
+    @Label("Tick Index")
+    int tickIndex;
+
+    @Label("Wizard Id")
+    long wizardId;
+
+    @Label("Start P")
+    int startP;
+
+    @Label("Start Q")
+    int startQ;
+
+    @Label("Goal P")
+    int goalP;
+
+    @Label("Goal Q")
+    int goalQ;
+
+    @Label("Nodes Expanded")
+    int nodesExpanded;
+
+    @Label("Completed")
+    @Description("False if the search was capped and returned a path to the closest square")
+    boolean completed;
+  }
+
+  @Name("codewizards.TargetDecision")
+  @Label("Target Decision")
+  @Description("Walking target, shooting target and action chosen in Brain.move")
+  @Category({"CodeWizards", "Strategy"})
+  @StackTrace(false)
+  static class TargetDecisionEvent extends Event {
+
+    @Label("Tick Index")
+    int tickIndex;
+
+    @Label("Wizard Id")
+    long wizardId;
+
+    @Label("Reason")
+    String reason;
+
+    @Label("Walking Target X")
+    double walkingTargetX;
+
+    @Label("Walking Target Y")
+    double walkingTargetY;
+
+    @Label("Shooting Target Id")
+    long shootingTargetId;
+
+    @Label("Action")
+    String action;
+  }
+}
@@ -0,0 +1,1325 @@
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.function.LongPredicate;
+
+import model.BonusType;
+import model.Bonus;
+import model.Building;
+import model.BuildingType;
+import model.CircularUnit;
+import model.Faction;
+import model.Game;
+import model.LaneType;
+import model.LivingUnit;
+import model.Message;
+import model.Minion;
+import model.MinionType;
+import model.Player;
+import model.PlayerContext;
+import model.Projectile;
+import model.ProjectileType;
+import model.SkillType;
+import model.Status;
+import model.StatusType;
+import model.Tree;
+import model.Unit;
+import model.Wizard;
+import model.World;
+
+/**
+ * Compact binary log of a game as seen by one player: the {@link Game} followed by the {@link
+ * PlayerContext} of every tick.
+ *
+ * <p>Every unit kind is delta-encoded against the same unit (by id) on the previous tick: only
+ * changed fields are written, unchanged units are not written at all, so static trees and
+ * buildings are stored once. Coordinates, speeds and angles are stored as zigzag varints in fixed
+ * point (see the {@code *_SCALE} constants); every other field is stored exactly.
+ */
+public final class GameLog {
+
+  private static final int MAGIC = 0x43574c47; // "CWLG"
+  private static final int VERSION = 1;
+
+  private static final int TAG_END = 0;
+  private static final int TAG_TICK = 1;
+
+  private static final double POSITION_SCALE = 1e4;
+  private static final double SPEED_SCALE = 1e6;
+  private static final double ANGLE_SCALE = 1e6;
+
+  private static final int POSITION = 1;
+  private static final int SPEED = 1 << 1;
+  private static final int ANGLE = 1 << 2;
+  private static final int FACTION = 1 << 3;
+  private static final int RADIUS = 1 << 4;
+  private static final int LIFE = 1 << 5;
+  private static final int MAX_LIFE = 1 << 6;
+  private static final int STATUSES = 1 << 7;
+  private static final int KIND_SHIFT = 8;
+
+  private GameLog() {}
+
+  public static Recording read(String path) throws IOException {
+    try (Reader reader = new Reader(new FileInputStream(path))) {
+      List<PlayerContext> ticks = new ArrayList<>();
+      PlayerContext playerContext;
+      while ((playerContext = reader.readPlayerContext()) != null) {
+        ticks.add(playerContext);
+      }
+      return new Recording(reader.getTeamSize(), reader.getGame(), ticks);
+    }
+  }
+
+  public static final class Recording {
+
+    private final int teamSize;
+    private final Game game;
+    private final List<PlayerContext> ticks;
+
+    public Recording(int teamSize, Game game, List<PlayerContext> ticks) {
+      this.teamSize = teamSize;
+      this.game = game;
+      this.ticks = ticks;
+    }
+
+    public int getTeamSize() {
+      return teamSize;
+    }
+
+    public Game getGame() {
+      return game;
+    }
+
+    public List<PlayerContext> getTicks() {
+      return ticks;
+    }
+  }
+
+  public static final class Writer implements Closeable {
+
+    private final Out out;
+    private final Map<Long, Player> players = new HashMap<>();
+    private final UnitTable<Wizard> wizards = new UnitTable<>(WIZARDS);
+    private final UnitTable<Minion> minions = new UnitTable<>(MINIONS);
+    private final UnitTable<Projectile> projectiles = new UnitTable<>(PROJECTILES);
+    private final UnitTable<Bonus> bonuses = new UnitTable<>(BONUSES);
+    private final UnitTable<Building> buildings = new UnitTable<>(BUILDINGS);
+    private final UnitTable<Tree> trees = new UnitTable<>(TREES);
+    private final UnitTable<Wizard> playerWizards = new UnitTable<>(WIZARDS);
+    private World previousWorld;
+
+    public Writer(OutputStream outputStream, int teamSize, Game game) throws IOException {
+      out = new Out(new DataOutputStream(new BufferedOutputStream(outputStream, 1 << 16)));
+      out.data.writeInt(MAGIC);
+      out.writeVarInt(VERSION);
+      out.writeVarInt(teamSize);
+      writeGame(out, game);
+    }
+
+    public Writer(String path, int teamSize, Game game) throws IOException {
+      this(new FileOutputStream(path), teamSize, game);
+    }
+
+    public void writePlayerContext(PlayerContext playerContext) throws IOException {
+      World world = playerContext.getWorld();
+      out.data.writeByte(TAG_TICK);
+      out.writeVarInt(world.getTickIndex());
+
+      boolean constantsChanged =
+          previousWorld == null
+              || previousWorld.getTickCount() != world.getTickCount()
+              || previousWorld.getWidth() != world.getWidth()
+              || previousWorld.getHeight() != world.getHeight();
+      out.data.writeBoolean(constantsChanged);
+      if (constantsChanged) {
+        out.writeVarInt(world.getTickCount());
+        out.data.writeDouble(world.getWidth());
+        out.data.writeDouble(world.getHeight());
+      }
+      previousWorld = world;
+
+      writePlayers(world.getPlayers());
+      wizards.write(out, world.getWizards());
+      minions.write(out, world.getMinions());
+      projectiles.write(out, world.getProjectiles());
+      bonuses.write(out, world.getBonuses());
+      buildings.write(out, world.getBuildings());
+      trees.write(out, world.getTrees());
+      playerWizards.write(out, playerContext.getWizards());
+    }
+
+    private void writePlayers(Player[] players) throws IOException {
+      out.writeVarInt(players.length);
+      for (Player player : players) {
+        Player previous = this.players.put(player.getId(), player);
+        boolean nameChanged =
+            previous == null || !Objects.equals(previous.getName(), player.getName());
+        out.writeVarLong(player.getId());
+        out.data.writeBoolean(player.isMe());
+        out.data.writeBoolean(nameChanged);
+        if (nameChanged) {
+          out.writeString(player.getName());
+        }
+        out.data.writeBoolean(player.isStrategyCrashed());
+        out.writeVarInt(player.getScore());
+        out.writeEnum(player.getFaction());
+      }
+    }
+
+    @Override
+    public void close() throws IOException {
+      out.data.writeByte(TAG_END);
+      out.data.close();
+    }
+  }
+
+  public static final class Reader implements Closeable {
+
+    private final In in;
+    private final int teamSize;
+    private final Game game;
+    private final Map<Long, Player> players = new HashMap<>();
+    private final UnitTable<Wizard> wizards = new UnitTable<>(WIZARDS);
+    private final UnitTable<Minion> minions = new UnitTable<>(MINIONS);
+    private final UnitTable<Projectile> projectiles = new UnitTable<>(PROJECTILES);
+    private final UnitTable<Bonus> bonuses = new UnitTable<>(BONUSES);
+    private final UnitTable<Building> buildings = new UnitTable<>(BUILDINGS);
+    private final UnitTable<Tree> trees = new UnitTable<>(TREES);
+    private final UnitTable<Wizard> playerWizards = new UnitTable<>(WIZARDS);
+    private int tickCount;
+    private double width;
+    private double height;
+
+    public Reader(InputStream inputStream) throws IOException {
+      in = new In(new DataInputStream(new BufferedInputStream(inputStream, 1 << 16)));
+      if (in.data.readInt() != MAGIC) {
+        throw new IOException("not a game log");
+      }
+      int version = in.readVarInt();
+      if (version != VERSION) {
+        throw new IOException("unsupported game log version " + version);
+      }
+      teamSize = in.readVarInt();
+      game = readGame(in);
+    }
+
+    public int getTeamSize() {
+      return teamSize;
+    }
+
+    public Game getGame() {
+      return game;
+    }
+
+    public PlayerContext readPlayerContext() throws IOException {
+      int tag;
+      try {
+        tag = in.data.readUnsignedByte();
+      } catch (EOFException e) {
+        return null;
+      }
+      if (tag == TAG_END) {
+        return null;
+      }
+      if (tag != TAG_TICK) {
+        throw new IOException("corrupted game log: unexpected tag " + tag);
+      }
+
+      int tickIndex = in.readVarInt();
+      if (in.data.readBoolean()) {
+        tickCount = in.readVarInt();
+        width = in.data.readDouble();
+        height = in.data.readDouble();
+      }
+
+      Player[] players = readPlayers();
+      World world =
+          new World(
+              tickIndex,
+              tickCount,
+              width,
+              height,
+              players,
+              wizards.read(in),
+              minions.read(in),
+              projectiles.read(in),
+              bonuses.read(in),
+              buildings.read(in),
+              trees.read(in));
+      return new PlayerContext(playerWizards.read(in), world);
+    }
+
+    private Player[] readPlayers() throws IOException {
+      Player[] result = new Player[in.readVarInt()];
+      for (int i = 0; i < result.length; ++i) {
+        long id = in.readVarLong();
+        boolean me = in.data.readBoolean();
+        String name = in.data.readBoolean() ? in.readString() : players.get(id).getName();
+        boolean strategyCrashed = in.data.readBoolean();
+        int score = in.readVarInt();
+        Faction faction = in.readEnum(Faction.values());
+        result[i] = new Player(id, me, name, strategyCrashed, score, faction);
+        players.put(id, result[i]);
+      }
+      return result;
+    }
+
+    @Override
+    public void close() throws IOException {
+      in.data.close();
+    }
+  }
+
+  /**
+   * The game parameters are written field by field in declaration order, which is also the order
+   * of the {@link Game} constructor parameters, so new parameters in the model do not need changes
+   * here.
+   */
+  private static void writeGame(Out out, Game game) throws IOException {
+    List<Field> fields = getGameFields();
+    out.writeVarInt(fields.size());
+    try {
+      for (Field field : fields) {
+        Class<?> type = field.getType();
+        if (type == double.class) {
+          out.data.writeDouble(field.getDouble(game));
+        } else if (type == int.class) {
+          out.writeVarInt(field.getInt(game));
+        } else if (type == long.class) {
+          out.writeVarLong(field.getLong(game));
+        } else if (type == boolean.class) {
+          out.data.writeBoolean(field.getBoolean(game));
+        } else if (type == int[].class) {
+          out.writeInts((int[]) field.get(game));
+        } else {
+          throw new IllegalStateException("unsupported Game field " + field);
+        }
+      }
+    } catch (IllegalAccessException e) {
+      throw new RuntimeException(e);
+    }
+  }
+
+  private static Game readGame(In in) throws IOException {
+    Constructor<?> constructor = getGameConstructor();
+    Class<?>[] types = constructor.getParameterTypes();
+    if (in.readVarInt() != types.length) {
+      throw new IOException("game log was written with a different model");
+    }
+    Object[] args = new Object[types.length];
+    for (int i = 0; i < types.length; ++i) {
+      Class<?> type = types[i];
+      if (type == double.class) {
+        args[i] = in.data.readDouble();
+      } else if (type == int.class) {
+        args[i] = in.readVarInt();
+      } else if (type == long.class) {
+        args[i] = in.readVarLong();
+      } else if (type == boolean.class) {
+        args[i] = in.data.readBoolean();
+      } else if (type == int[].class) {
+        args[i] = in.readInts();
+      } else {
+        throw new IllegalStateException("unsupported Game parameter " + type);
+      }
+    }
+    try {
+      return (Game) constructor.newInstance(args);
+    } catch (ReflectiveOperationException e) {
+      throw new RuntimeException(e);
+    }
+  }
+
+  private static List<Field> getGameFields() {
+    List<Field> fields = new ArrayList<>();
+    for (Field field : Game.class.getDeclaredFields()) {
+      if (!Modifier.isStatic(field.getModifiers())) {
+        field.setAccessible(true);
+        fields.add(field);
+      }
+    }
+    Class<?>[] types = getGameConstructor().getParameterTypes();
+    if (types.length != fields.size()) {
+      throw new IllegalStateException("Game fields do not match its constructor");
+    }
+    for (int i = 0; i < types.length; ++i) {
+      if (types[i] != fields.get(i).getType()) {
+        throw new IllegalStateException("Game fields do not match its constructor");
+      }
+    }
+    return fields;
+  }
+
+  private static Constructor<?> getGameConstructor() {
+    Constructor<?> best = null;
+    for (Constructor<?> constructor : Game.class.getConstructors()) {
+      if (best == null || constructor.getParameterCount() > best.getParameterCount()) {
+        best = constructor;
+      }
+    }
+    return best;
+  }
+
+  private interface UnitCodec<T extends Unit> {
+
+    T[] newArray(int length);
+
+    /** Bits of the fields that differ from {@code previous}, which may be null. */
+    int diff(T previous, T unit);
+
+    void write(Out out, T previous, T unit, int mask) throws IOException;
+
+    T read(In in, long id, T previous, int mask) throws IOException;
+  }
+
+  /**
+   * Units of one kind from the previous tick, by id. Per tick it writes the changed units, the ids
+   * of the removed ones and, only when it is not implied by the previous tick, the array order.
+   */
+  private static final class UnitTable<T extends Unit> {
+
+    private final UnitCodec<T> codec;
+    private final Map<Long, T> previous = new HashMap<>();
+    private long[] order = new long[0];
+
+    UnitTable(UnitCodec<T> codec) {
+      this.codec = codec;
+    }
+
+    void write(Out out, T[] units) throws IOException {
+      Map<Long, T> current = new HashMap<>(units.length * 2);
+      int changed = 0;
+      int[] masks = new int[units.length];
+      for (int i = 0; i < units.length; ++i) {
+        T unit = units[i];
+        current.put(unit.getId(), unit);
+        masks[i] = codec.diff(previous.get(unit.getId()), unit);
+        if (masks[i] != 0 || !previous.containsKey(unit.getId())) {
+          ++changed;
+        }
+      }
+
+      out.writeVarInt(changed);
+      for (int i = 0; i < units.length; ++i) {
+        T unit = units[i];
+        T previousUnit = previous.get(unit.getId());
+        if (masks[i] != 0 || previousUnit == null) {
+          out.writeVarLong(unit.getId());
+          out.writeVarInt(masks[i]);
+          codec.write(out, previousUnit, unit, masks[i]);
+        }
+      }
+
+      int removed = 0;
+      for (long id : order) {
+        if (!current.containsKey(id)) {
+          ++removed;
+        }
+      }
+      out.writeVarInt(removed);
+      for (long id : order) {
+        if (!current.containsKey(id)) {
+          out.writeVarLong(id);
+        }
+      }
+
+      long[] newOrder = new long[units.length];
+      for (int i = 0; i < units.length; ++i) {
+        newOrder[i] = units[i].getId();
+      }
+      boolean implied = Arrays.equals(newOrder, impliedOrder(current.keySet()::contains, units));
+      out.data.writeBoolean(implied);
+      if (!implied) {
+        long last = 0;
+        for (long id : newOrder) {
+          out.writeVarLong(id - last);
+          last = id;
+        }
+      }
+
+      previous.clear();
+      previous.putAll(current);
+      order = newOrder;
+    }
+
+    T[] read(In in) throws IOException {
+      Map<Long, T> current = new HashMap<>(previous);
+      List<T> added = new ArrayList<>();
+      int changed = in.readVarInt();
+      for (int i = 0; i < changed; ++i) {
+        long id = in.readVarLong();
+        int mask = in.readVarInt();
+        T previousUnit = previous.get(id);
+        T unit = codec.read(in, id, previousUnit, mask);
+        current.put(id, unit);
+        if (previousUnit == null) {
+          added.add(unit);
+        }
+      }
+      int removed = in.readVarInt();
+      for (int i = 0; i < removed; ++i) {
+        current.remove(in.readVarLong());
+      }
+
+      long[] newOrder;
+      if (in.data.readBoolean()) {
+        newOrder = impliedOrder(current::containsKey, added.toArray(codec.newArray(0)));
+      } else {
+        newOrder = new long[current.size()];
+        long last = 0;
+        for (int i = 0; i < newOrder.length; ++i) {
+          last += in.readVarLong();
+          newOrder[i] = last;
+        }
+      }
+
+      T[] units = codec.newArray(newOrder.length);
+      for (int i = 0; i < newOrder.length; ++i) {
+        units[i] = current.get(newOrder[i]);
+      }
+      previous.clear();
+      previous.putAll(current);
+      order = newOrder;
+      return units;
+    }
+
+    /** Surviving units in their previous order, then new units in the order they appear. */
+    private long[] impliedOrder(LongPredicate alive, T[] candidates) {
+      long[] result = new long[order.length + candidates.length];
+      int size = 0;
+      for (long id : order) {
+        if (alive.test(id)) {
+          result[size++] = id;
+        }
+      }
+      for (T unit : candidates) {
+        if (!previous.containsKey(unit.getId())) {
+          result[size++] = unit.getId();
+        }
+      }
+      return Arrays.copyOf(result, size);
+    }
+  }
+
+  private static int diffUnit(Unit previous, Unit unit) {
+    if (previous == null) {
+      return POSITION | SPEED | ANGLE | FACTION;
+    }
+    int mask = 0;
+    if (fixed(previous.getX(), POSITION_SCALE) != fixed(unit.getX(), POSITION_SCALE)
+        || fixed(previous.getY(), POSITION_SCALE) != fixed(unit.getY(), POSITION_SCALE)) {
+      mask |= POSITION;
+    }
+    if (fixed(previous.getSpeedX(), SPEED_SCALE) != fixed(unit.getSpeedX(), SPEED_SCALE)
+        || fixed(previous.getSpeedY(), SPEED_SCALE) != fixed(unit.getSpeedY(), SPEED_SCALE)) {
+      mask |= SPEED;
+    }
+    if (fixed(previous.getAngle(), ANGLE_SCALE) != fixed(unit.getAngle(), ANGLE_SCALE)) {
+      mask |= ANGLE;
+    }
+    if (previous.getFaction() != unit.getFaction()) {
+      mask |= FACTION;
+    }
+    return mask;
+  }
+
+  private static int diffCircularUnit(CircularUnit previous, CircularUnit unit) {
+    int mask = diffUnit(previous, unit);
+    if (previous == null || previous.getRadius() != unit.getRadius()) {
+      mask |= RADIUS;
+    }
+    return mask;
+  }
+
+  private static int diffLivingUnit(LivingUnit previous, LivingUnit unit) {
+    int mask = diffCircularUnit(previous, unit);
+    if (previous == null || previous.getLife() != unit.getLife()) {
+      mask |= LIFE;
+    }
+    if (previous == null || previous.getMaxLife() != unit.getMaxLife()) {
+      mask |= MAX_LIFE;
+    }
+    if (previous == null || !statusesEqual(previous.getStatuses(), unit.getStatuses())) {
+      mask |= STATUSES;
+    }
+    return mask;
+  }
+
+  private static void writeUnit(Out out, Unit previous, Unit unit, int mask) throws IOException {
+    if ((mask & POSITION) != 0) {
+      out.writeFixedDelta(previous == null ? 0 : previous.getX(), unit.getX(), POSITION_SCALE);
+      out.writeFixedDelta(previous == null ? 0 : previous.getY(), unit.getY(), POSITION_SCALE);
+    }
+    if ((mask & SPEED) != 0) {
+      out.writeFixedDelta(
+          previous == null ? 0 : previous.getSpeedX(), unit.getSpeedX(), SPEED_SCALE);
+      out.writeFixedDelta(
+          previous == null ? 0 : previous.getSpeedY(), unit.getSpeedY(), SPEED_SCALE);
+    }
+    if ((mask & ANGLE) != 0) {
+      out.writeFixedDelta(previous == null ? 0 : previous.getAngle(), unit.getAngle(), ANGLE_SCALE);
+    }
+    if ((mask & FACTION) != 0) {
+      out.writeEnum(unit.getFaction());
+    }
+  }
+
+  private static void writeCircularUnit(
+      Out out, CircularUnit previous, CircularUnit unit, int mask) throws IOException {
+    writeUnit(out, previous, unit, mask);
+    if ((mask & RADIUS) != 0) {
+      out.data.writeDouble(unit.getRadius());
+    }
+  }
+
+  private static void writeLivingUnit(Out out, LivingUnit previous, LivingUnit unit, int mask)
+      throws IOException {
+    writeCircularUnit(out, previous, unit, mask);
+    if ((mask & LIFE) != 0) {
+      out.writeVarInt(unit.getLife());
+    }
+    if ((mask & MAX_LIFE) != 0) {
+      out.writeVarInt(unit.getMaxLife());
+    }
+    if ((mask & STATUSES) != 0) {
+      Status[] statuses = unit.getStatuses();
+      out.writeVarInt(statuses.length);
+      for (Status status : statuses) {
+        out.writeVarLong(status.getId());
+        out.writeEnum(status.getType());
+        out.writeVarLong(status.getWizardId());
+        out.writeVarLong(status.getPlayerId());
+        out.writeVarInt(status.getRemainingDurationTicks());
+      }
+    }
+  }
+
+  /** Decoded fields shared by all units; a fresh instance per decoded unit. */
+  private static final class UnitFields {
+
+    double x;
+    double y;
+    double speedX;
+    double speedY;
+    double angle;
+    Faction faction;
+    double radius;
+    int life;
+    int maxLife;
+    Status[] statuses;
+
+    UnitFields(In in, Unit previous, int mask) throws IOException {
+      if (previous != null) {
+        x = previous.getX();
+        y = previous.getY();
+        speedX = previous.getSpeedX();
+        speedY = previous.getSpeedY();
+        angle = previous.getAngle();
+        faction = previous.getFaction();
+      }
+      if (previous instanceof CircularUnit) {
+        radius = ((CircularUnit) previous).getRadius();
+      }
+      if (previous instanceof LivingUnit) {
+        life = ((LivingUnit) previous).getLife();
+        maxLife = ((LivingUnit) previous).getMaxLife();
+        statuses = ((LivingUnit) previous).getStatuses();
+      }
+
+      if ((mask & POSITION) != 0) {
+        x = in.readFixedDelta(x, POSITION_SCALE);
+        y = in.readFixedDelta(y, POSITION_SCALE);
+      }
+      if ((mask & SPEED) != 0) {
+        speedX = in.readFixedDelta(speedX, SPEED_SCALE);
+        speedY = in.readFixedDelta(speedY, SPEED_SCALE);
+      }
+      if ((mask & ANGLE) != 0) {
+        angle = in.readFixedDelta(angle, ANGLE_SCALE);
+      }
+      if ((mask & FACTION) != 0) {
+        faction = in.readEnum(Faction.values());
+      }
+    }
+
+    void readCircular(In in, int mask) throws IOException {
+      if ((mask & RADIUS) != 0) {
+        radius = in.data.readDouble();
+      }
+    }
+
+    void readLiving(In in, int mask) throws IOException {
+      readCircular(in, mask);
+      if ((mask & LIFE) != 0) {
+        life = in.readVarInt();
+      }
+      if ((mask & MAX_LIFE) != 0) {
+        maxLife = in.readVarInt();
+      }
+      if ((mask & STATUSES) != 0) {
+        statuses = new Status[in.readVarInt()];
+        for (int i = 0; i < statuses.length; ++i) {
+          statuses[i] =
+              new Status(
+                  in.readVarLong(),
+                  in.readEnum(StatusType.values()),
+                  in.readVarLong(),
+                  in.readVarLong(),
+                  in.readVarInt());
+        }
+      }
+    }
+  }
+
+  private static boolean statusesEqual(Status[] a, Status[] b) {
+    if (a.length != b.length) {
+      return false;
+    }
+    for (int i = 0; i < a.length; ++i) {
+      if (a[i].getId() != b[i].getId()
+          || a[i].getType() != b[i].getType()
+          || a[i].getWizardId() != b[i].getWizardId()
+          || a[i].getPlayerId() != b[i].getPlayerId()
+          || a[i].getRemainingDurationTicks() != b[i].getRemainingDurationTicks()) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private static boolean messagesEqual(Message[] a, Message[] b) {
+    if (a == null || b == null) {
+      return a == b;
+    }
+    if (a.length != b.length) {
+      return false;
+    }
+    for (int i = 0; i < a.length; ++i) {
+      if (a[i].getLane() != b[i].getLane()
+          || a[i].getSkillToLearn() != b[i].getSkillToLearn()
+          || !Arrays.equals(a[i].getRawMessage(), b[i].getRawMessage())) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private static final UnitCodec<Wizard> WIZARDS =
+      new UnitCodec<Wizard>() {
+        private static final int OWNER = 1 << KIND_SHIFT;
+        private static final int ME = 1 << (KIND_SHIFT + 1);
+        private static final int MANA = 1 << (KIND_SHIFT + 2);
+        private static final int MAX_MANA = 1 << (KIND_SHIFT + 3);
+        private static final int RANGES = 1 << (KIND_SHIFT + 4);
+        private static final int XP = 1 << (KIND_SHIFT + 5);
+        private static final int LEVEL = 1 << (KIND_SHIFT + 6);
+        private static final int SKILLS = 1 << (KIND_SHIFT + 7);
+        private static final int COOLDOWNS = 1 << (KIND_SHIFT + 8);
+        private static final int MASTER = 1 << (KIND_SHIFT + 9);
+        private static final int MESSAGES = 1 << (KIND_SHIFT + 10);
+
+        public Wizard[] newArray(int length) {
+          return new Wizard[length];
+        }
+
+        public int diff(Wizard p, Wizard w) {
+          int mask = diffLivingUnit(p, w);
+          if (p == null || p.getOwnerPlayerId() != w.getOwnerPlayerId()) {
+            mask |= OWNER;
+          }
+          if (p == null || p.isMe() != w.isMe()) {
+            mask |= ME;
+          }
+          if (p == null || p.getMana() != w.getMana()) {
+            mask |= MANA;
+          }
+          if (p == null || p.getMaxMana() != w.getMaxMana()) {
+            mask |= MAX_MANA;
+          }
+          if (p == null
+              || p.getVisionRange() != w.getVisionRange()
+              || p.getCastRange() != w.getCastRange()) {
+            mask |= RANGES;
+          }
+          if (p == null || p.getXp() != w.getXp()) {
+            mask |= XP;
+          }
+          if (p == null || p.getLevel() != w.getLevel()) {
+            mask |= LEVEL;
+          }
+          if (p == null || !Arrays.equals(p.getSkills(), w.getSkills())) {
+            mask |= SKILLS;
+          }
+          if (p == null
+              || p.getRemainingActionCooldownTicks() != w.getRemainingActionCooldownTicks()
+              || !Arrays.equals(
+                  p.getRemainingCooldownTicksByAction(), w.getRemainingCooldownTicksByAction())) {
+            mask |= COOLDOWNS;
+          }
+          if (p == null || p.isMaster() != w.isMaster()) {
+            mask |= MASTER;
+          }
+          if (p == null || !messagesEqual(p.getMessages(), w.getMessages())) {
+            mask |= MESSAGES;
+          }
+          return mask;
+        }
+
+        public void write(Out out, Wizard p, Wizard w, int mask) throws IOException {
+          writeLivingUnit(out, p, w, mask);
+          if ((mask & OWNER) != 0) {
+            out.writeVarLong(w.getOwnerPlayerId());
+          }
+          if ((mask & ME) != 0) {
+            out.data.writeBoolean(w.isMe());
+          }
+          if ((mask & MANA) != 0) {
+            out.writeVarInt(w.getMana());
+          }
+          if ((mask & MAX_MANA) != 0) {
+            out.writeVarInt(w.getMaxMana());
+          }
+          if ((mask & RANGES) != 0) {
+            out.data.writeDouble(w.getVisionRange());
+            out.data.writeDouble(w.getCastRange());
+          }
+          if ((mask & XP) != 0) {
+            out.writeVarInt(w.getXp());
+          }
+          if ((mask & LEVEL) != 0) {
+            out.writeVarInt(w.getLevel());
+          }
+          if ((mask & SKILLS) != 0) {
+            SkillType[] skills = w.getSkills();
+            out.writeVarInt(skills.length);
+            for (SkillType skill : skills) {
+              out.writeEnum(skill);
+            }
+          }
+          if ((mask & COOLDOWNS) != 0) {
+            out.writeVarInt(w.getRemainingActionCooldownTicks());
+            out.writeInts(w.getRemainingCooldownTicksByAction());
+          }
+          if ((mask & MASTER) != 0) {
+            out.data.writeBoolean(w.isMaster());
+          }
+          if ((mask & MESSAGES) != 0) {
+            Message[] messages = w.getMessages();
+            out.data.writeBoolean(messages != null);
+            if (messages != null) {
+              out.writeVarInt(messages.length);
+              for (Message message : messages) {
+                out.writeEnum(message.getLane());
+                out.writeEnum(message.getSkillToLearn());
+                byte[] raw = message.getRawMessage();
+                out.data.writeBoolean(raw != null);
+                if (raw != null) {
+                  out.writeVarInt(raw.length);
+                  out.data.write(raw);
+                }
+              }
+            }
+          }
+        }
+
+        public Wizard read(In in, long id, Wizard p, int mask) throws IOException {
+          UnitFields u = new UnitFields(in, p, mask);
+          u.readLiving(in, mask);
+          long ownerPlayerId = (mask & OWNER) != 0 ? in.readVarLong() : p.getOwnerPlayerId();
+          boolean me = (mask & ME) != 0 ? in.data.readBoolean() : p.isMe();
+          int mana = (mask & MANA) != 0 ? in.readVarInt() : p.getMana();
+          int maxMana = (mask & MAX_MANA) != 0 ? in.readVarInt() : p.getMaxMana();
+          double visionRange = p == null ? 0 : p.getVisionRange();
+          double castRange = p == null ? 0 : p.getCastRange();
+          if ((mask & RANGES) != 0) {
+            visionRange = in.data.readDouble();
+            castRange = in.data.readDouble();
+          }
+          int xp = (mask & XP) != 0 ? in.readVarInt() : p.getXp();
+          int level = (mask & LEVEL) != 0 ? in.readVarInt() : p.getLevel();
+          SkillType[] skills;
+          if ((mask & SKILLS) != 0) {
+            skills = new SkillType[in.readVarInt()];
+            for (int i = 0; i < skills.length; ++i) {
+              skills[i] = in.readEnum(SkillType.values());
+            }
+          } else {
+            skills = p.getSkills();
+          }
+          int remainingActionCooldownTicks;
+          int[] remainingCooldownTicksByAction;
+          if ((mask & COOLDOWNS) != 0) {
+            remainingActionCooldownTicks = in.readVarInt();
+            remainingCooldownTicksByAction = in.readInts();
+          } else {
+            remainingActionCooldownTicks = p.getRemainingActionCooldownTicks();
+            remainingCooldownTicksByAction = p.getRemainingCooldownTicksByAction();
+          }
+          boolean master = (mask & MASTER) != 0 ? in.data.readBoolean() : p.isMaster();
+          Message[] messages;
+          if ((mask & MESSAGES) != 0) {
+            messages = null;
+            if (in.data.readBoolean()) {
+              messages = new Message[in.readVarInt()];
+              for (int i = 0; i < messages.length; ++i) {
+                LaneType lane = in.readEnum(LaneType.values());
+                SkillType skillToLearn = in.readEnum(SkillType.values());
+                byte[] raw = null;
+                if (in.data.readBoolean()) {
+                  raw = new byte[in.readVarInt()];
+                  in.data.readFully(raw);
+                }
+                messages[i] = new Message(lane, skillToLearn, raw);
+              }
+            }
+          } else {
+            messages = p.getMessages();
+          }
+          return new Wizard(
+              id,
+              u.x,
+              u.y,
+              u.speedX,
+              u.speedY,
+              u.angle,
+              u.faction,
+              u.radius,
+              u.life,
+              u.maxLife,
+              u.statuses,
+              ownerPlayerId,
+              me,
+              mana,
+              maxMana,
+              visionRange,
+              castRange,
+              xp,
+              level,
+              skills,
+              remainingActionCooldownTicks,
+              remainingCooldownTicksByAction,
+              master,
+              messages);
+        }
+      };
+
+  private static final UnitCodec<Minion> MINIONS =
+      new UnitCodec<Minion>() {
+        private static final int TYPE = 1 << KIND_SHIFT;
+        private static final int STATS = 1 << (KIND_SHIFT + 1);
+        private static final int COOLDOWN = 1 << (KIND_SHIFT + 2);
+
+        public Minion[] newArray(int length) {
+          return new Minion[length];
+        }
+
+        public int diff(Minion p, Minion m) {
+          int mask = diffLivingUnit(p, m);
+          if (p == null || p.getType() != m.getType()) {
+            mask |= TYPE;
+          }
+          if (p == null
+              || p.getVisionRange() != m.getVisionRange()
+              || p.getDamage() != m.getDamage()
+              || p.getCooldownTicks() != m.getCooldownTicks()) {
+            mask |= STATS;
+          }
+          if (p == null
+              || p.getRemainingActionCooldownTicks() != m.getRemainingActionCooldownTicks()) {
+            mask |= COOLDOWN;
+          }
+          return mask;
+        }
+
+        public void write(Out out, Minion p, Minion m, int mask) throws IOException {
+          writeLivingUnit(out, p, m, mask);
+          if ((mask & TYPE) != 0) {
+            out.writeEnum(m.getType());
+          }
+          if ((mask & STATS) != 0) {
+            out.data.writeDouble(m.getVisionRange());
+            out.writeVarInt(m.getDamage());
+            out.writeVarInt(m.getCooldownTicks());
+          }
+          if ((mask & COOLDOWN) != 0) {
+            out.writeVarInt(m.getRemainingActionCooldownTicks());
+          }
+        }
+
+        public Minion read(In in, long id, Minion p, int mask) throws IOException {
+          UnitFields u = new UnitFields(in, p, mask);
+          u.readLiving(in, mask);
+          MinionType type = (mask & TYPE) != 0 ? in.readEnum(MinionType.values()) : p.getType();
+          double visionRange;
+          int damage;
+          int cooldownTicks;
+          if ((mask & STATS) != 0) {
+            visionRange = in.data.readDouble();
+            damage = in.readVarInt();
+            cooldownTicks = in.readVarInt();
+          } else {
+            visionRange = p.getVisionRange();
+            damage = p.getDamage();
+            cooldownTicks = p.getCooldownTicks();
+          }
+          int remainingActionCooldownTicks =
+              (mask & COOLDOWN) != 0 ? in.readVarInt() : p.getRemainingActionCooldownTicks();
+          return new Minion(
+              id,
+              u.x,
+              u.y,
+              u.speedX,
+              u.speedY,
+              u.angle,
+              u.faction,
+              u.radius,
+              u.life,
+              u.maxLife,
+              u.statuses,
+              type,
+              visionRange,
+              damage,
+              cooldownTicks,
+              remainingActionCooldownTicks);
+        }
+      };
+
+  private static final UnitCodec<Projectile> PROJECTILES =
+      new UnitCodec<Projectile>() {
+        private static final int TYPE = 1 << KIND_SHIFT;
+        private static final int OWNER = 1 << (KIND_SHIFT + 1);
+
+        public Projectile[] newArray(int length) {
+          return new Projectile[length];
+        }
+
+        public int diff(Projectile p, Projectile m) {
+          int mask = diffCircularUnit(p, m);
+          if (p == null || p.getType() != m.getType()) {
+            mask |= TYPE;
+          }
+          if (p == null
+              || p.getOwnerUnitId() != m.getOwnerUnitId()
+              || p.getOwnerPlayerId() != m.getOwnerPlayerId()) {
+            mask |= OWNER;
+          }
+          return mask;
+        }
+
+        public void write(Out out, Projectile p, Projectile m, int mask) throws IOException {
+          writeCircularUnit(out, p, m, mask);
+          if ((mask & TYPE) != 0) {
+            out.writeEnum(m.getType());
+          }
+          if ((mask & OWNER) != 0) {
+            out.writeVarLong(m.getOwnerUnitId());
+            out.writeVarLong(m.getOwnerPlayerId());
+          }
+        }
+
+        public Projectile read(In in, long id, Projectile p, int mask) throws IOException {
+          UnitFields u = new UnitFields(in, p, mask);
+          u.readCircular(in, mask);
+          ProjectileType type =
+              (mask & TYPE) != 0 ? in.readEnum(ProjectileType.values()) : p.getType();
+          long ownerUnitId;
+          long ownerPlayerId;
+          if ((mask & OWNER) != 0) {
+            ownerUnitId = in.readVarLong();
+            ownerPlayerId = in.readVarLong();
+          } else {
+            ownerUnitId = p.getOwnerUnitId();
+            ownerPlayerId = p.getOwnerPlayerId();
+          }
+          return new Projectile(
+              id,
+              u.x,
+              u.y,
+              u.speedX,
+              u.speedY,
+              u.angle,
+              u.faction,
+              u.radius,
+              type,
+              ownerUnitId,
+              ownerPlayerId);
+        }
+      };
+
+  private static final UnitCodec<Bonus> BONUSES =
+      new UnitCodec<Bonus>() {
+        private static final int TYPE = 1 << KIND_SHIFT;
+
+        public Bonus[] newArray(int length) {
+          return new Bonus[length];
+        }
+
+        public int diff(Bonus p, Bonus b) {
+          int mask = diffCircularUnit(p, b);
+          if (p == null || p.getType() != b.getType()) {
+            mask |= TYPE;
+          }
+          return mask;
+        }
+
+        public void write(Out out, Bonus p, Bonus b, int mask) throws IOException {
+          writeCircularUnit(out, p, b, mask);
+          if ((mask & TYPE) != 0) {
+            out.writeEnum(b.getType());
+          }
+        }
+
+        public Bonus read(In in, long id, Bonus p, int mask) throws IOException {
+          UnitFields u = new UnitFields(in, p, mask);
+          u.readCircular(in, mask);
+          BonusType type = (mask & TYPE) != 0 ? in.readEnum(BonusType.values()) : p.getType();
+          return new Bonus(id, u.x, u.y, u.speedX, u.speedY, u.angle, u.faction, u.radius, type);
+        }
+      };
+
+  private static final UnitCodec<Building> BUILDINGS =
+      new UnitCodec<Building>() {
+        private static final int TYPE = 1 << KIND_SHIFT;
+        private static final int STATS = 1 << (KIND_SHIFT + 1);
+        private static final int COOLDOWN = 1 << (KIND_SHIFT + 2);
+
+        public Building[] newArray(int length) {
+          return new Building[length];
+        }
+
+        public int diff(Building p, Building b) {
+          int mask = diffLivingUnit(p, b);
+          if (p == null || p.getType() != b.getType()) {
+            mask |= TYPE;
+          }
+          if (p == null
+              || p.getVisionRange() != b.getVisionRange()
+              || p.getAttackRange() != b.getAttackRange()
+              || p.getDamage() != b.getDamage()
+              || p.getCooldownTicks() != b.getCooldownTicks()) {
+            mask |= STATS;
+          }
+          if (p == null
+              || p.getRemainingActionCooldownTicks() != b.getRemainingActionCooldownTicks()) {
+            mask |= COOLDOWN;
+          }
+          return mask;
+        }
+
+        public void write(Out out, Building p, Building b, int mask) throws IOException {
+          writeLivingUnit(out, p, b, mask);
+          if ((mask & TYPE) != 0) {
+            out.writeEnum(b.getType());
+          }
+          if ((mask & STATS) != 0) {
+            out.data.writeDouble(b.getVisionRange());
+            out.data.writeDouble(b.getAttackRange());
+            out.writeVarInt(b.getDamage());
+            out.writeVarInt(b.getCooldownTicks());
+          }
+          if ((mask & COOLDOWN) != 0) {
+            out.writeVarInt(b.getRemainingActionCooldownTicks());
+          }
+        }
+
+        public Building read(In in, long id, Building p, int mask) throws IOException {
+          UnitFields u = new UnitFields(in, p, mask);
+          u.readLiving(in, mask);
+          BuildingType type =
+              (mask & TYPE) != 0 ? in.readEnum(BuildingType.values()) : p.getType();
+          double visionRange;
+          double attackRange;
+          int damage;
+          int cooldownTicks;
+          if ((mask & STATS) != 0) {
+            visionRange = in.data.readDouble();
+            attackRange = in.data.readDouble();
+            damage = in.readVarInt();
+            cooldownTicks = in.readVarInt();
+          } else {
+            visionRange = p.getVisionRange();
+            attackRange = p.getAttackRange();
+            damage = p.getDamage();
+            cooldownTicks = p.getCooldownTicks();
+          }
+          int remainingActionCooldownTicks =
+              (mask & COOLDOWN) != 0 ? in.readVarInt() : p.getRemainingActionCooldownTicks();
+          return new Building(
+              id,
+              u.x,
+              u.y,
+              u.speedX,
+              u.speedY,
+              u.angle,
+              u.faction,
+              u.radius,
+              u.life,
+              u.maxLife,
+              u.statuses,
+              type,
+              visionRange,
+              attackRange,
+              damage,
+              cooldownTicks,
+              remainingActionCooldownTicks);
+        }
+      };
+
+  private static final UnitCodec<Tree> TREES =
+      new UnitCodec<Tree>() {
+        public Tree[] newArray(int length) {
+          return new Tree[length];
+        }
+
+        public int diff(Tree p, Tree t) {
+          return diffLivingUnit(p, t);
+        }
+
+        public void write(Out out, Tree p, Tree t, int mask) throws IOException {
+          writeLivingUnit(out, p, t, mask);
+        }
+
+        public Tree read(In in, long id, Tree p, int mask) throws IOException {
+          UnitFields u = new UnitFields(in, p, mask);
+          u.readLiving(in, mask);
+          return new Tree(
+              id,
+              u.x,
+              u.y,
+              u.speedX,
+              u.speedY,
+              u.angle,
+              u.faction,
+              u.radius,
+              u.life,
+              u.maxLife,
+              u.statuses);
+        }
+      };
+
+  private static long fixed(double value, double scale) {
+    return Math.round(value * scale);
+  }
+
+  private static final class Out {
+
+    final DataOutputStream data;
+
+    Out(DataOutputStream data) {
+      this.data = data;
+    }
+
+    void writeVarLong(long value) throws IOException {
+      long zigzag = (value << 1) ^ (value >> 63);
+      while ((zigzag & ~0x7FL) != 0) {
+        data.writeByte((int) ((zigzag & 0x7F) | 0x80));
+        zigzag >>>= 7;
+      }
+      data.writeByte((int) zigzag);
+    }
+
+    void writeVarInt(int value) throws IOException {
+      writeVarLong(value);
+    }
+
+    void writeFixedDelta(double previous, double value, double scale) throws IOException {
+      writeVarLong(fixed(value, scale) - fixed(previous, scale));
+    }
+
+    void writeInts(int[] values) throws IOException {
+      writeVarInt(values == null ? -1 : values.length);
+      if (values != null) {
+        for (int value : values) {
+          writeVarInt(value);
+        }
+      }
+    }
+
+    void writeString(String value) throws IOException {
+      byte[] bytes = value == null ? null : value.getBytes(StandardCharsets.UTF_8);
+      writeVarInt(bytes == null ? -1 : bytes.length);
+      if (bytes != null) {
+        data.write(bytes);
+      }
+    }
+
+    void writeEnum(Enum<?> value) throws IOException {
+      writeVarInt(value == null ? -1 : value.ordinal());
+    }
+  }
+
+  private static final class In {
+
+    final DataInputStream data;
+
+    In(DataInputStream data) {
+      this.data = data;
+    }
+
+    long readVarLong() throws IOException {
+      long zigzag = 0;
+      for (int shift = 0; ; shift += 7) {
+        int b = data.readUnsignedByte();
+        zigzag |= (long) (b & 0x7F) << shift;
+        if ((b & 0x80) == 0) {
+          break;
+        }
+      }
+      return (zigzag >>> 1) ^ -(zigzag & 1);
+    }
+
+    int readVarInt() throws IOException {
+      return (int) readVarLong();
+    }
+
+    double readFixedDelta(double previous, double scale) throws IOException {
+      return (fixed(previous, scale) + readVarLong()) / scale;
+    }
+
+    int[] readInts() throws IOException {
+      int length = readVarInt();
+      if (length < 0) {
+        return null;
+      }
+      int[] values = new int[length];
+      for (int i = 0; i < length; ++i) {
+        values[i] = readVarInt();
+      }
+      return values;
+    }
+
+    String readString() throws IOException {
+      int length = readVarInt();
+      if (length < 0) {
+        return null;
+      }
+      byte[] bytes = new byte[length];
+      data.readFully(bytes);
+      return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    <E extends Enum<E>> E readEnum(E[] values) throws IOException {
+      int ordinal = readVarInt();
+      return ordinal < 0 ? null : values[ordinal];
+    }
+  }
+}
@@ -0,0 +1,171 @@
+import java.io.File;
+import java.lang.reflect.Method;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Replays recorded games (see {@link GameLog}) through the current build and through builds from
+ * {@code strategies/}, and fails if the current build's p99 tick latency is worse than any
+ * baseline's by more than the threshold.
+ *
+ * <p>Every build is loaded in its own class loader with the current build appended to its class
+ * path, so old jars run their own {@code MyStrategy} and {@code model} while {@link Replay} and
+ * {@link GameLog}, which they do not have, come from the current build. Measured runs of the
+ * builds are interleaved so that JIT and GC drift affects all of them equally.
+ *
+ * <p>Usage: {@code java -cp out/strategy.jar LatencyGate [--current <jar>] [--baseline <jar>]...
+ * [--threshold 0.10] [--warmup 2] [--runs 3] <game log>...}
+ */
+public final class LatencyGate {
+
+  public static void main(String[] args) throws Exception {
+    String current = "./out/strategy.jar";
+    List<String> baselines = new ArrayList<>();
+    List<String> logs = new ArrayList<>();
+    double threshold = 0.10;
+    int warmupRuns = 2;
+    int measuredRuns = 3;
+
+    for (int i = 0; i < args.length; ++i) {
+      switch (args[i]) {
+        case "--current":
+          current = args[++i];
+          break;
+        case "--baseline":
+          baselines.add(args[++i]);
+          break;
+        case "--threshold":
+          threshold = Double.parseDouble(args[++i]);
+          break;
+        case "--warmup":
+          warmupRuns = Integer.parseInt(args[++i]);
+          break;
+        case "--runs":
+          measuredRuns = Integer.parseInt(args[++i]);
+          break;
+        default:
+          logs.add(args[i]);
+      }
+    }
+    if (baselines.isEmpty() || logs.isEmpty()) {
+      System.err.println(
+          "usage: LatencyGate [--current <jar>] --baseline <jar>... [--threshold 0.10]"
+              + " [--warmup 2] [--runs 3] <game log>...");
+      System.exit(2);
+    }
+
+    List<Build> builds = new ArrayList<>();
+    builds.add(new Build(current, current, logs));
+    for (String baseline : baselines) {
+      builds.add(new Build(baseline, current, logs));
+    }
+
+    for (int run = 0; run < warmupRuns; ++run) {
+      for (Build build : builds) {
+        build.run(false);
+      }
+    }
+    for (int run = 0; run < measuredRuns; ++run) {
+      for (Build build : builds) {
+        build.run(true);
+      }
+    }
+
+    System.out.println(
+        String.format(
+            "%-32s %10s %10s %10s %10s %14s",
+            "build", "p50 us", "p90 us", "p99 us", "max us", "alloc KB/tick"));
+    for (Build build : builds) {
+      System.out.println(build.summary());
+    }
+
+    Build currentBuild = builds.get(0);
+    boolean failed = false;
+    for (Build baseline : builds.subList(1, builds.size())) {
+      double regression = (double) currentBuild.percentile(99) / baseline.percentile(99) - 1;
+      System.out.println(
+          String.format(
+              "p99 vs %s: %+.1f%% (threshold %+.1f%%)",
+              baseline.name, regression * 100, threshold * 100));
+      if (regression > threshold) {
+        failed = true;
+      }
+    }
+    if (failed) {
+      System.out.println("FAIL: p99 tick latency regressed");
+      System.exit(1);
+    }
+    System.out.println("OK");
+  }
+
+  private static final class Build {
+
+    private final String name;
+    private final List<Object> replays = new ArrayList<>();
+    private final List<Integer> tickCounts = new ArrayList<>();
+    private final Method run;
+    private long[] nanos = new long[0];
+    private long[] allocatedBytes = new long[0];
+
+    Build(String jar, String current, List<String> logs) throws Exception {
+      name = new File(jar).getName();
+      ClassLoader loader =
+          new URLClassLoader(
+              jar.equals(current) ? new URL[] {toUrl(jar)} : new URL[] {toUrl(jar), toUrl(current)},
+              ClassLoader.getPlatformClassLoader());
+      Class<?> gameLog = loader.loadClass("GameLog");
+      Class<?> recording = loader.loadClass("GameLog$Recording");
+      Class<?> replay = loader.loadClass("Replay");
+      for (String log : logs) {
+        Object loaded = gameLog.getMethod("read", String.class).invoke(null, log);
+        replays.add(replay.getConstructor(recording).newInstance(loaded));
+        tickCounts.add(((List<?>) recording.getMethod("getTicks").invoke(loaded)).size());
+      }
+      run = replay.getMethod("run", long[].class, long[].class);
+    }
+
+    void run(boolean measured) throws Exception {
+      for (int i = 0; i < replays.size(); ++i) {
+        long[] tickNanos = new long[tickCounts.get(i)];
+        long[] tickAllocatedBytes = new long[tickCounts.get(i)];
+        run.invoke(replays.get(i), tickNanos, tickAllocatedBytes);
+        if (measured) {
+          nanos = concat(nanos, tickNanos);
+          allocatedBytes = concat(allocatedBytes, tickAllocatedBytes);
+        }
+      }
+    }
+
+    long percentile(double percentile) {
+      long[] sorted = nanos.clone();
+      Arrays.sort(sorted);
+      int index = (int) Math.ceil(percentile / 100 * sorted.length) - 1;
+      return sorted[Math.max(0, Math.min(index, sorted.length - 1))];
+    }
+
+    String summary() {
+      return String.format(
+          "%-32s %10d %10d %10d %10d %14.1f",
+          name,
+          percentile(50) / 1000,
+          percentile(90) / 1000,
+          percentile(99) / 1000,
+          percentile(100) / 1000,
+          Arrays.stream(allocatedBytes).average().orElse(0) / 1024);
+    }
+
+    private static long[] concat(long[] a, long[] b) {
+      long[] result = Arrays.copyOf(a, a.length + b.length);
+      System.arraycopy(b, 0, result, a.length, b.length);
+      return result;
+    }
+
+    private static URL toUrl(String path) throws MalformedURLException {
+      return new File(path).toURI().toURL();
+    }
+  }
+}
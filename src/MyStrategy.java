@@ -1,9 +1,22 @@
 import java.awt.Color;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
+import java.util.Comparator;
+import java.util.EnumSet;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
@@ -11,11 +24,17 @@ import java.util.Random;
 import java.util.Set;
 import java.util.SortedSet;
 import java.util.TreeSet;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
 import java.util.function.Function;
 import java.util.function.Predicate;
 import java.util.stream.Collectors;
 import java.util.stream.IntStream;
 import java.util.stream.Stream;
+import java.util.zip.CRC32;
 
 import model.ActionType;
 import model.Building;
@@ -26,7 +45,10 @@ import model.LivingUnit;
 import model.Minion;
 import model.MinionType;
 import model.Move;
+import model.Projectile;
+import model.ProjectileType;
 import model.SkillType;
+import model.Status;
 import model.StatusType;
 import model.Tree;
 import model.Unit;
@@ -35,22 +57,49 @@ import model.World;
 
 public final class MyStrategy implements Strategy {
 
-  private static final int SQUARE_CRUDENESS = 20;
+  /** The side of a {@link Square} that the limits counted in squares are tuned to. */
+  private static final int DEFAULT_SQUARE_CRUDENESS = 20;
+  /** The side of a {@link Square}, from the {@code square.size} system property if it is set. */
+  private static final int SQUARE_CRUDENESS =
+      Integer.getInteger("square.size", DEFAULT_SQUARE_CRUDENESS);
   private static final double SAFETY_EPS = 15;
+  private static final double DANGER_FALLOFF = 100;
 
   private static final boolean PRINT_MOVE_TIME = false;
+  /** Writes the pathfinder stats of each wizard when the game ends, see {@link PathfinderStats}. */
+  private static final boolean DUMP_PATHFINDER_STATS = Boolean.getBoolean("pathfinder.stats");
+  private static final boolean DUMP_OBSERVER_STATS = false;
+  private static final String STATS_DIRECTORY = "./out";
   private static final boolean LOAD_DEBUG_VISUALIZER = false;
-  private static final boolean DEBUG_DRAW_PATH = true;
-  private static final boolean DEBUG_FIND_PATH = false;
-  private static final boolean DEBUG_DRAW_WALLS = false;
-  private static final boolean DEBUG_DRAW_WEAK_TREES = false;
-  private static final boolean DEBUG_CIRCLE_OBSTACLES = false;
-  private static final boolean DEBUG_DRAW_MOVING_UNITS = false;
-  private static final boolean DEBUG_SHOW_OBSTACLE_HP = false;
-  private static final boolean DEBUG_SHOW_COOLDOWN_TICKS = true;
-
+  private static final boolean LOAD_DEBUG_TRACE_RECORDER = false;
+  private static final String DEBUG_TRACE_DIRECTORY = "./out";
+  private static final boolean LOAD_FLIGHT_RECORDER_PROFILER = true;
+  private static final boolean LOAD_VECTOR_RANGE_KERNELS = true;
+  private static final boolean USE_ROLLOUT_SEARCH = Boolean.getBoolean("rollout.search");
+  private static final boolean USE_BIDIRECTIONAL_SEARCH =
+      Boolean.getBoolean("bidirectional.search");
+  private static final int ROLLOUT_THREADS = Runtime.getRuntime().availableProcessors();
+  private static final int ROLLOUT_TICKS = 30;
+  private static final long ROLLOUT_BUDGET_NANOS = 5000000;
+  private static final double ROLLOUT_MIN_GAIN = 1;
+  private static final int STATIC_WALLS_PERIOD = 10;
+  /** 0 spreads the static walls evenly over their period whatever the time, see Scheduler. */
+  private static final long STATIC_WALLS_SLICE_NANOS = 0;
+
+  static final RangeKernels RANGE_KERNELS = loadRangeKernels();
+
+  private final TeamModel team;
   private Brain brain;
 
+  public MyStrategy() {
+    this(null);
+  }
+
+  /** Shares the team model with the other strategies of the team; null keeps it private. */
+  public MyStrategy(TeamModel team) {
+    this.team = team;
+  }
+
   private static double binarySearch(double a, double b, Predicate<Double> p) {
     final double tolerance = 1e-6;
     for (int i = 0; b - a > tolerance && i < 50; ++i) {
@@ -64,6 +113,18 @@ public final class MyStrategy implements Strategy {
     return a;
   }
 
+  private static RangeKernels loadRangeKernels() {
+    if (LOAD_VECTOR_RANGE_KERNELS) {
+      try {
+        Class<?> clazz = Class.forName("VectorRangeKernels");
+        return (RangeKernels) clazz.getConstructor().newInstance();
+      } catch (Exception | LinkageError e) {
+        // Not bundled (e.g. strategy-no-debug) or started without jdk.incubator.vector.
+      }
+    }
+    return new ScalarRangeKernels();
+  }
+
   private static boolean distanceLessThan(Unit a, Unit b, double distance) {
     double dx = a.getX() - b.getX();
     double dy = a.getY() - b.getY();
@@ -93,7 +154,7 @@ public final class MyStrategy implements Strategy {
     long startTime = PRINT_MOVE_TIME ? System.nanoTime() : 0;
 
     if (brain == null) {
-      brain = new Brain(self, world, game);
+      brain = new Brain(self, world, game, team != null ? team : new TeamModel(game));
     }
     brain.move(self, world, game, move);
 
@@ -103,9 +164,35 @@ public final class MyStrategy implements Strategy {
     }
   }
 
+  public void gameFinished() {
+    if (brain == null) {
+      return;
+    }
+    if (brain.debug != null) {
+      brain.debug.close();
+    }
+    brain.team.shutdownRolloutSearch();
+    if (DUMP_PATHFINDER_STATS) {
+      writeStats("pathfinder-" + brain.self.getId() + ".txt", brain.field.getStats().report());
+    }
+    if (DUMP_OBSERVER_STATS) {
+      writeStats("observers-" + brain.self.getId() + ".txt", brain.reportObserverStats());
+    }
+  }
+
+  private static void writeStats(String fileName, String report) {
+    try {
+      Files.write(Paths.get(STATS_DIRECTORY, fileName), report.getBytes(StandardCharsets.UTF_8));
+    } catch (IOException e) {
+      throw new RuntimeException(e);
+    }
+  }
+
   public interface Visualizer {
 
-    void sync();
+    void sync(int tickIndex);
+
+    void close();
 
     void drawBeforeScene();
 
@@ -132,801 +219,1037 @@ public final class MyStrategy implements Strategy {
     void showText(double x, double y, String msg, Color color);
   }
 
-  private static class Brain {
+  public interface Profiler {
 
-    private final Faction ALLY_FRACTION;
-    private final Faction ENEMY_FRACTION;
+    void tickStarted(int tickIndex, long wizardId);
 
-    private final Random random;
-    private final Visualizer debug;
-    private final List<WorldObserver> observers;
-    private final Stuck stuck;
-    private final BonusFinder bonusFinder;
-    private final Field field;
-    private final Walker walker;
-    private final Shooter shooter;
-    private final Skiller skiller;
-    protected Wizard self;
-    protected World world;
-    protected Game game;
+    void tickFinished();
 
-    public Brain(Wizard self, World world, Game game) {
-      this.self = self;
-      this.world = world;
-      this.game = game;
+    void findPathStarted();
 
-      ALLY_FRACTION = self.getFaction();
-      ENEMY_FRACTION = ALLY_FRACTION == Faction.ACADEMY ? Faction.RENEGADES : Faction.ACADEMY;
+    void findPathFinished(
+        int startP, int startQ, int goalP, int goalQ, int nodesExpanded, boolean completed);
 
-      Visualizer debugVisualizer = null;
-      if (LOAD_DEBUG_VISUALIZER) {
-        try {
-          Class<?> clazz = Class.forName("DebugVisualizer");
-          Object instance = clazz.getConstructor().newInstance();
-          debugVisualizer = (Visualizer) instance;
-        } catch (Exception e) {
-          throw new RuntimeException("Cannot load DebugVisualizer");
+    void targetChosen(
+        String reason,
+        double walkingTargetX,
+        double walkingTargetY,
+        long shootingTargetId,
+        String action);
+  }
+
+  /**
+   * Range queries over units given as coordinate arrays, as in {@link UnitSet}. Unit i is in
+   * range of a point if it is closer than {@code range[i] + extra}, or just {@code extra} if
+   * {@code range} is null, compared like {@link #distanceLessThan}. Implemented by {@link
+   * ScalarRangeKernels} and, where the jdk.incubator.vector module is present, by
+   * VectorRangeKernels.
+   */
+  public interface RangeKernels {
+
+    /** Writes the indices of the units in range of (px, py) to out and returns their number. */
+    int selectInRange(
+        double[] x,
+        double[] y,
+        double[] range,
+        double extra,
+        int count,
+        double px,
+        double py,
+        int[] out);
+
+    boolean anyInRange(
+        double[] x, double[] y, double[] range, double extra, int count, double px, double py);
+
+    /** The index of the unit closest to (px, py), the first of equally close ones, or -1. */
+    int nearest(double[] x, double[] y, int count, double px, double py);
+  }
+
+  static final class ScalarRangeKernels implements RangeKernels {
+
+    public int selectInRange(
+        double[] x,
+        double[] y,
+        double[] range,
+        double extra,
+        int count,
+        double px,
+        double py,
+        int[] out) {
+      int selected = 0;
+      for (int i = 0; i < count; ++i) {
+        if (isInRange(x, y, range, extra, i, px, py)) {
+          out[selected++] = i;
         }
       }
-      debug = debugVisualizer;
+      return selected;
+    }
 
-      random = new Random(game.getRandomSeed());
+    public boolean anyInRange(
+        double[] x, double[] y, double[] range, double extra, int count, double px, double py) {
+      for (int i = 0; i < count; ++i) {
+        if (isInRange(x, y, range, extra, i, px, py)) {
+          return true;
+        }
+      }
+      return false;
+    }
 
-      observers = new ArrayList<>();
+    public int nearest(double[] x, double[] y, int count, double px, double py) {
+      int nearest = -1;
+      double nearestDistance = Double.POSITIVE_INFINITY;
+      for (int i = 0; i < count; ++i) {
+        double dx = x[i] - px;
+        double dy = y[i] - py;
+        double distance = dx * dx + dy * dy;
+        if (distance < nearestDistance) {
+          nearest = i;
+          nearestDistance = distance;
+        }
+      }
+      return nearest;
+    }
 
-      stuck = new Stuck(this, debug, random);
-      observers.add(stuck);
+    private static boolean isInRange(
+        double[] x, double[] y, double[] range, double extra, int i, double px, double py) {
+      double dx = x[i] - px;
+      double dy = y[i] - py;
+      double r = range == null ? extra : range[i] + extra;
+      return dx * dx + dy * dy < r * r;
+    }
+  }
 
-      bonusFinder = new BonusFinder(this, debug, game);
-      observers.add(bonusFinder);
+  /** Units with a range each, as coordinate arrays for {@link RangeKernels}. */
+  static final class UnitSet {
 
-      field = new Field(this, debug, self, game);
-      observers.add(field);
+    private int count;
+    private LivingUnit[] units = new LivingUnit[64];
+    private double[] x = new double[64];
+    private double[] y = new double[64];
+    private double[] range = new double[64];
 
-      walker = new Walker(this, debug);
-      observers.add(walker);
+    void clear() {
+      count = 0;
+    }
 
-      shooter = new Shooter(this, debug);
-      observers.add(shooter);
+    void add(LivingUnit unit, double unitRange) {
+      if (count == units.length) {
+        units = Arrays.copyOf(units, 2 * count);
+        x = Arrays.copyOf(x, 2 * count);
+        y = Arrays.copyOf(y, 2 * count);
+        range = Arrays.copyOf(range, 2 * count);
+      }
+      units[count] = unit;
+      x[count] = unit.getX();
+      y[count] = unit.getY();
+      range[count] = unitRange;
+      ++count;
+    }
 
-      skiller = new Skiller(this, debug);
-      observers.add(skiller);
+    /** Whether any unit is closer to the point than its range plus {@code extra}. */
+    boolean anyInRange(double px, double py, double extra) {
+      return RANGE_KERNELS.anyInRange(x, y, range, extra, count, px, py);
+    }
 
-      if (debug != null) {
-        printGameParameters();
-      }
+    LivingUnit nearest(double px, double py) {
+      int i = RANGE_KERNELS.nearest(x, y, count, px, py);
+      return i == -1 ? null : units[i];
     }
+  }
 
-    private void printGameParameters() {
-      System.out.println("RandomSeed = " + game.getRandomSeed());
-      System.out.println("TickCount = " + game.getTickCount());
-      System.out.println("MapSize = " + game.getMapSize());
-      System.out.println("isSkillsEnabled = " + game.isSkillsEnabled());
-      System.out.println("isRawMessagesEnabled = " + game.isRawMessagesEnabled());
-      System.out.println("FriendlyFireDamageFactor = " + game.getFriendlyFireDamageFactor());
-      System.out.println("BuildingDamageScoreFactor = " + game.getBuildingDamageScoreFactor());
-      System.out.println(
-          "BuildingEliminationScoreFactor = " + game.getBuildingEliminationScoreFactor());
-      System.out.println("MinionDamageScoreFactor = " + game.getMinionDamageScoreFactor());
-      System.out.println(
-          "MinionEliminationScoreFactor = " + game.getMinionEliminationScoreFactor());
-      System.out.println("WizardDamageScoreFactor = " + game.getWizardDamageScoreFactor());
-      System.out.println(
-          "WizardEliminationScoreFactor = " + game.getWizardEliminationScoreFactor());
-      System.out.println("TeamWorkingScoreFactor = " + game.getTeamWorkingScoreFactor());
-      System.out.println("VictoryScore = " + game.getVictoryScore());
-      System.out.println("ScoreGainRange = " + game.getScoreGainRange());
-      System.out.println("RawMessageMaxLength = " + game.getRawMessageMaxLength());
-      System.out.println("RawMessageTransmissionSpeed = " + game.getRawMessageTransmissionSpeed());
-      System.out.println("WizardRadius = " + game.getWizardRadius());
-      System.out.println("WizardCastRange = " + game.getWizardCastRange());
-      System.out.println("WizardVisionRange = " + game.getWizardVisionRange());
-      System.out.println("WizardForwardSpeed = " + game.getWizardForwardSpeed());
-      System.out.println("WizardBackwardSpeed = " + game.getWizardBackwardSpeed());
-      System.out.println("WizardStrafeSpeed = " + game.getWizardStrafeSpeed());
-      System.out.println("WizardBaseLife = " + game.getWizardBaseLife());
-      System.out.println("WizardLifeGrowthPerLevel = " + game.getWizardLifeGrowthPerLevel());
-      System.out.println("WizardBaseMana = " + game.getWizardBaseMana());
-      System.out.println("WizardManaGrowthPerLevel = " + game.getWizardManaGrowthPerLevel());
-      System.out.println("WizardBaseLifeRegeneration = " + game.getWizardBaseLifeRegeneration());
-      System.out.println(
-          "WizardLifeRegenerationGrowthPerLevel = "
-              + game.getWizardLifeRegenerationGrowthPerLevel());
-      System.out.println("WizardBaseManaRegeneration = " + game.getWizardBaseManaRegeneration());
-      System.out.println(
-          "WizardManaRegenerationGrowthPerLevel = "
-              + game.getWizardManaRegenerationGrowthPerLevel());
-      System.out.println("WizardMaxTurnAngle = " + game.getWizardMaxTurnAngle());
-      System.out.println(
-          "WizardMaxResurrectionDelayTicks = " + game.getWizardMaxResurrectionDelayTicks());
-      System.out.println(
-          "WizardMinResurrectionDelayTicks = " + game.getWizardMinResurrectionDelayTicks());
-      System.out.println("WizardActionCooldownTicks = " + game.getWizardActionCooldownTicks());
-      System.out.println("StaffCooldownTicks = " + game.getStaffCooldownTicks());
-      System.out.println("MagicMissileCooldownTicks = " + game.getMagicMissileCooldownTicks());
-      System.out.println("FrostBoltCooldownTicks = " + game.getFrostBoltCooldownTicks());
-      System.out.println("FireballCooldownTicks = " + game.getFireballCooldownTicks());
-      System.out.println("HasteCooldownTicks = " + game.getHasteCooldownTicks());
-      System.out.println("ShieldCooldownTicks = " + game.getShieldCooldownTicks());
-      System.out.println("MagicMissileManacost = " + game.getMagicMissileManacost());
-      System.out.println("FrostBoltManacost = " + game.getFrostBoltManacost());
-      System.out.println("FireballManacost = " + game.getFireballManacost());
-      System.out.println("HasteManacost = " + game.getHasteManacost());
-      System.out.println("ShieldManacost = " + game.getShieldManacost());
-      System.out.println("StaffDamage = " + game.getStaffDamage());
-      System.out.println("StaffSector = " + game.getStaffSector());
-      System.out.println("StaffRange = " + game.getStaffRange());
-      System.out.println("LevelUpXpValues = " + game.getLevelUpXpValues());
-      System.out.println("MinionRadius = " + game.getMinionRadius());
-      System.out.println("MinionVisionRange = " + game.getMinionVisionRange());
-      System.out.println("MinionSpeed = " + game.getMinionSpeed());
-      System.out.println("MinionMaxTurnAngle = " + game.getMinionMaxTurnAngle());
-      System.out.println("MinionLife = " + game.getMinionLife());
-      System.out.println(
-          "FactionMinionAppearanceIntervalTicks = "
-              + game.getFactionMinionAppearanceIntervalTicks());
-      System.out.println(
-          "OrcWoodcutterActionCooldownTicks = " + game.getOrcWoodcutterActionCooldownTicks());
-      System.out.println("OrcWoodcutterDamage = " + game.getOrcWoodcutterDamage());
-      System.out.println("OrcWoodcutterAttackSector = " + game.getOrcWoodcutterAttackSector());
-      System.out.println("OrcWoodcutterAttackRange = " + game.getOrcWoodcutterAttackRange());
-      System.out.println(
-          "FetishBlowdartActionCooldownTicks = " + game.getFetishBlowdartActionCooldownTicks());
-      System.out.println("FetishBlowdartAttackRange = " + game.getFetishBlowdartAttackRange());
-      System.out.println("FetishBlowdartAttackSector = " + game.getFetishBlowdartAttackSector());
-      System.out.println("BonusRadius = " + game.getBonusRadius());
-      System.out.println(
-          "BonusAppearanceIntervalTicks = " + game.getBonusAppearanceIntervalTicks());
-      System.out.println("BonusScoreAmount = " + game.getBonusScoreAmount());
-      System.out.println("DartRadius = " + game.getDartRadius());
-      System.out.println("DartSpeed = " + game.getDartSpeed());
-      System.out.println("DartDirectDamage = " + game.getDartDirectDamage());
-      System.out.println("MagicMissileRadius = " + game.getMagicMissileRadius());
-      System.out.println("MagicMissileSpeed = " + game.getMagicMissileSpeed());
-      System.out.println("MagicMissileDirectDamage = " + game.getMagicMissileDirectDamage());
-      System.out.println("FrostBoltRadius = " + game.getFrostBoltRadius());
-      System.out.println("FrostBoltSpeed = " + game.getFrostBoltSpeed());
-      System.out.println("FrostBoltDirectDamage = " + game.getFrostBoltDirectDamage());
-      System.out.println("FireballRadius = " + game.getFireballRadius());
-      System.out.println("FireballSpeed = " + game.getFireballSpeed());
-      System.out.println(
-          "FireballExplosionMaxDamageRange = " + game.getFireballExplosionMaxDamageRange());
-      System.out.println(
-          "FireballExplosionMinDamageRange = " + game.getFireballExplosionMinDamageRange());
-      System.out.println("FireballExplosionMaxDamage = " + game.getFireballExplosionMaxDamage());
-      System.out.println("FireballExplosionMinDamage = " + game.getFireballExplosionMinDamage());
-      System.out.println("GuardianTowerRadius = " + game.getGuardianTowerRadius());
-      System.out.println("GuardianTowerVisionRange = " + game.getGuardianTowerVisionRange());
-      System.out.println("GuardianTowerLife = " + game.getGuardianTowerLife());
-      System.out.println("GuardianTowerAttackRange = " + game.getGuardianTowerAttackRange());
-      System.out.println("GuardianTowerDamage = " + game.getGuardianTowerDamage());
-      System.out.println("GuardianTowerCooldownTicks = " + game.getGuardianTowerCooldownTicks());
-      System.out.println("FactionBaseRadius = " + game.getFactionBaseRadius());
-      System.out.println("FactionBaseVisionRange = " + game.getFactionBaseVisionRange());
-      System.out.println("FactionBaseLife = " + game.getFactionBaseLife());
-      System.out.println("FactionBaseAttackRange = " + game.getFactionBaseAttackRange());
-      System.out.println("FactionBaseDamage = " + game.getFactionBaseDamage());
-      System.out.println("FactionBaseCooldownTicks = " + game.getFactionBaseCooldownTicks());
-      System.out.println("BurningDurationTicks = " + game.getBurningDurationTicks());
-      System.out.println("BurningSummaryDamage = " + game.getBurningSummaryDamage());
-      System.out.println("EmpoweredDurationTicks = " + game.getEmpoweredDurationTicks());
-      System.out.println("EmpoweredDamageFactor = " + game.getEmpoweredDamageFactor());
-      System.out.println("FrozenDurationTicks = " + game.getFrozenDurationTicks());
-      System.out.println("HastenedDurationTicks = " + game.getHastenedDurationTicks());
-      System.out.println("HastenedBonusDurationFactor = " + game.getHastenedBonusDurationFactor());
-      System.out.println("HastenedMovementBonusFactor = " + game.getHastenedMovementBonusFactor());
-      System.out.println("HastenedRotationBonusFactor = " + game.getHastenedRotationBonusFactor());
-      System.out.println("ShieldedDurationTicks = " + game.getShieldedDurationTicks());
-      System.out.println("ShieldedBonusDurationFactor = " + game.getShieldedBonusDurationFactor());
-      System.out.println(
-          "ShieldedDirectDamageAbsorptionFactor = "
-              + game.getShieldedDirectDamageAbsorptionFactor());
-      System.out.println("AuraSkillRange = " + game.getAuraSkillRange());
-      System.out.println("RangeBonusPerSkillLevel = " + game.getRangeBonusPerSkillLevel());
-      System.out.println(
-          "MagicalDamageBonusPerSkillLevel = " + game.getMagicalDamageBonusPerSkillLevel());
-      System.out.println(
-          "StaffDamageBonusPerSkillLevel = " + game.getStaffDamageBonusPerSkillLevel());
-      System.out.println(
-          "MovementBonusFactorPerSkillLevel = " + game.getMovementBonusFactorPerSkillLevel());
-      System.out.println(
-          "MagicalDamageAbsorptionPerSkillLevel = "
-              + game.getMagicalDamageAbsorptionPerSkillLevel());
+  /**
+   * Danger on the {@link Square} grid: for every square, the damage per tick that enemies could
+   * deal at its center. Within an enemy's range the square gets its full damage rate, which then
+   * falls off linearly to zero over {@link #DANGER_FALLOFF}, so every square within that distance
+   * of an enemy's range has some danger. Buildings go to a layer of their own that is kept between
+   * ticks; {@link #clear} starts each tick from it.
+   */
+  static final class DangerMap {
+
+    static final double HALF_DIAGONAL = SQUARE_CRUDENESS * Math.sqrt(2) / 2;
+
+    /** The least danger of a square in reach, so that rounding never leaves it at zero. */
+    private static final float MIN_DANGER = Float.MIN_NORMAL;
+
+    private final int columns;
+    private final int rows;
+    private final float[] buildingDanger;
+    private final float[] danger;
+
+    DangerMap(double mapSize) {
+      columns = (int) Math.ceil(mapSize / SQUARE_CRUDENESS);
+      rows = columns;
+      buildingDanger = new float[columns * rows];
+      danger = new float[columns * rows];
     }
 
-    public void move(Wizard self, World world, Game game, Move move) {
-      updateObservers(self, world, game);
+    void clearBuildings() {
+      Arrays.fill(buildingDanger, 0);
+    }
 
-      boolean lowHP = self.getLife() < 60;
-      boolean reallyLowHP = self.getLife() < 40;
+    void addBuilding(double x, double y, double range, double damageRate) {
+      add(buildingDanger, x, y, range, damageRate);
+    }
 
-      boolean inDanger = isAllyInDanger(self);
-      if (debug != null && inDanger) {
-        debug.drawCircle(self.getX(), self.getY(), self.getRadius() / 2, Color.red);
-        debug.drawBeforeScene();
-      }
+    /** Adds danger to the buildings layer at a square index, see {@link StaticMap}. */
+    void addBuilding(int index, float buildingDanger) {
+      this.buildingDanger[index] += buildingDanger;
+    }
 
-      Building factionBase = getAllyFactionBase();
-      boolean factionBaseInDanger = factionBase != null && isAllyInDanger(factionBase);
+    /** Leaves only the danger of the buildings. */
+    void clear() {
+      System.arraycopy(buildingDanger, 0, danger, 0, danger.length);
+    }
 
-      Point bonus = bonusFinder.findBonus();
+    void add(double x, double y, double range, double damageRate) {
+      add(danger, x, y, range, damageRate);
+    }
 
-      LivingUnit shootingTarget =
-          shooter.getTarget(lowHP ? self.getCastRange() : self.getVisionRange());
+    double get(Square square) {
+      return get(square.getP(), square.getQ());
+    }
 
-      boolean inHomeArea =
-          self.getX() < world.getWidth() * 0.40 && self.getY() > world.getHeight() * 0.60;
+    float getAt(int index) {
+      return danger[index];
+    }
 
-      Point selfPoint = new Point(self);
+    long getBytes() {
+      return 4L * (buildingDanger.length + danger.length);
+    }
 
-      Point walkingTarget;
-      if (bonus != null && !(inHomeArea && inDanger)) {
-        walkingTarget = bonus;
-      } else if (!lowHP && shootingTarget == null) {
-        walkingTarget = field.getNextWaypoint();
-      } else if (!lowHP && self.getDistanceTo(shootingTarget) > self.getCastRange()) {
-        walkingTarget = new Point(shootingTarget);
-      } else if (reallyLowHP || inDanger) {
-        walkingTarget = field.getPreviousWaypoint();
-      } else if (factionBaseInDanger) {
-        walkingTarget = field.getFactionBaseWaypoint();
-      } else {
-        walkingTarget = field.getNextWaypoint();
-      }
+    /** The indices of the squares with any danger, in order. */
+    int[] getTouchedIndices() {
+      return IntStream.range(0, danger.length).filter(i -> danger[i] != 0).toArray();
+    }
 
-      Point shortWalkingTarget = getShortWalkingTarget(walkingTarget);
+    double get(double x, double y) {
+      return get((int) Math.floor(x / SQUARE_CRUDENESS), (int) Math.floor(y / SQUARE_CRUDENESS));
+    }
 
-      Tree targetTree = getTargetTree(selfPoint, shortWalkingTarget);
-      if (targetTree != null) {
-        shootingTarget = targetTree;
-      }
+    /** Whether the point is on the map and no enemy has it in reach, see {@link DangerMap}. */
+    boolean isClear(double x, double y) {
+      int p = (int) Math.floor(x / SQUARE_CRUDENESS);
+      int q = (int) Math.floor(y / SQUARE_CRUDENESS);
+      return isOnMap(p, q) && danger[q * columns + p] == 0;
+    }
 
-      walker.goTo(shortWalkingTarget, move);
-      stuck.unstuck(move);
+    private double get(int p, int q) {
+      return isOnMap(p, q) ? danger[q * columns + p] : 0;
+    }
 
-      if (shootingTarget != null) {
-        walker.turnTo(shootingTarget, move);
-      } else if (walkingTarget != selfPoint) {
-        walker.turnTo(shortWalkingTarget, move);
-      } else {
-        LivingUnit nextShootingTarget = shooter.getTarget(self.getVisionRange() * 2);
-        if (nextShootingTarget != null) {
-          walker.turnTo(nextShootingTarget, move);
-        } else {
-          walker.turnTo(field.getNextWaypoint(), move);
+    private boolean isOnMap(int p, int q) {
+      return 0 <= p && p < columns && 0 <= q && q < rows;
+    }
+
+    /** Adds the danger row by row, with a square root per square only where it falls off. */
+    private void add(float[] layer, double x, double y, double range, double damageRate) {
+      double reach = range + DANGER_FALLOFF;
+      float fullDanger = Math.max((float) damageRate, MIN_DANGER);
+      int minQ = Math.max(0, firstCenterAfter(y - reach));
+      int maxQ = Math.min(rows - 1, lastCenterBefore(y + reach));
+      for (int q = minQ; q <= maxQ; ++q) {
+        double dy = (q + 0.5) * SQUARE_CRUDENESS - y;
+        double reachSquared = reach * reach - dy * dy;
+        if (reachSquared <= 0) {
+          continue;
+        }
+        double halfReach = Math.sqrt(reachSquared);
+        int fromP = Math.max(0, firstCenterAfter(x - halfReach));
+        int toP = Math.min(columns - 1, lastCenterBefore(x + halfReach));
+        int fullFromP = toP + 1;
+        int fullToP = toP;
+        double rangeSquared = range * range - dy * dy;
+        if (rangeSquared > 0) {
+          double halfRange = Math.sqrt(rangeSquared);
+          fullFromP = Math.max(fromP, firstCenterAfter(x - halfRange));
+          fullToP = Math.min(toP, lastCenterBefore(x + halfRange));
         }
-      }
 
-      if (self.getRemainingActionCooldownTicks() == 0) {
-        int[] cooldown = self.getRemainingCooldownTicksByAction();
-        if (shootingTarget != null
-            && cooldown[ActionType.STAFF.ordinal()] == 0
-            && shooter.staffCanReach(shootingTarget)) {
-          move.setAction(ActionType.STAFF);
-        } else if (skiller.hasSkill(SkillType.SHIELD)
-            && cooldown[ActionType.SHIELD.ordinal()] == 0
-            && self.getMana() >= game.getShieldManacost()
-            && Arrays.stream(self.getStatuses())
-                .noneMatch(s -> s.getType() == StatusType.SHIELDED)) {
-          move.setAction(ActionType.SHIELD);
-        } else if (skiller.hasSkill(SkillType.HASTE)
-            && cooldown[ActionType.HASTE.ordinal()] == 0
-            && self.getMana() >= game.getHasteManacost()
-            && Arrays.stream(self.getStatuses())
-                .noneMatch(s -> s.getType() == StatusType.HASTENED)) {
-          move.setAction(ActionType.HASTE);
-        } else if (shootingTarget != null
-            && cooldown[ActionType.MAGIC_MISSILE.ordinal()] == 0
-            && self.getMana() >= game.getMagicMissileManacost()
-            && shooter.missileCanReach(shootingTarget)) {
-          move.setAction(ActionType.MAGIC_MISSILE);
-          move.setCastAngle(self.getAngleTo(shootingTarget));
-          move.setMinCastDistance(
-              self.getDistanceTo(shootingTarget)
-                  - shootingTarget.getRadius()
-                  + game.getMagicMissileRadius());
+        int row = q * columns;
+        for (int p = fromP; p < fullFromP; ++p) {
+          layer[row + p] += getFalloffDanger(p, x, dy, range, damageRate);
+        }
+        for (int p = fullFromP; p <= fullToP; ++p) {
+          layer[row + p] += fullDanger;
+        }
+        for (int p = Math.max(fullFromP, fullToP + 1); p <= toP; ++p) {
+          layer[row + p] += getFalloffDanger(p, x, dy, range, damageRate);
         }
       }
+    }
 
-      skiller.maybeLearnSkill(move);
+    private static float getFalloffDanger(
+        int p, double x, double dy, double range, double damageRate) {
+      double dx = (p + 0.5) * SQUARE_CRUDENESS - x;
+      double falloff = 1 - (Math.sqrt(dx * dx + dy * dy) - range) / DANGER_FALLOFF;
+      return Math.max((float) (damageRate * Math.min(1, falloff)), MIN_DANGER);
+    }
 
-      if (debug != null) {
-        debug.showText(
-            self.getX(),
-            self.getY(),
-            String.valueOf(self.getRemainingActionCooldownTicks()),
-            Color.black);
-        debug.drawAfterScene();
+    /** The first square whose center is after the coordinate, along either axis. */
+    private static int firstCenterAfter(double coordinate) {
+      return (int) Math.floor(coordinate / SQUARE_CRUDENESS - 0.5) + 1;
+    }
 
-        if (DEBUG_CIRCLE_OBSTACLES) {
-          field
-              .getAllObstacles().forEach(
-              u ->
-                  debug.drawCircle(
-                      u.getX(), u.getY(), u.getRadius() + self.getRadius(), Color.yellow));
-          debug.drawAfterScene();
-        }
+    private static int lastCenterBefore(double coordinate) {
+      return (int) Math.ceil(coordinate / SQUARE_CRUDENESS - 0.5) - 1;
+    }
+  }
 
-        if (DEBUG_SHOW_OBSTACLE_HP) {
-          for (LivingUnit unit : field.getAllObstacles()) {
-            debug.showText(unit.getX(), unit.getY(), String.valueOf(unit.getLife()), Color.black);
-          }
-          debug.drawAfterScene();
-        }
+  /**
+   * What the strategy derives from the buildings alone, which stand in the same places every game:
+   * their footprints on the {@link Square} grid and their layers of the {@link DangerMap}. Built
+   * once from the buildings of the first tick and their mirror images, and kept in the file named
+   * by the {@code static.map} system property, which is memory-mapped on later starts.
+   *
+   * <p>The file starts with a {@link #HEADER_LENGTH}-byte header: {@link #MAGIC}, {@link
+   * #VERSION}, the map size, {@link #SQUARE_CRUDENESS}, the wizard radius, {@link #DANGER_FALLOFF},
+   * the number of buildings and a CRC32 of the rest. Each building follows as its position,
+   * radius, attack range and damage rate, the numbers of its footprint squares and danger squares,
+   * the footprint squares as (p, q) and the danger squares as (index, danger). A file that does not
+   * match the game or misses a building of the first tick is rebuilt and written again.
+   */
+  static final class StaticMap {
+
+    static final String PROPERTY = "static.map";
+    static final int MAGIC = 0x4357534D; // "CWSM"
+    static final int VERSION = 1;
+    static final int HEADER_LENGTH = 44;
+
+    private static final int RECORD_HEADER_LENGTH = 48;
+
+    private final ByteBuffer data;
+    private final Map<Long, Integer> records = new HashMap<>();
+
+    private StaticMap(ByteBuffer data) {
+      this.data = data;
+      int offset = HEADER_LENGTH;
+      for (int i = data.getInt(36); i > 0; --i) {
+        records.put(getKey(data.getDouble(offset), data.getDouble(offset + 8)), offset);
+        offset += getRecordLength(offset);
+      }
+    }
 
-        if (stuck.state == Stuck.State.STUCK) {
-          debug.showText(self.getX() - 20, self.getY() + 20, "Stuck", Color.red);
-          debug.drawAfterScene();
-        }
+    /** A building as the map keeps it; range and damage rate are those of the danger layer. */
+    static final class BuildingSpec {
+
+      final double x;
+      final double y;
+      final double radius;
+      final double range;
+      final double damageRate;
+
+      BuildingSpec(double x, double y, double radius, double range, double damageRate) {
+        this.x = x;
+        this.y = y;
+        this.radius = radius;
+        this.range = range;
+        this.damageRate = damageRate;
+      }
 
-        if (shortWalkingTarget != null) {
-          debug.drawLine(
-              self.getX(),
-              self.getY(),
-              shortWalkingTarget.getX(),
-              shortWalkingTarget.getY(),
-              Color.green);
-          debug.drawBeforeScene();
+      BuildingSpec mirror(double mapSize) {
+        return new BuildingSpec(mapSize - x, mapSize - y, radius, range, damageRate);
+      }
+    }
+
+    /**
+     * Maps the file and checks it against the game and the buildings, or returns null if there is
+     * no such file or it does not match.
+     */
+    static StaticMap load(String path, Game game, List<BuildingSpec> buildings) {
+      ByteBuffer data;
+      try (FileChannel channel = FileChannel.open(Paths.get(path), StandardOpenOption.READ)) {
+        if (channel.size() < HEADER_LENGTH) {
+          return null;
+        }
+        data = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+      } catch (IOException e) {
+        return null;
+      }
+      if (!hasHeader(data, game) || data.getInt(40) != getChecksum(data)) {
+        return null;
+      }
+      StaticMap map;
+      try {
+        map = new StaticMap(data);
+      } catch (IndexOutOfBoundsException e) {
+        return null;
+      }
+      for (BuildingSpec b : buildings) {
+        if (map.find(b.x, b.y, b.radius, b.range, b.damageRate) < 0) {
+          return null;
         }
+      }
+      return map;
+    }
 
-        if (walkingTarget != null) {
-          debug.fillCircle(walkingTarget.getX(), walkingTarget.getY(), 5, Color.green);
-          debug.drawBeforeScene();
+    /** Builds the map in memory. */
+    static StaticMap build(Game game, List<BuildingSpec> buildings, TeamModel team) {
+      DangerMap scratch = new DangerMap(game.getMapSize());
+      List<List<Square>> footprints = new ArrayList<>();
+      List<int[]> dangerIndices = new ArrayList<>();
+      List<float[]> dangers = new ArrayList<>();
+      int length = HEADER_LENGTH;
+      for (BuildingSpec building : buildings) {
+        List<Square> footprint = team.getSquares(building.x, building.y, building.radius);
+        scratch.clear();
+        scratch.add(building.x, building.y, building.range, building.damageRate);
+        int[] indices = scratch.getTouchedIndices();
+        float[] danger = new float[indices.length];
+        for (int i = 0; i < indices.length; ++i) {
+          danger[i] = scratch.getAt(indices[i]);
         }
+        footprints.add(footprint);
+        dangerIndices.add(indices);
+        dangers.add(danger);
+        length += RECORD_HEADER_LENGTH + 8 * footprint.size() + 8 * indices.length;
+      }
 
-        if (shootingTarget != null) {
-          debug.fillCircle(shootingTarget.getX(), shootingTarget.getY(), 5, Color.red);
-          debug.drawLine(
-              self.getX(), self.getY(), shootingTarget.getX(), shootingTarget.getY(), Color.red);
-          debug.drawBeforeScene();
+      ByteBuffer data = ByteBuffer.allocate(length);
+      data.putInt(MAGIC)
+          .putInt(VERSION)
+          .putDouble(game.getMapSize())
+          .putInt(SQUARE_CRUDENESS)
+          .putDouble(game.getWizardRadius())
+          .putDouble(DANGER_FALLOFF)
+          .putInt(buildings.size())
+          .putInt(0);
+      for (int i = 0; i < buildings.size(); ++i) {
+        BuildingSpec building = buildings.get(i);
+        data.putDouble(building.x)
+            .putDouble(building.y)
+            .putDouble(building.radius)
+            .putDouble(building.range)
+            .putDouble(building.damageRate)
+            .putInt(footprints.get(i).size())
+            .putInt(dangerIndices.get(i).length);
+        for (Square square : footprints.get(i)) {
+          data.putInt(square.getP()).putInt(square.getQ());
         }
+        for (int j = 0; j < dangerIndices.get(i).length; ++j) {
+          data.putInt(dangerIndices.get(i)[j]).putFloat(dangers.get(i)[j]);
+        }
+      }
+      data.putInt(40, getChecksum(data));
+      return new StaticMap(data);
+    }
 
-        if (DEBUG_SHOW_COOLDOWN_TICKS) {
-          for (Building building : world.getBuildings()) {
-            debug.drawCircle(
-                building.getX(), building.getY(), building.getVisionRange(), Color.lightGray);
-            debug.drawCircle(
-                building.getX(), building.getY(), building.getAttackRange(), Color.pink);
-            debug.drawBeforeScene();
+    /** Writes the map next to the path first, so that a reader never maps half a file. */
+    void write(String path) throws IOException {
+      Path target = Paths.get(path);
+      Path temporary = Paths.get(path + ".tmp");
+      try (FileChannel channel =
+          FileChannel.open(
+              temporary,
+              StandardOpenOption.CREATE,
+              StandardOpenOption.TRUNCATE_EXISTING,
+              StandardOpenOption.WRITE)) {
+        ByteBuffer source = data.duplicate();
+        source.clear();
+        while (source.hasRemaining()) {
+          channel.write(source);
+        }
+      }
+      Files.move(
+          temporary, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
 
-            debug.showText(
-                building.getX(),
-                building.getY() + 20,
-                String.valueOf(building.getRemainingActionCooldownTicks()),
-                Color.black);
-            debug.drawAfterScene();
-          }
+    /** Adds the footprint of the building to the squares, if the map has the building. */
+    boolean addFootprint(Building building, BitGrid squares) {
+      int offset =
+          find(building.getX(), building.getY(), building.getRadius(), Double.NaN, Double.NaN);
+      if (offset < 0) {
+        return false;
+      }
+      int count = data.getInt(offset + 40);
+      for (int i = 0, at = offset + RECORD_HEADER_LENGTH; i < count; ++i, at += 8) {
+        squares.add(new Square(data.getInt(at), data.getInt(at + 4)));
+      }
+      return true;
+    }
 
-          debug.showText(
-              self.getX(),
-              self.getY(),
-              String.valueOf(self.getRemainingActionCooldownTicks()),
-              Color.black);
-          debug.showText(
-              self.getX(),
-              self.getY() + 20,
-              String.valueOf(
-                  self.getRemainingCooldownTicksByAction()[ActionType.MAGIC_MISSILE.ordinal()]),
-              Color.black);
-          debug.drawAfterScene();
-        }
+    /** Adds the danger layer of the building to the map, if the map has it with this danger. */
+    boolean addDanger(Building building, double range, double damageRate, DangerMap dangerMap) {
+      int offset = find(building.getX(), building.getY(), building.getRadius(), range, damageRate);
+      if (offset < 0) {
+        return false;
+      }
+      int count = data.getInt(offset + 44);
+      int at = offset + RECORD_HEADER_LENGTH + 8 * data.getInt(offset + 40);
+      for (int i = 0; i < count; ++i, at += 8) {
+        dangerMap.addBuilding(data.getInt(at), data.getFloat(at + 4));
+      }
+      return true;
+    }
 
-        debug.sync();
+    /** The offset of the record, or -1; a NaN range or damage rate matches any. */
+    private int find(double x, double y, double radius, double range, double damageRate) {
+      Integer offset = records.get(getKey(x, y));
+      if (offset == null
+          || data.getDouble(offset) != x
+          || data.getDouble(offset + 8) != y
+          || data.getDouble(offset + 16) != radius
+          || (!Double.isNaN(range) && data.getDouble(offset + 24) != range)
+          || (!Double.isNaN(damageRate) && data.getDouble(offset + 32) != damageRate)) {
+        return -1;
       }
+      return offset;
     }
 
-    Building getAllyFactionBase() {
-      return Arrays.stream(world.getBuildings())
-          .filter(b -> isAlly(b) && b.getType() == BuildingType.FACTION_BASE)
-          .findFirst()
-          .orElse(null);
+    private int getRecordLength(int offset) {
+      return RECORD_HEADER_LENGTH + 8 * (data.getInt(offset + 40) + data.getInt(offset + 44));
     }
 
-    boolean isAllyInDanger(LivingUnit ally) {
-      return Arrays.stream(world.getWizards()).anyMatch(w -> isAllyEndangeredBy(ally, w))
-          || Arrays.stream(world.getBuildings()).anyMatch(b -> isAllyEndangeredBy(ally, b))
-          || Arrays.stream(world.getMinions()).anyMatch(m -> isAllyEndangeredBy(ally, m));
+    private static long getKey(double x, double y) {
+      return Double.doubleToLongBits(x) * 31 + Double.doubleToLongBits(y);
     }
 
-    boolean isAllyEndangeredBy(LivingUnit ally, LivingUnit attacker) {
-      return isEnemy(attacker)
-          && distanceLessThan(
-              ally, attacker, getAttackRange(attacker) + ally.getRadius() + SAFETY_EPS);
+    private static boolean hasHeader(ByteBuffer data, Game game) {
+      return data.getInt(0) == MAGIC
+          && data.getInt(4) == VERSION
+          && data.getDouble(8) == game.getMapSize()
+          && data.getInt(16) == SQUARE_CRUDENESS
+          && data.getDouble(20) == game.getWizardRadius()
+          && data.getDouble(28) == DANGER_FALLOFF;
     }
 
-    private Tree getTargetTree(Point selfPoint, Point walkingTarget) {
-      return field
-          .getSquaresOnLine(selfPoint, walkingTarget)
-          .map(s -> field.weakTrees.get(s))
-          .filter(t -> t != null)
-          .findFirst()
-          .orElse(null);
+    private static int getChecksum(ByteBuffer data) {
+      ByteBuffer payload = data.duplicate();
+      payload.limit(data.capacity()).position(HEADER_LENGTH);
+      CRC32 checksum = new CRC32();
+      checksum.update(payload);
+      return (int) checksum.getValue();
     }
+  }
 
-    Stream<LivingUnit> getAllies() {
-      return Stream.of(
-              Arrays.stream(world.getWizards()),
-              Arrays.stream(world.getBuildings()),
-              Arrays.stream(world.getMinions()))
-          .flatMap(Function.identity())
-          .filter(this::isAlly);
+  /**
+   * Team vision on the {@link Square} grid, kept up to date as allies move. A square is covered if
+   * it is in vision wherever in their squares the allies stand, and touched if it may be in vision
+   * at all. Each ally is stamped with the squares around its own, which only depend on its vision
+   * range and are cached, and is only unstamped and stamped again when it moves to another square.
+   */
+  static final class VisionMap {
+
+    private final int columns;
+    private final int rows;
+    private final int[] coveredBy;
+    private final int[] touchedBy;
+    private final long[] covered;
+    private final long[] previouslyCovered;
+    private final Map<Double, Stamp> stamps = new HashMap<>();
+    private final Map<Long, Placement> placements = new HashMap<>();
+    private int generation;
+
+    VisionMap(double mapSize) {
+      columns = (int) Math.ceil(mapSize / SQUARE_CRUDENESS);
+      rows = columns;
+      coveredBy = new int[columns * rows];
+      touchedBy = new int[columns * rows];
+      covered = new long[(columns * rows + 63) / 64];
+      previouslyCovered = new long[covered.length];
     }
 
-    boolean canSee(Point point) {
-      return getAllies().anyMatch(ally -> distanceLessThan(ally, point, getVisionRange(ally)));
+    /** Starts a tick. Allies that are not placed again before {@link #finishTick} are removed. */
+    void startTick() {
+      ++generation;
+      System.arraycopy(covered, 0, previouslyCovered, 0, covered.length);
     }
 
-    double getVisionRange(LivingUnit unit) {
-      if (unit instanceof Wizard) {
-        return ((Wizard) unit).getVisionRange();
-      }
-      if (unit instanceof Minion) {
-        return ((Minion) unit).getVisionRange();
-      }
-      if (unit instanceof Building) {
-        return ((Building) unit).getVisionRange();
+    void place(LivingUnit ally, double visionRange) {
+      int p = (int) Math.floor(ally.getX() / SQUARE_CRUDENESS);
+      int q = (int) Math.floor(ally.getY() / SQUARE_CRUDENESS);
+      Placement placement = placements.get(ally.getId());
+      if (placement == null) {
+        placement = new Placement();
+        placements.put(ally.getId(), placement);
+      } else if (placement.p == p && placement.q == q && placement.stamp.range == visionRange) {
+        placement.generation = generation;
+        return;
+      } else {
+        stamp(placement, -1);
       }
-      throw new IllegalArgumentException("unit does not have vision range");
+      placement.p = p;
+      placement.q = q;
+      placement.stamp = stamps.computeIfAbsent(visionRange, Stamp::new);
+      placement.generation = generation;
+      stamp(placement, 1);
     }
 
-    double getAttackRange(LivingUnit unit) {
-      if (unit instanceof Wizard) {
-        return ((Wizard) unit).getCastRange();
-      }
-      if (unit instanceof Minion) {
-        return ((Minion) unit).getType() == MinionType.FETISH_BLOWDART
-            ? game.getFetishBlowdartAttackRange()
-            : game.getOrcWoodcutterAttackRange();
-      }
-      if (unit instanceof Building) {
-        return ((Building) unit).getAttackRange();
+    void finishTick() {
+      Iterator<Placement> iterator = placements.values().iterator();
+      while (iterator.hasNext()) {
+        Placement placement = iterator.next();
+        if (placement.generation != generation) {
+          stamp(placement, -1);
+          iterator.remove();
+        }
       }
-      throw new IllegalArgumentException("unit does not have vision range");
     }
 
-    private Point getShortWalkingTarget(Point walkingTarget) {
-      List<Square> path = field.findPath(Square.containing(self), Square.containing(walkingTarget));
+    long getBytes() {
+      return 4L * (coveredBy.length + touchedBy.length)
+          + 8L * (covered.length + previouslyCovered.length);
+    }
 
-      if (path == null) {
-        return walkingTarget;
-      }
+    boolean isCovered(double x, double y) {
+      int index = getIndex(x, y);
+      return index != -1 && (covered[index >> 6] & (1L << index)) != 0;
+    }
 
-      int shortcut = 0;
-      while (shortcut + 1 < path.size()
-          && field
-              .getSquaresOnLine(path.get(0), path.get(shortcut + 1))
-              .noneMatch(s -> field.walls.contains(s) || field.movingUnits.containsKey(s))) {
-        ++shortcut;
-      }
-      if (shortcut == 0 && 1 < path.size()) {
-        shortcut = 1;
-      }
+    boolean isTouched(double x, double y) {
+      int index = getIndex(x, y);
+      return index != -1 && touchedBy[index] != 0;
+    }
 
-      if (debug != null && DEBUG_DRAW_PATH) {
-        for (int i = 1; i < path.size(); ++i) {
-          debug.drawLine(
-              path.get(i - 1).getCenterX(),
-              path.get(i - 1).getCenterY(),
-              path.get(i).getCenterX(),
-              path.get(i).getCenterY(),
-              DEBUG_FIND_PATH ? Color.black : Color.lightGray);
+    /** The squares that became covered on this tick. */
+    List<Square> getRevealed() {
+      return getChanged(covered, previouslyCovered);
+    }
+
+    /** The squares that stopped being covered on this tick. */
+    List<Square> getHidden() {
+      return getChanged(previouslyCovered, covered);
+    }
+
+    private List<Square> getChanged(long[] now, long[] before) {
+      List<Square> changed = new ArrayList<>();
+      for (int word = 0; word < now.length; ++word) {
+        long bits = now[word] & ~before[word];
+        while (bits != 0) {
+          int index = (word << 6) + Long.numberOfTrailingZeros(bits);
+          changed.add(new Square(index % columns, index / columns));
+          bits &= bits - 1;
         }
-        debug.drawBeforeScene();
       }
+      return changed;
+    }
 
-      return path.get(shortcut).getCenter();
+    private int getIndex(double x, double y) {
+      int p = (int) Math.floor(x / SQUARE_CRUDENESS);
+      int q = (int) Math.floor(y / SQUARE_CRUDENESS);
+      return 0 <= p && p < columns && 0 <= q && q < rows ? q * columns + p : -1;
     }
 
-    private void updateObservers(Wizard self, World world, Game game) {
-      this.self = self;
-      this.world = world;
-      this.game = game;
-      for (WorldObserver observer : observers) {
-        observer.update(self, world, game);
+    private void stamp(Placement placement, int delta) {
+      Stamp stamp = placement.stamp;
+      for (int k = 0; k < stamp.dp.length; ++k) {
+        int p = placement.p + stamp.dp[k];
+        int q = placement.q + stamp.dq[k];
+        if (p < 0 || p >= columns || q < 0 || q >= rows) {
+          continue;
+        }
+        int index = q * columns + p;
+        touchedBy[index] += delta;
+        if (k < stamp.coveredCount) {
+          coveredBy[index] += delta;
+          if (coveredBy[index] == 0) {
+            covered[index >> 6] &= ~(1L << index);
+          } else if (coveredBy[index] == 1 && delta > 0) {
+            covered[index >> 6] |= 1L << index;
+          }
+        }
       }
     }
 
-    private Tree getClosestTree(Wizard self, World world) {
-      Tree closestTree = null;
-      double closestTreeDistance = 0;
-      for (Tree tree : world.getTrees()) {
-        double distance = self.getDistanceTo(tree);
-        if (closestTree == null || distance < closestTreeDistance) {
-          closestTree = tree;
-          closestTreeDistance = distance;
+    private static final class Placement {
+      int p;
+      int q;
+      Stamp stamp;
+      int generation;
+    }
+
+    /** The offsets of the squares around an ally's own that its vision range touches. */
+    private static final class Stamp {
+
+      final double range;
+      final int[] dp;
+      final int[] dq;
+      /** The first offsets, which the range covers whole. */
+      final int coveredCount;
+
+      Stamp(double range) {
+        this.range = range;
+        int reach = (int) Math.ceil(range / SQUARE_CRUDENESS) + 1;
+        int[] dp = new int[(2 * reach + 1) * (2 * reach + 1)];
+        int[] dq = new int[dp.length];
+        // In squares, points of two squares i apart are max(0, |i| - 1) to |i| + 1 apart along an
+        // axis, so a square is covered if even its farthest points are in range.
+        double rangeSquared = range * range / (SQUARE_CRUDENESS * SQUARE_CRUDENESS);
+        int count = 0;
+        for (int i = -reach; i <= reach; ++i) {
+          for (int j = -reach; j <= reach; ++j) {
+            if (getSquaredDistance(i, j, 1) < rangeSquared) {
+              dp[count] = i;
+              dq[count] = j;
+              ++count;
+            }
+          }
         }
+        coveredCount = count;
+        for (int i = -reach; i <= reach; ++i) {
+          for (int j = -reach; j <= reach; ++j) {
+            if (getSquaredDistance(i, j, 1) >= rangeSquared
+                && getSquaredDistance(i, j, -1) < rangeSquared) {
+              dp[count] = i;
+              dq[count] = j;
+              ++count;
+            }
+          }
+        }
+        this.dp = Arrays.copyOf(dp, count);
+        this.dq = Arrays.copyOf(dq, count);
+      }
+
+      private static int getSquaredDistance(int i, int j, int shift) {
+        int di = Math.max(0, Math.abs(i) + shift);
+        int dj = Math.max(0, Math.abs(j) + shift);
+        return di * di + dj * dj;
       }
-      return closestTree;
     }
+  }
 
-    boolean isEnemy(Unit unit) {
-      return unit.getFaction() == ENEMY_FRACTION;
+  /**
+   * What the wizards of a team derive alike from the world: the unit sets, the {@link DangerMap},
+   * the {@link VisionMap} and the obstacle layers on the {@link Square} grid. Runner hands one
+   * model to all strategies, and the first {@link Brain} to move on a tick updates it for all of
+   * them. Obstacles are grown by the wizard radius, which all wizards share, and include our own
+   * wizards; each {@link Field} clears its own.
+   */
+  static final class TeamModel {
+
+    private final Game game;
+    private Faction allyFaction;
+    private Faction enemyFaction;
+    private World world;
+
+    final UnitSet enemies = new UnitSet();
+    final UnitSet allies = new UnitSet();
+    final UnitSet enemyWoodcutters = new UnitSet();
+    final DangerMap dangerMap;
+    final VisionMap visionMap;
+    private long[] dangerMapBuildingIds = new long[0];
+    private StaticMap staticMap;
+    final Scheduler scheduler = new Scheduler();
+    private RolloutSearch rolloutSearch;
+
+    private BitGrid staticWalls;
+    private BitGrid nextStaticWalls;
+    private BitGrid minionWalls;
+    private BitGrid previousMinionWalls;
+    private ObjectGrid<Tree> weakTrees;
+    private ObjectGrid<Tree> previousWeakTrees;
+    private IntGrid movingUnits;
+    private IntGrid previousMovingUnits;
+    private final IntGrid obstacleGenerations;
+    private int obstacleGeneration;
+    private boolean obstaclesStale;
+    private double[] footprintX = new double[0];
+    private double[] footprintY = new double[0];
+    private int[] footprintSquares = new int[0];
+
+    TeamModel(Game game) {
+      this.game = game;
+      double mapSize = game.getMapSize();
+      staticWalls = new BitGrid(mapSize);
+      nextStaticWalls = new BitGrid(mapSize);
+      minionWalls = new BitGrid(mapSize);
+      previousMinionWalls = new BitGrid(mapSize);
+      weakTrees = new ObjectGrid<>(mapSize);
+      previousWeakTrees = new ObjectGrid<>(mapSize);
+      movingUnits = new IntGrid(mapSize);
+      previousMovingUnits = new IntGrid(mapSize);
+      obstacleGenerations = new IntGrid(mapSize);
+      dangerMap = new DangerMap(game.getMapSize());
+      visionMap = new VisionMap(game.getMapSize());
+      scheduler.add(
+          "static walls", staticWallsJob(), STATIC_WALLS_PERIOD, STATIC_WALLS_SLICE_NANOS);
     }
 
-    boolean isAlly(Unit unit) {
-      return unit.getFaction() == ALLY_FRACTION;
+    /** The rollout search the strategies of the team share, started on first use. */
+    RolloutSearch getRolloutSearch() {
+      if (rolloutSearch == null) {
+        rolloutSearch = new RolloutSearch(ROLLOUT_THREADS, ROLLOUT_TICKS);
+      }
+      return rolloutSearch;
     }
 
-    Point predictPosition(Unit unit, double ticksFromNow) {
-      return new Point(
-          unit.getX() + unit.getSpeedX() * ticksFromNow,
-          unit.getY() + unit.getSpeedY() * ticksFromNow);
+    /** Stops the workers of the rollout search, if it was started, once the game is over. */
+    void shutdownRolloutSearch() {
+      if (rolloutSearch != null) {
+        rolloutSearch.shutdown();
+        rolloutSearch = null;
+      }
     }
 
-    void drawWaves(
-        double x, double y, double radius, double startAngle, double arcAngle, Color color) {
-      final int N = 10;
-      for (int i = 1; i <= N; ++i) {
-        debug.drawArc(x, y, radius * i / N, startAngle, arcAngle, color);
+    /**
+     * Maps the {@link StaticMap} named by the system property, or builds it from the buildings of
+     * the world and writes it there. Without the property there is no map, as building one costs
+     * more than what it saves in a single game.
+     */
+    void loadStaticMap(World world) {
+      String path = System.getProperty(StaticMap.PROPERTY);
+      if (staticMap != null || path == null || path.isEmpty()) {
+        return;
+      }
+      List<StaticMap.BuildingSpec> buildings = getBuildingLayout(world);
+      staticMap = StaticMap.load(path, game, buildings);
+      if (staticMap == null) {
+        staticMap = StaticMap.build(game, buildings, this);
+        try {
+          staticMap.write(path);
+        } catch (IOException e) {
+          System.err.println("StaticMap: " + e.getMessage());
+        }
       }
     }
 
-    Minion[] getFetishes() {
-      return Arrays.stream(world.getMinions())
-          .filter(m -> m.getType() == MinionType.FETISH_BLOWDART)
-          .toArray(Minion[]::new);
+    /** The buildings of the world and, where none stands, their mirror images. */
+    List<StaticMap.BuildingSpec> getBuildingLayout(World world) {
+      List<StaticMap.BuildingSpec> result = new ArrayList<>();
+      for (Building building : world.getBuildings()) {
+        result.add(
+            new StaticMap.BuildingSpec(
+                building.getX(),
+                building.getY(),
+                building.getRadius(),
+                building.getAttackRange() + SAFETY_EPS,
+                getDamageRate(building)));
+      }
+      for (int i = 0, count = result.size(); i < count; ++i) {
+        StaticMap.BuildingSpec mirror = result.get(i).mirror(game.getMapSize());
+        if (result.stream().noneMatch(b -> b.x == mirror.x && b.y == mirror.y)) {
+          result.add(mirror);
+        }
+      }
+      return result;
     }
 
-    Minion[] getWoodcutters() {
-      return Arrays.stream(world.getMinions())
-          .filter(m -> m.getType() == MinionType.ORC_WOODCUTTER)
-          .toArray(Minion[]::new);
+    /** Updates the model to the world unless it already is; self only tells our faction. */
+    void update(Wizard self, World world) {
+      if (world == this.world) {
+        return;
+      }
+      this.world = world;
+      allyFaction = self.getFaction();
+      enemyFaction = allyFaction == Faction.ACADEMY ? Faction.RENEGADES : Faction.ACADEMY;
+      updateUnitSets();
+      updateDangerMap();
+      obstaclesStale = true;
+      scheduler.run(world.getTickIndex());
     }
 
-    boolean isMe(Unit unit) {
-      return unit.getId() == self.getId();
+    boolean isWall(Square square) {
+      ensureObstacles();
+      return minionWalls.contains(square)
+          || (staticWalls.contains(square) && weakTrees.get(square) == null);
     }
 
-    double getAttackDamage(Wizard self) {
-      boolean empowered =
-          Arrays.stream(self.getStatuses()).anyMatch(s -> s.getType() == StatusType.EMPOWERED);
-      double multiplier = empowered ? game.getEmpoweredDamageFactor() : 1;
-      return multiplier * game.getMagicMissileDirectDamage();
+    Tree getWeakTree(Square square) {
+      ensureObstacles();
+      return weakTrees.get(square);
     }
-  }
 
-  private abstract static class WorldObserver {
+    /** The number of wizards and minions in the way on the square. */
+    int getMovingUnitCount(Square square) {
+      ensureObstacles();
+      return movingUnits.get(square);
+    }
 
-    protected final Brain brain;
-    protected final Visualizer debug;
-    protected Wizard self;
-    protected World world;
-    protected Game game;
-
-    public WorldObserver(Brain brain, Visualizer debug) {
-      this.brain = brain;
-      this.debug = debug;
+    /**
+     * A number that changes whenever a wall, a weak tree or a moving unit comes to the square or
+     * leaves it. Squares off the {@link TileGrid} have none, as nothing comes to them.
+     */
+    int getObstacleGeneration(Square square) {
+      ensureObstacles();
+      return obstacleGenerations.get(square);
     }
 
-    public void update(Wizard self, World world, Game game) {
-      this.self = self;
-      this.world = world;
-      this.game = game;
-      update();
+    Stream<Square> getWallSquares() {
+      ensureObstacles();
+      List<Square> squares = new ArrayList<>();
+      staticWalls.forEach(squares::add);
+      minionWalls.forEach(squares::add);
+      return squares.stream().filter(this::isWall);
     }
 
-    protected void update() {}
-  }
-
-  private static class Stuck extends WorldObserver {
-
-    private static final int STUCK_DETECTION_TICKS = 2;
-    private static final double SPEED_EPS = 0.01;
-    private static final double MIN_WALKING_SPEED = 1;
-
-    private Random random;
-
-    private State state;
-    private boolean lastMoveSucceeded;
-
-    private List<Point> positionHistory = new LinkedList<>();
-    private Point requestedSpeed;
-    private Point unstuckDirection;
-    private int stuckTicks;
-
-    public Stuck(Brain brain, Visualizer debug, Random random) {
-      super(brain, debug);
-      this.random = random;
+    List<Square> getWeakTreeSquares() {
+      ensureObstacles();
+      List<Square> squares = new ArrayList<>();
+      weakTrees.forEachKey(squares::add);
+      return squares;
     }
 
-    @Override
-    protected void update() {
-      positionHistory.add(0, new Point(self));
-      if (positionHistory.size() > STUCK_DETECTION_TICKS) {
-        positionHistory.remove(STUCK_DETECTION_TICKS);
-      }
+    List<Square> getMovingUnitSquares() {
+      ensureObstacles();
+      List<Square> squares = new ArrayList<>();
+      movingUnits.forEachNonZero(squares::add);
+      return squares;
     }
 
-    public void unstuck(Move move) {
-      updateStuckState();
-
-      if (state == State.STUCK) {
-        ++stuckTicks;
-        if (stuckTicks == 1) {
-          unstuckDirection = Point.fromPolar(100, requestedSpeed.getAngle() + Math.PI / 2);
-        } else if (stuckTicks == 2) {
-          unstuckDirection = unstuckDirection.negate();
-        } else if (!lastMoveSucceeded) {
-          unstuckDirection = Point.fromPolar(100, (random.nextDouble() * 2 - 1) * Math.PI);
-        }
-        brain.walker.goTo(unstuckDirection.add(new Point(self)), move);
-      }
-
-      Point strafeSpeed = Point.fromPolar(move.getStrafeSpeed(), self.getAngle() + Math.PI / 2);
-      requestedSpeed = Point.fromPolar(move.getSpeed(), self.getAngle()).add(strafeSpeed);
+    /** The squares on which a wizard would touch the unit. */
+    List<Square> getSquares(LivingUnit unit) {
+      return getSquares(unit.getX(), unit.getY(), unit.getRadius());
     }
 
-    private void updateStuckState() {
-      if (positionHistory.size() < STUCK_DETECTION_TICKS) {
-        state = State.STANDING;
-        return;
+    List<Square> getSquares(double x, double y, double radius) {
+      List<Square> result = new ArrayList<>();
+      double r = radius + game.getWizardRadius();
+      Square topLeft = Square.containing(x - r, y - r);
+      Square bottomRight = Square.containing(x + r, y + r);
+      int rows = bottomRight.getQ() - topLeft.getQ() + 1;
+      int count = (bottomRight.getP() - topLeft.getP() + 1) * rows;
+      if (footprintX.length < count) {
+        footprintX = new double[count];
+        footprintY = new double[count];
+        footprintSquares = new int[count];
       }
-      Point position = positionHistory.get(0);
-      Point lastPosition = positionHistory.get(1);
-      Point speed = position.sub(lastPosition);
-      lastMoveSucceeded = speed.getDistanceTo(requestedSpeed) < SPEED_EPS;
-      if (!lastMoveSucceeded) {
-        state = State.STUCK;
-      } else {
-        state = speed.length() > MIN_WALKING_SPEED ? State.WALKING : State.STANDING;
-        stuckTicks = 0;
+      int k = 0;
+      for (int p = topLeft.getP(); p <= bottomRight.getP(); ++p) {
+        for (int q = topLeft.getQ(); q <= bottomRight.getQ(); ++q) {
+          footprintX[k] = (p + 0.5) * SQUARE_CRUDENESS;
+          footprintY[k] = (q + 0.5) * SQUARE_CRUDENESS;
+          ++k;
+        }
+      }
+      int selected =
+          RANGE_KERNELS.selectInRange(
+              footprintX, footprintY, null, r, count, x, y, footprintSquares);
+      for (int i = 0; i < selected; ++i) {
+        k = footprintSquares[i];
+        result.add(new Square(topLeft.getP() + k / rows, topLeft.getQ() + k % rows));
       }
+      return result;
     }
 
-    private enum State {
-      STANDING,
-      WALKING,
-      STUCK,
+    boolean isEnemy(Unit unit) {
+      return unit.getFaction() == enemyFaction;
     }
-  }
-
-  private static class BonusFinder extends WorldObserver {
-
-    private static final int BONUS_ANTICIPATION_TICKS = 250;
 
-    private int nextBonusTick;
-    private Point bonus;
-
-    public BonusFinder(Brain brain, Visualizer debug, Game game) {
-      super(brain, debug);
-      nextBonusTick = game.getBonusAppearanceIntervalTicks() + 1;
+    boolean isAlly(Unit unit) {
+      return unit.getFaction() == allyFaction;
     }
 
-    @Override
-    public void update() {
-      int tick = world.getTickIndex();
-      if (bonus == null
-          && tick >= nextBonusTick - BONUS_ANTICIPATION_TICKS
-          && nextBonusTick < game.getTickCount()) {
-        bonus =
-            new Point(
-                game.getMapSize() * 0.7 - game.getBonusRadius() - self.getRadius(),
-                game.getMapSize() * 0.7 - game.getBonusRadius() - self.getRadius());
-        if (debug != null) {
-          System.out.println("anticipating a bonus");
-        }
+    double getVisionRange(LivingUnit unit) {
+      if (unit instanceof Wizard) {
+        return ((Wizard) unit).getVisionRange();
       }
-
-      if (tick >= nextBonusTick) {
-        nextBonusTick += game.getBonusAppearanceIntervalTicks();
-        bonus = new Point(game.getMapSize() * 0.7, game.getMapSize() * 0.7);
+      if (unit instanceof Minion) {
+        return ((Minion) unit).getVisionRange();
       }
-
-      if (bonus != null && tick < nextBonusTick - BONUS_ANTICIPATION_TICKS && brain.canSee(bonus)) {
-        boolean bonusExists =
-            Arrays.stream(world.getBonuses()).anyMatch(b -> brain.canSee(new Point(b)));
-        if (!bonusExists) {
-          if (debug != null) {
-            System.out.println("bonus disappeared");
-          }
-          bonus = null;
-        }
+      if (unit instanceof Building) {
+        return ((Building) unit).getVisionRange();
       }
+      throw new IllegalArgumentException("unit does not have vision range");
     }
 
-    public Point findBonus() {
-      return bonus;
+    double getAttackRange(LivingUnit unit) {
+      if (unit instanceof Wizard) {
+        return ((Wizard) unit).getCastRange();
+      }
+      if (unit instanceof Minion) {
+        return ((Minion) unit).getType() == MinionType.FETISH_BLOWDART
+            ? game.getFetishBlowdartAttackRange()
+            : game.getOrcWoodcutterAttackRange();
+      }
+      if (unit instanceof Building) {
+        return ((Building) unit).getAttackRange();
+      }
+      throw new IllegalArgumentException("unit does not have vision range");
     }
-  }
-
-  private static class Field extends WorldObserver {
-
-    private static final int FIND_PATH_MAX_STEPS = 200;
-    private static final int WEAK_TREE_PRIORITY = -100;
-    private static final int MOVING_UNIT_PRIORITY = -1000;
-    private static final int FORWARD_SQUARE_PRIORITY = 1000;
-
-    private final Point[] waypoints;
-    private Set<Square> walls = new HashSet<>();
-    private Map<Square, Tree> weakTrees = new HashMap<>();
-    private Map<Square, LivingUnit> movingUnits = new HashMap<>();
-    private Map<Square, Integer> priority = new HashMap<>();
-
-    public Field(Brain brain, Visualizer debug, Wizard self, Game game) {
-      super(brain, debug);
-
-      double mapSize = game.getMapSize();
 
-      waypoints =
-          new Point[] {
-            new Point(mapSize * 0.05, mapSize * 0.95),
-            new Point(mapSize * 0.25, mapSize * 0.82),
-            new Point(mapSize * 0.35, mapSize * 0.70),
-            new Point(mapSize * 0.60, mapSize * 0.60),
-            new Point(mapSize * 0.65, mapSize * 0.40),
-            new Point(mapSize * 0.75, mapSize * 0.25),
-          };
+    /** The damage per tick of the unit if it attacks as often as it can. */
+    double getDamageRate(LivingUnit unit) {
+      if (unit instanceof Wizard) {
+        return (double) game.getMagicMissileDirectDamage()
+            / Math.max(
+                1,
+                Math.max(game.getMagicMissileCooldownTicks(), game.getWizardActionCooldownTicks()));
+      }
+      if (unit instanceof Minion) {
+        return (double) ((Minion) unit).getDamage()
+            / Math.max(1, ((Minion) unit).getCooldownTicks());
+      }
+      if (unit instanceof Building) {
+        return (double) ((Building) unit).getDamage()
+            / Math.max(1, ((Building) unit).getCooldownTicks());
+      }
+      throw new IllegalArgumentException("unit does not attack");
     }
 
-    @Override
-    public void update() {
-      updateWalls();
-      updateWeakTrees();
-      updateMovingUnits();
-      updatePriorities();
-
-      if (debug != null) {
-        for (int i = 0; i < waypoints.length; ++i) {
-          debug.fillCircle(waypoints[i].getX(), waypoints[i].getY(), 5, Color.lightGray);
-          if (i != 0) {
-            debug.drawLine(
-                waypoints[i - 1].getX(),
-                waypoints[i - 1].getY(),
-                waypoints[i].getX(),
-                waypoints[i].getY(),
-                Color.lightGray);
+    private void updateUnitSets() {
+      enemies.clear();
+      allies.clear();
+      enemyWoodcutters.clear();
+      visionMap.startTick();
+      for (LivingUnit[] units :
+          new LivingUnit[][] {world.getWizards(), world.getBuildings(), world.getMinions()}) {
+        for (LivingUnit unit : units) {
+          if (isEnemy(unit)) {
+            enemies.add(unit, getAttackRange(unit) + SAFETY_EPS);
+            if (unit instanceof Minion
+                && ((Minion) unit).getType() == MinionType.ORC_WOODCUTTER) {
+              enemyWoodcutters.add(unit, 0);
+            }
+          } else if (isAlly(unit)) {
+            allies.add(unit, getVisionRange(unit));
+            visionMap.place(unit, getVisionRange(unit));
           }
         }
-        debug.drawBeforeScene();
       }
+      visionMap.finishTick();
     }
 
-    private void updatePriorities() {
-      priority.clear();
-      weakTrees.keySet().forEach(square -> priority.put(square, WEAK_TREE_PRIORITY));
-      Arrays.stream(getNeighbors(Square.containing(self)))
-          .forEach(
-              square -> {
-                double angle = self.getAngleTo(square.getCenterX(), square.getCenterY());
-                if (Math.abs(angle) < Math.PI / 2) {
-                  priority.put(square, FORWARD_SQUARE_PRIORITY);
-                }
-              });
-      movingUnits.keySet().forEach(square -> priority.put(square, MOVING_UNIT_PRIORITY));
-    }
-
-    private void updateWalls() {
-      walls.clear();
-      Stream.of(
-              Arrays.stream(world.getTrees()),
-              Arrays.stream(world.getBuildings()),
-              Arrays.stream(world.getMinions()).filter(m -> m.getFaction() == Faction.NEUTRAL))
-          .flatMap(Function.identity())
-          .forEach(
-              unit -> {
-                if (unit.getLife() > game.getMagicMissileDirectDamage() || brain.isAlly(unit)) {
-                  walls.addAll(getSquares(unit));
-                }
-              });
-
-      Square selfSquare = Square.containing(self);
-      walls.remove(selfSquare);
-      walls.removeAll(Arrays.asList(getNeighbors(selfSquare)));
+    /**
+     * Adds the enemies to the {@link DangerMap} with their attack range plus {@link #SAFETY_EPS}.
+     * The buildings layer is only rebuilt when the enemy buildings in sight change.
+     */
+    void updateDangerMap() {
+      long[] buildingIds =
+          Arrays.stream(world.getBuildings())
+              .filter(this::isEnemy)
+              .mapToLong(Unit::getId)
+              .toArray();
+      if (!Arrays.equals(buildingIds, dangerMapBuildingIds)) {
+        dangerMapBuildingIds = buildingIds;
+        dangerMap.clearBuildings();
+        for (Building building : world.getBuildings()) {
+          if (isEnemy(building)) {
+            double range = building.getAttackRange() + SAFETY_EPS;
+            double damageRate = getDamageRate(building);
+            if (staticMap == null || !staticMap.addDanger(building, range, damageRate, dangerMap)) {
+              dangerMap.addBuilding(building.getX(), building.getY(), range, damageRate);
+            }
+          }
+        }
+      }
 
-      if (debug != null && DEBUG_DRAW_WALLS) {
-        for (Square square : walls) {
-          debug.fillRect(
-              square.getLeftX(),
-              square.getTopY(),
-              square.getRightX(),
-              square.getBottomY(),
-              Color.pink);
-          debug.drawBeforeScene();
+      dangerMap.clear();
+      for (LivingUnit[] units : new LivingUnit[][] {world.getWizards(), world.getMinions()}) {
+        for (LivingUnit unit : units) {
+          if (isEnemy(unit)) {
+            dangerMap.add(
+                unit.getX(), unit.getY(), getAttackRange(unit) + SAFETY_EPS, getDamageRate(unit));
+          }
         }
       }
     }
 
-    private void updateWeakTrees() {
+    /** Builds the obstacle layers of the tick on first use, except for the static walls. */
+    private void ensureObstacles() {
+      if (!obstaclesStale) {
+        return;
+      }
+      obstaclesStale = false;
+
+      ObjectGrid<Tree> trees = previousWeakTrees;
+      previousWeakTrees = weakTrees;
+      weakTrees = trees;
+      BitGrid walls = previousMinionWalls;
+      previousMinionWalls = minionWalls;
+      minionWalls = walls;
+      IntGrid counts = previousMovingUnits;
+      previousMovingUnits = movingUnits;
+      movingUnits = counts;
+
       weakTrees.clear();
       for (Tree tree : world.getTrees()) {
         if (tree.getLife() <= game.getMagicMissileDirectDamage()) {
@@ -936,494 +1259,4383 @@ public final class MyStrategy implements Strategy {
         }
       }
 
-      if (debug != null && DEBUG_DRAW_WEAK_TREES) {
-        for (Square square : weakTrees.keySet()) {
-          debug.drawRect(
-              square.getLeftX(),
-              square.getTopY(),
-              square.getRightX(),
-              square.getBottomY(),
-              Color.pink);
-          debug.drawBeforeScene();
-        }
-      }
-    }
-
-    private void updateMovingUnits() {
+      minionWalls.clear();
       movingUnits.clear();
-      Stream.of(Arrays.stream(world.getWizards()), Arrays.stream(world.getMinions()))
-          .flatMap(Function.identity())
-          .filter(
-              unit ->
-                  !brain.isMe(unit)
-                      && (brain.isAlly(unit)
-                          || unit.getLife() > game.getMagicMissileDirectDamage()))
-          .forEach(unit -> getSquares(unit).forEach(s -> movingUnits.put(s, unit)));
-
-      if (debug != null && DEBUG_DRAW_MOVING_UNITS) {
-        movingUnits
-            .keySet().forEach(
-            square -> {
-              debug.drawRect(
-                  square.getLeftX(),
-                  square.getTopY(),
-                  square.getRightX(),
-                  square.getBottomY(),
-                  Color.orange);
-              debug.drawBeforeScene();
-            });
+      for (Minion minion : world.getMinions()) {
+        if (minion.getFaction() == Faction.NEUTRAL && isObstacle(minion)) {
+          minionWalls.addAll(getSquares(minion));
+        }
       }
-    }
-
-    private List<Square> getSquares(LivingUnit unit) {
-      List<Square> result = new ArrayList<>();
-      double r = unit.getRadius() + self.getRadius();
-      Square topLeft = Square.containing(unit.getX() - r, unit.getY() - r);
-      Square bottomRight = Square.containing(unit.getX() + r, unit.getY() + r);
-      for (int p = topLeft.getP(); p <= bottomRight.getP(); ++p) {
-        for (int q = topLeft.getQ(); q <= bottomRight.getQ(); ++q) {
-          Square square = new Square(p, q);
-          if (distanceLessThan(unit, square.getCenter(), r)) {
-            result.add(square);
+      for (LivingUnit[] units : new LivingUnit[][] {world.getWizards(), world.getMinions()}) {
+        for (LivingUnit unit : units) {
+          if (isAlly(unit) || unit.getLife() > game.getMagicMissileDirectDamage()) {
+            for (Square square : getSquares(unit)) {
+              movingUnits.add(square, 1);
+            }
           }
         }
       }
-      return result;
-    }
 
-    public Stream<Point> getPointsOnLine(Point a, Point b) {
-      Point ab = b.sub(a);
-      int n = (int) Math.ceil(ab.length() / SQUARE_CRUDENESS) + 1;
-      return IntStream.rangeClosed(0, n).mapToObj(i -> a.add(ab.mul((double) i / n)));
+      previousWeakTrees.forEachDifference(weakTrees, this::touch);
+      previousMinionWalls.forEachDifference(minionWalls, this::touch);
+      previousMovingUnits.forEachDifference(movingUnits, this::touch);
     }
 
-    public Stream<Square> getSquaresOnLine(Point a, Point b) {
-      final Square[] prev = {null};
-      return getPointsOnLine(a, b)
-          .map(Square::containing)
-          .filter(
-              square -> {
-                if (square.equals(prev[0])) {
-                  return false;
-                }
-                prev[0] = square;
-                return true;
-              });
+    /** The memory of the obstacle layers, in their {@link TileGrid}s, and of the dense maps. */
+    String reportGrids() {
+      long bytes = 0;
+      int allocated = 0;
+      int tiles = 0;
+      for (TileGrid grid :
+          new TileGrid[] {
+            staticWalls,
+            nextStaticWalls,
+            minionWalls,
+            previousMinionWalls,
+            weakTrees,
+            previousWeakTrees,
+            movingUnits,
+            previousMovingUnits,
+            obstacleGenerations,
+          }) {
+        bytes += grid.getBytes();
+        allocated += grid.getAllocatedTileCount();
+        tiles += grid.getTileCount();
+      }
+      return "grids of "
+          + SQUARE_CRUDENESS
+          + "-unit squares: obstacle layers = "
+          + bytes / 1024
+          + " KB in "
+          + allocated
+          + " of "
+          + tiles
+          + " tiles, danger map = "
+          + dangerMap.getBytes() / 1024
+          + " KB, vision map = "
+          + visionMap.getBytes() / 1024
+          + " KB\n";
     }
 
-    public Stream<Square> getSquaresOnLine(Square a, Square b) {
-      return getSquaresOnLine(a.getCenter(), b.getCenter());
+    /** Moves the square to a new {@link #getObstacleGeneration}. */
+    private void touch(Square square) {
+      obstacleGenerations.set(square, ++obstacleGeneration);
     }
 
-    public Point getNextWaypoint() {
-      int lastWaypointIndex = waypoints.length - 1;
-      Point lastWaypoint = waypoints[lastWaypointIndex];
+    private boolean isObstacle(LivingUnit unit) {
+      return unit.getLife() > game.getMagicMissileDirectDamage() || isAlly(unit);
+    }
 
-      for (int waypointIndex = 0; waypointIndex < lastWaypointIndex; ++waypointIndex) {
-        Point waypoint = waypoints[waypointIndex];
+    /**
+     * Rebuilds the walls of trees and buildings, which {@link Scheduler} spreads over several
+     * ticks. Until the next rebuild a felled tree stays a wall, and a tree that became weak is a
+     * wall only where no weak tree is.
+     */
+    private Scheduler.Job staticWallsJob() {
+      return new Scheduler.Job() {
+
+        private LivingUnit[] units = new LivingUnit[0];
+
+        @Override
+        public int start() {
+          units =
+              Stream.concat(Arrays.stream(world.getTrees()), Arrays.stream(world.getBuildings()))
+                  .toArray(LivingUnit[]::new);
+          nextStaticWalls.clear();
+          return units.length;
+        }
 
-        if (distanceLessThan(waypoint, self, self.getRadius() * 4)) {
-          return waypoints[waypointIndex + 1];
+        @Override
+        public void step(int index) {
+          LivingUnit unit = units[index];
+          if (!isObstacle(unit)) {
+            return;
+          }
+          if (unit instanceof Building
+              && staticMap != null
+              && staticMap.addFootprint((Building) unit, nextStaticWalls)) {
+            return;
+          }
+          nextStaticWalls.addAll(getSquares(unit));
         }
 
-        if (lastWaypoint.getDistanceTo(waypoint) < lastWaypoint.getDistanceTo(self)) {
-          return waypoint;
+        @Override
+        public void finish() {
+          staticWalls.forEachDifference(nextStaticWalls, TeamModel.this::touch);
+          BitGrid walls = staticWalls;
+          staticWalls = nextStaticWalls;
+          nextStaticWalls = walls;
+          units = new LivingUnit[0];
         }
+      };
+    }
+  }
+
+  /**
+   * Debug drawings grouped into channels that are switched at runtime with the {@code
+   * debug.channels} system property, e.g. {@code -Ddebug.channels=path,walls/10,cooldowns}: channel
+   * names, each optionally followed by a period to draw only every N-th tick, or {@code all} or
+   * {@code none}. Without the property the periods below are used.
+   *
+   * <p>Call sites test {@link DebugChannel#active} before building any geometry, so a disabled
+   * channel costs one field read.
+   */
+  static final class DebugChannels {
+
+    static final String PROPERTY = "debug.channels";
+
+    final DebugChannel decisions;
+    final DebugChannel path;
+    final DebugChannel searchTree;
+    final DebugChannel waypoints;
+    final DebugChannel walls;
+    final DebugChannel weakTrees;
+    final DebugChannel movingUnits;
+    final DebugChannel obstacles;
+    final DebugChannel obstacleHp;
+    final DebugChannel cooldowns;
+    final DebugChannel staff;
+    final DebugChannel projectiles;
+    final DebugChannel danger;
+    final DebugChannel vision;
+    private final DebugChannel[] all;
+
+    DebugChannels(Visualizer debug) {
+      all =
+          new DebugChannel[] {
+            decisions = new DebugChannel("decisions", 1, debug),
+            path = new DebugChannel("path", 1, debug),
+            searchTree = new DebugChannel("search-tree", 0, debug),
+            waypoints = new DebugChannel("waypoints", 1, debug),
+            walls = new DebugChannel("walls", 0, debug),
+            weakTrees = new DebugChannel("weak-trees", 0, debug),
+            movingUnits = new DebugChannel("moving-units", 0, debug),
+            obstacles = new DebugChannel("obstacles", 0, debug),
+            obstacleHp = new DebugChannel("obstacle-hp", 0, debug),
+            cooldowns = new DebugChannel("cooldowns", 1, debug),
+            staff = new DebugChannel("staff", 1, debug),
+            projectiles = new DebugChannel("projectiles", 1, debug),
+            danger = new DebugChannel("danger", 0, debug),
+            vision = new DebugChannel("vision", 0, debug),
+          };
+      String spec = System.getProperty(PROPERTY);
+      if (spec != null) {
+        configure(spec);
+      }
+    }
+
+    /** Enables exactly the channels in {@code spec}; see {@link DebugChannels}. */
+    void configure(String spec) {
+      for (DebugChannel channel : all) {
+        channel.setPeriod(0);
+      }
+      for (String item : spec.split(",")) {
+        item = item.trim();
+        if (item.isEmpty() || item.equals("none")) {
+          continue;
+        }
+        int slash = item.indexOf('/');
+        String name = slash == -1 ? item : item.substring(0, slash);
+        int period = slash == -1 ? 1 : Integer.parseInt(item.substring(slash + 1));
+        boolean found = false;
+        for (DebugChannel channel : all) {
+          if (name.equals("all") || name.equals(channel.name)) {
+            channel.setPeriod(period);
+            found = true;
+          }
+        }
+        if (!found) {
+          throw new IllegalArgumentException("Unknown debug channel " + name);
+        }
+      }
+    }
+
+    void startTick(int tickIndex) {
+      for (DebugChannel channel : all) {
+        channel.startTick(tickIndex);
+      }
+    }
+  }
+
+  static final class DebugChannel {
+
+    final String name;
+    private final Visualizer debug;
+    private int period;
+
+    /** Whether to draw on this tick; false whenever there is no visualizer. */
+    boolean active;
+
+    DebugChannel(String name, int period, Visualizer debug) {
+      this.name = name;
+      this.period = period;
+      this.debug = debug;
+    }
+
+    /** Draws on every period-th tick, starting from the next one; 0 disables the channel. */
+    void setPeriod(int period) {
+      if (period < 0) {
+        throw new IllegalArgumentException("Negative period for debug channel " + name);
+      }
+      this.period = period;
+    }
+
+    void startTick(int tickIndex) {
+      active = debug != null && period != 0 && tickIndex % period == 0;
+    }
+  }
+
+  static class Brain {
+
+    private final Faction ALLY_FRACTION;
+    private final Faction ENEMY_FRACTION;
+
+    private final Random random;
+    final Visualizer debug;
+    final DebugChannels debugChannels;
+    private final Profiler profiler;
+    private final List<WorldObserver> observers;
+    final WorldChanges worldChanges = new WorldChanges();
+    final Stuck stuck;
+    private final BonusFinder bonusFinder;
+    final Field field;
+    final Walker walker;
+    final Shooter shooter;
+    final Skiller skiller;
+    final Dodger dodger;
+    final RolloutSearch rolloutSearch;
+    final TeamModel team;
+    /** The first square of the path taken to each walking target this tick, or null if none. */
+    private final Map<Square, Square> shortcuts = new HashMap<>();
+    protected Wizard self;
+    protected World world;
+    protected Game game;
+
+    public Brain(Wizard self, World world, Game game) {
+      this(self, world, game, new TeamModel(game));
+    }
+
+    public Brain(Wizard self, World world, Game game, TeamModel team) {
+      this.self = self;
+      this.world = world;
+      this.game = game;
+      this.team = team;
+      team.loadStaticMap(world);
+
+      ALLY_FRACTION = self.getFaction();
+      ENEMY_FRACTION = ALLY_FRACTION == Faction.ACADEMY ? Faction.RENEGADES : Faction.ACADEMY;
+
+      Visualizer debugVisualizer = null;
+      if (LOAD_DEBUG_VISUALIZER) {
+        try {
+          Class<?> clazz = Class.forName("DebugVisualizer");
+          Object instance = clazz.getConstructor().newInstance();
+          debugVisualizer = (Visualizer) instance;
+        } catch (Exception e) {
+          throw new RuntimeException("Cannot load DebugVisualizer");
+        }
+      } else if (LOAD_DEBUG_TRACE_RECORDER) {
+        try {
+          Class<?> clazz = Class.forName("DebugTraceRecorder");
+          Object instance =
+              clazz
+                  .getConstructor(String.class)
+                  .newInstance(
+                      Paths.get(DEBUG_TRACE_DIRECTORY, "debug-" + self.getId()).toString());
+          debugVisualizer = (Visualizer) instance;
+        } catch (Exception | LinkageError e) {
+          // Not bundled (e.g. strategy-no-debug) or the directory is not writable.
+        }
+      }
+      debug = debugVisualizer;
+      debugChannels = new DebugChannels(debug);
+
+      Profiler flightRecorderProfiler = null;
+      if (LOAD_FLIGHT_RECORDER_PROFILER) {
+        try {
+          Class<?> clazz = Class.forName("FlightRecorderProfiler");
+          Object instance = clazz.getConstructor().newInstance();
+          flightRecorderProfiler = (Profiler) instance;
+        } catch (Exception | LinkageError e) {
+          // Not bundled (e.g. strategy-no-debug) or no JFR in this JVM.
+        }
+      }
+      profiler = flightRecorderProfiler;
+
+      random = new Random(game.getRandomSeed());
+
+      observers = new ArrayList<>();
+
+      stuck = new Stuck(this, debug, random);
+      observers.add(stuck);
+
+      bonusFinder = new BonusFinder(this, debug, game);
+      observers.add(bonusFinder);
+
+      field = new Field(this, debug, self, game);
+      observers.add(field);
+
+      walker = new Walker(this, debug);
+      observers.add(walker);
+
+      shooter = new Shooter(this, debug);
+      observers.add(shooter);
+
+      skiller = new Skiller(this, debug);
+      observers.add(skiller);
+
+      dodger = new Dodger(this, debug);
+      observers.add(dodger);
+
+      rolloutSearch = USE_ROLLOUT_SEARCH ? team.getRolloutSearch() : null;
+
+      if (debug != null) {
+        printGameParameters();
+      }
+    }
+
+    private void printGameParameters() {
+      System.out.println("RandomSeed = " + game.getRandomSeed());
+      System.out.println("TickCount = " + game.getTickCount());
+      System.out.println("MapSize = " + game.getMapSize());
+      System.out.println("isSkillsEnabled = " + game.isSkillsEnabled());
+      System.out.println("isRawMessagesEnabled = " + game.isRawMessagesEnabled());
+      System.out.println("FriendlyFireDamageFactor = " + game.getFriendlyFireDamageFactor());
+      System.out.println("BuildingDamageScoreFactor = " + game.getBuildingDamageScoreFactor());
+      System.out.println(
+          "BuildingEliminationScoreFactor = " + game.getBuildingEliminationScoreFactor());
+      System.out.println("MinionDamageScoreFactor = " + game.getMinionDamageScoreFactor());
+      System.out.println(
+          "MinionEliminationScoreFactor = " + game.getMinionEliminationScoreFactor());
+      System.out.println("WizardDamageScoreFactor = " + game.getWizardDamageScoreFactor());
+      System.out.println(
+          "WizardEliminationScoreFactor = " + game.getWizardEliminationScoreFactor());
+      System.out.println("TeamWorkingScoreFactor = " + game.getTeamWorkingScoreFactor());
+      System.out.println("VictoryScore = " + game.getVictoryScore());
+      System.out.println("ScoreGainRange = " + game.getScoreGainRange());
+      System.out.println("RawMessageMaxLength = " + game.getRawMessageMaxLength());
+      System.out.println("RawMessageTransmissionSpeed = " + game.getRawMessageTransmissionSpeed());
+      System.out.println("WizardRadius = " + game.getWizardRadius());
+      System.out.println("WizardCastRange = " + game.getWizardCastRange());
+      System.out.println("WizardVisionRange = " + game.getWizardVisionRange());
+      System.out.println("WizardForwardSpeed = " + game.getWizardForwardSpeed());
+      System.out.println("WizardBackwardSpeed = " + game.getWizardBackwardSpeed());
+      System.out.println("WizardStrafeSpeed = " + game.getWizardStrafeSpeed());
+      System.out.println("WizardBaseLife = " + game.getWizardBaseLife());
+      System.out.println("WizardLifeGrowthPerLevel = " + game.getWizardLifeGrowthPerLevel());
+      System.out.println("WizardBaseMana = " + game.getWizardBaseMana());
+      System.out.println("WizardManaGrowthPerLevel = " + game.getWizardManaGrowthPerLevel());
+      System.out.println("WizardBaseLifeRegeneration = " + game.getWizardBaseLifeRegeneration());
+      System.out.println(
+          "WizardLifeRegenerationGrowthPerLevel = "
+              + game.getWizardLifeRegenerationGrowthPerLevel());
+      System.out.println("WizardBaseManaRegeneration = " + game.getWizardBaseManaRegeneration());
+      System.out.println(
+          "WizardManaRegenerationGrowthPerLevel = "
+              + game.getWizardManaRegenerationGrowthPerLevel());
+      System.out.println("WizardMaxTurnAngle = " + game.getWizardMaxTurnAngle());
+      System.out.println(
+          "WizardMaxResurrectionDelayTicks = " + game.getWizardMaxResurrectionDelayTicks());
+      System.out.println(
+          "WizardMinResurrectionDelayTicks = " + game.getWizardMinResurrectionDelayTicks());
+      System.out.println("WizardActionCooldownTicks = " + game.getWizardActionCooldownTicks());
+      System.out.println("StaffCooldownTicks = " + game.getStaffCooldownTicks());
+      System.out.println("MagicMissileCooldownTicks = " + game.getMagicMissileCooldownTicks());
+      System.out.println("FrostBoltCooldownTicks = " + game.getFrostBoltCooldownTicks());
+      System.out.println("FireballCooldownTicks = " + game.getFireballCooldownTicks());
+      System.out.println("HasteCooldownTicks = " + game.getHasteCooldownTicks());
+      System.out.println("ShieldCooldownTicks = " + game.getShieldCooldownTicks());
+      System.out.println("MagicMissileManacost = " + game.getMagicMissileManacost());
+      System.out.println("FrostBoltManacost = " + game.getFrostBoltManacost());
+      System.out.println("FireballManacost = " + game.getFireballManacost());
+      System.out.println("HasteManacost = " + game.getHasteManacost());
+      System.out.println("ShieldManacost = " + game.getShieldManacost());
+      System.out.println("StaffDamage = " + game.getStaffDamage());
+      System.out.println("StaffSector = " + game.getStaffSector());
+      System.out.println("StaffRange = " + game.getStaffRange());
+      System.out.println("LevelUpXpValues = " + game.getLevelUpXpValues());
+      System.out.println("MinionRadius = " + game.getMinionRadius());
+      System.out.println("MinionVisionRange = " + game.getMinionVisionRange());
+      System.out.println("MinionSpeed = " + game.getMinionSpeed());
+      System.out.println("MinionMaxTurnAngle = " + game.getMinionMaxTurnAngle());
+      System.out.println("MinionLife = " + game.getMinionLife());
+      System.out.println(
+          "FactionMinionAppearanceIntervalTicks = "
+              + game.getFactionMinionAppearanceIntervalTicks());
+      System.out.println(
+          "OrcWoodcutterActionCooldownTicks = " + game.getOrcWoodcutterActionCooldownTicks());
+      System.out.println("OrcWoodcutterDamage = " + game.getOrcWoodcutterDamage());
+      System.out.println("OrcWoodcutterAttackSector = " + game.getOrcWoodcutterAttackSector());
+      System.out.println("OrcWoodcutterAttackRange = " + game.getOrcWoodcutterAttackRange());
+      System.out.println(
+          "FetishBlowdartActionCooldownTicks = " + game.getFetishBlowdartActionCooldownTicks());
+      System.out.println("FetishBlowdartAttackRange = " + game.getFetishBlowdartAttackRange());
+      System.out.println("FetishBlowdartAttackSector = " + game.getFetishBlowdartAttackSector());
+      System.out.println("BonusRadius = " + game.getBonusRadius());
+      System.out.println(
+          "BonusAppearanceIntervalTicks = " + game.getBonusAppearanceIntervalTicks());
+      System.out.println("BonusScoreAmount = " + game.getBonusScoreAmount());
+      System.out.println("DartRadius = " + game.getDartRadius());
+      System.out.println("DartSpeed = " + game.getDartSpeed());
+      System.out.println("DartDirectDamage = " + game.getDartDirectDamage());
+      System.out.println("MagicMissileRadius = " + game.getMagicMissileRadius());
+      System.out.println("MagicMissileSpeed = " + game.getMagicMissileSpeed());
+      System.out.println("MagicMissileDirectDamage = " + game.getMagicMissileDirectDamage());
+      System.out.println("FrostBoltRadius = " + game.getFrostBoltRadius());
+      System.out.println("FrostBoltSpeed = " + game.getFrostBoltSpeed());
+      System.out.println("FrostBoltDirectDamage = " + game.getFrostBoltDirectDamage());
+      System.out.println("FireballRadius = " + game.getFireballRadius());
+      System.out.println("FireballSpeed = " + game.getFireballSpeed());
+      System.out.println(
+          "FireballExplosionMaxDamageRange = " + game.getFireballExplosionMaxDamageRange());
+      System.out.println(
+          "FireballExplosionMinDamageRange = " + game.getFireballExplosionMinDamageRange());
+      System.out.println("FireballExplosionMaxDamage = " + game.getFireballExplosionMaxDamage());
+      System.out.println("FireballExplosionMinDamage = " + game.getFireballExplosionMinDamage());
+      System.out.println("GuardianTowerRadius = " + game.getGuardianTowerRadius());
+      System.out.println("GuardianTowerVisionRange = " + game.getGuardianTowerVisionRange());
+      System.out.println("GuardianTowerLife = " + game.getGuardianTowerLife());
+      System.out.println("GuardianTowerAttackRange = " + game.getGuardianTowerAttackRange());
+      System.out.println("GuardianTowerDamage = " + game.getGuardianTowerDamage());
+      System.out.println("GuardianTowerCooldownTicks = " + game.getGuardianTowerCooldownTicks());
+      System.out.println("FactionBaseRadius = " + game.getFactionBaseRadius());
+      System.out.println("FactionBaseVisionRange = " + game.getFactionBaseVisionRange());
+      System.out.println("FactionBaseLife = " + game.getFactionBaseLife());
+      System.out.println("FactionBaseAttackRange = " + game.getFactionBaseAttackRange());
+      System.out.println("FactionBaseDamage = " + game.getFactionBaseDamage());
+      System.out.println("FactionBaseCooldownTicks = " + game.getFactionBaseCooldownTicks());
+      System.out.println("BurningDurationTicks = " + game.getBurningDurationTicks());
+      System.out.println("BurningSummaryDamage = " + game.getBurningSummaryDamage());
+      System.out.println("EmpoweredDurationTicks = " + game.getEmpoweredDurationTicks());
+      System.out.println("EmpoweredDamageFactor = " + game.getEmpoweredDamageFactor());
+      System.out.println("FrozenDurationTicks = " + game.getFrozenDurationTicks());
+      System.out.println("HastenedDurationTicks = " + game.getHastenedDurationTicks());
+      System.out.println("HastenedBonusDurationFactor = " + game.getHastenedBonusDurationFactor());
+      System.out.println("HastenedMovementBonusFactor = " + game.getHastenedMovementBonusFactor());
+      System.out.println("HastenedRotationBonusFactor = " + game.getHastenedRotationBonusFactor());
+      System.out.println("ShieldedDurationTicks = " + game.getShieldedDurationTicks());
+      System.out.println("ShieldedBonusDurationFactor = " + game.getShieldedBonusDurationFactor());
+      System.out.println(
+          "ShieldedDirectDamageAbsorptionFactor = "
+              + game.getShieldedDirectDamageAbsorptionFactor());
+      System.out.println("AuraSkillRange = " + game.getAuraSkillRange());
+      System.out.println("RangeBonusPerSkillLevel = " + game.getRangeBonusPerSkillLevel());
+      System.out.println(
+          "MagicalDamageBonusPerSkillLevel = " + game.getMagicalDamageBonusPerSkillLevel());
+      System.out.println(
+          "StaffDamageBonusPerSkillLevel = " + game.getStaffDamageBonusPerSkillLevel());
+      System.out.println(
+          "MovementBonusFactorPerSkillLevel = " + game.getMovementBonusFactorPerSkillLevel());
+      System.out.println(
+          "MagicalDamageAbsorptionPerSkillLevel = "
+              + game.getMagicalDamageAbsorptionPerSkillLevel());
+    }
+
+    public void move(Wizard self, World world, Game game, Move move) {
+      if (profiler != null) {
+        profiler.tickStarted(world.getTickIndex(), self.getId());
+      }
+
+      debugChannels.startTick(world.getTickIndex());
+      updateObservers(self, world, game);
+      shortcuts.clear();
+
+      boolean lowHP = self.getLife() < 60;
+      boolean reallyLowHP = self.getLife() < 40;
+
+      boolean inDanger = isAllyInDanger(self);
+      if (debugChannels.decisions.active && inDanger) {
+        debug.drawCircle(self.getX(), self.getY(), self.getRadius() / 2, Color.red);
+        debug.drawBeforeScene();
+      }
+
+      Building factionBase = getAllyFactionBase();
+      boolean factionBaseInDanger = factionBase != null && isAllyInDanger(factionBase);
+
+      Point bonus = bonusFinder.findBonus();
+
+      LivingUnit shootingTarget =
+          shooter.getTarget(lowHP ? self.getCastRange() : self.getVisionRange());
+
+      boolean inHomeArea =
+          self.getX() < world.getWidth() * 0.40 && self.getY() > world.getHeight() * 0.60;
+
+      Point selfPoint = new Point(self);
+
+      Point walkingTarget;
+      String walkingReason;
+      if (bonus != null && !(inHomeArea && inDanger)) {
+        walkingTarget = bonus;
+        walkingReason = "bonus";
+      } else if (!lowHP && shootingTarget == null) {
+        walkingTarget = field.getNextWaypoint();
+        walkingReason = "advance";
+      } else if (!lowHP && self.getDistanceTo(shootingTarget) > self.getCastRange()) {
+        walkingTarget = new Point(shootingTarget);
+        walkingReason = "chase";
+      } else if (reallyLowHP || inDanger) {
+        walkingTarget = field.getPreviousWaypoint();
+        walkingReason = "retreat";
+      } else if (factionBaseInDanger) {
+        walkingTarget = field.getFactionBaseWaypoint();
+        walkingReason = "defend base";
+      } else {
+        walkingTarget = field.getNextWaypoint();
+        walkingReason = "hold";
+      }
+
+      Point shortWalkingTarget = getShortWalkingTarget(walkingTarget);
+
+      Tree targetTree = getTargetTree(selfPoint, shortWalkingTarget);
+      if (targetTree != null) {
+        shootingTarget = targetTree;
+      }
+
+      walker.goTo(shortWalkingTarget, move);
+      if (dodger.dodge(move) == Dodger.State.DODGING) {
+        walkingReason = "dodge";
+      }
+      stuck.unstuck(move);
+
+      if (shootingTarget != null) {
+        walker.turnTo(shootingTarget, move);
+      } else if (walkingTarget != selfPoint) {
+        walker.turnTo(shortWalkingTarget, move);
+      } else {
+        LivingUnit nextShootingTarget = shooter.getTarget(self.getVisionRange() * 2);
+        if (nextShootingTarget != null) {
+          walker.turnTo(nextShootingTarget, move);
+        } else {
+          walker.turnTo(field.getNextWaypoint(), move);
+        }
+      }
+
+      if (self.getRemainingActionCooldownTicks() == 0) {
+        int[] cooldown = self.getRemainingCooldownTicksByAction();
+        if (shootingTarget != null
+            && cooldown[ActionType.STAFF.ordinal()] == 0
+            && shooter.staffCanReach(shootingTarget)) {
+          move.setAction(ActionType.STAFF);
+        } else if (skiller.hasSkill(SkillType.SHIELD)
+            && cooldown[ActionType.SHIELD.ordinal()] == 0
+            && self.getMana() >= game.getShieldManacost()
+            && Arrays.stream(self.getStatuses())
+                .noneMatch(s -> s.getType() == StatusType.SHIELDED)) {
+          move.setAction(ActionType.SHIELD);
+        } else if (skiller.hasSkill(SkillType.HASTE)
+            && cooldown[ActionType.HASTE.ordinal()] == 0
+            && self.getMana() >= game.getHasteManacost()
+            && Arrays.stream(self.getStatuses())
+                .noneMatch(s -> s.getType() == StatusType.HASTENED)) {
+          move.setAction(ActionType.HASTE);
+        } else if (shootingTarget != null
+            && cooldown[ActionType.MAGIC_MISSILE.ordinal()] == 0
+            && self.getMana() >= game.getMagicMissileManacost()
+            && shooter.missileCanReach(shootingTarget)) {
+          move.setAction(ActionType.MAGIC_MISSILE);
+          move.setCastAngle(shooter.getCastAngle(shootingTarget));
+          move.setMinCastDistance(shooter.getMinCastDistance(shootingTarget));
+        }
+      }
+
+      if (rolloutSearch != null && stuck.state != Stuck.State.STUCK) {
+        List<Move> candidates =
+            getRolloutCandidates(
+                move,
+                bonus,
+                field.getNextWaypoint(),
+                field.getPreviousWaypoint(),
+                field.getFactionBaseWaypoint(),
+                shootingTarget == null ? null : new Point(shootingTarget));
+        int best =
+            rolloutSearch.search(
+                new Simulation(self, world, game),
+                candidates,
+                System.nanoTime() + ROLLOUT_BUDGET_NANOS);
+        if (rolloutSearch.getScore(best) > rolloutSearch.getScore(0) + ROLLOUT_MIN_GAIN) {
+          Move bestMove = candidates.get(best);
+          move.setSpeed(bestMove.getSpeed());
+          move.setStrafeSpeed(bestMove.getStrafeSpeed());
+          move.setTurn(bestMove.getTurn());
+          move.setAction(bestMove.getAction());
+          move.setCastAngle(bestMove.getCastAngle());
+          move.setMinCastDistance(bestMove.getMinCastDistance());
+          move.setMaxCastDistance(bestMove.getMaxCastDistance());
+          stuck.setRequestedMove(move);
+          walkingReason = "rollout";
+        }
+      }
+
+      skiller.maybeLearnSkill(move);
+
+      if (profiler != null) {
+        profiler.targetChosen(
+            walkingReason,
+            walkingTarget.getX(),
+            walkingTarget.getY(),
+            shootingTarget == null ? -1 : shootingTarget.getId(),
+            String.valueOf(move.getAction()));
+      }
+
+      if (debug != null) {
+        if (debugChannels.decisions.active) {
+          debug.showText(
+              self.getX(),
+              self.getY(),
+              String.valueOf(self.getRemainingActionCooldownTicks()),
+              Color.black);
+          debug.drawAfterScene();
+        }
+
+        if (debugChannels.obstacles.active) {
+          field
+              .getAllObstacles().forEach(
+              u ->
+                  debug.drawCircle(
+                      u.getX(), u.getY(), u.getRadius() + self.getRadius(), Color.yellow));
+          debug.drawAfterScene();
+        }
+
+        if (debugChannels.obstacleHp.active) {
+          for (LivingUnit unit : field.getAllObstacles()) {
+            debug.showText(unit.getX(), unit.getY(), String.valueOf(unit.getLife()), Color.black);
+          }
+          debug.drawAfterScene();
+        }
+
+        if (debugChannels.decisions.active) {
+          if (stuck.state == Stuck.State.STUCK) {
+            debug.showText(self.getX() - 20, self.getY() + 20, "Stuck", Color.red);
+            debug.drawAfterScene();
+          }
+
+          if (shortWalkingTarget != null) {
+            debug.drawLine(
+                self.getX(),
+                self.getY(),
+                shortWalkingTarget.getX(),
+                shortWalkingTarget.getY(),
+                Color.green);
+            debug.drawBeforeScene();
+          }
+
+          if (walkingTarget != null) {
+            debug.fillCircle(walkingTarget.getX(), walkingTarget.getY(), 5, Color.green);
+            debug.drawBeforeScene();
+          }
+
+          if (shootingTarget != null) {
+            debug.fillCircle(shootingTarget.getX(), shootingTarget.getY(), 5, Color.red);
+            debug.drawLine(
+                self.getX(),
+                self.getY(),
+                shootingTarget.getX(),
+                shootingTarget.getY(),
+                Color.red);
+            debug.drawBeforeScene();
+          }
+        }
+
+        if (debugChannels.cooldowns.active) {
+          for (Building building : world.getBuildings()) {
+            debug.drawCircle(
+                building.getX(), building.getY(), building.getVisionRange(), Color.lightGray);
+            debug.drawCircle(
+                building.getX(), building.getY(), building.getAttackRange(), Color.pink);
+            debug.drawBeforeScene();
+
+            debug.showText(
+                building.getX(),
+                building.getY() + 20,
+                String.valueOf(building.getRemainingActionCooldownTicks()),
+                Color.black);
+            debug.drawAfterScene();
+          }
+
+          debug.showText(
+              self.getX(),
+              self.getY(),
+              String.valueOf(self.getRemainingActionCooldownTicks()),
+              Color.black);
+          debug.showText(
+              self.getX(),
+              self.getY() + 20,
+              String.valueOf(
+                  self.getRemainingCooldownTicksByAction()[ActionType.MAGIC_MISSILE.ordinal()]),
+              Color.black);
+          debug.drawAfterScene();
+        }
+
+        debug.sync(world.getTickIndex());
+      }
+
+      if (profiler != null) {
+        profiler.tickFinished();
+      }
+    }
+
+    /**
+     * The move chosen so far, followed by combinations of walking to each of the given targets (or
+     * holding position, or strafing to either side), turning as chosen or towards the walking
+     * target, and doing the chosen action or nothing. Combinations that turn the same either way
+     * are listed once.
+     */
+    private List<Move> getRolloutCandidates(Move chosen, Point... walkingTargets) {
+      List<Move> movements = new ArrayList<>();
+      for (Point target : walkingTargets) {
+        if (target != null) {
+          Move movement = new Move();
+          Point shortTarget = getShortWalkingTarget(target);
+          walker.goTo(shortTarget, movement);
+          walker.turnTo(shortTarget, movement);
+          movements.add(movement);
+        }
+      }
+      for (int side = -1; side <= 1; ++side) {
+        Move movement = new Move();
+        movement.setStrafeSpeed(side * game.getWizardStrafeSpeed());
+        movement.setTurn(chosen.getTurn());
+        movements.add(movement);
+      }
+
+      List<Move> candidates = new ArrayList<>();
+      candidates.add(chosen);
+      for (Move movement : movements) {
+        for (int variant = 0; variant < 4; ++variant) {
+          boolean keepTurn = (variant & 1) != 0;
+          boolean act = (variant & 2) != 0;
+          if (act && chosen.getAction() == null
+              || keepTurn && movement.getTurn() == chosen.getTurn()) {
+            continue;
+          }
+          Move candidate = new Move();
+          candidate.setSpeed(movement.getSpeed());
+          candidate.setStrafeSpeed(movement.getStrafeSpeed());
+          candidate.setTurn(keepTurn ? chosen.getTurn() : movement.getTurn());
+          if (act) {
+            candidate.setAction(chosen.getAction());
+            candidate.setCastAngle(chosen.getCastAngle());
+            candidate.setMinCastDistance(chosen.getMinCastDistance());
+            candidate.setMaxCastDistance(chosen.getMaxCastDistance());
+          }
+          candidates.add(candidate);
+        }
+      }
+      return candidates;
+    }
+
+    Building getAllyFactionBase() {
+      return Arrays.stream(world.getBuildings())
+          .filter(b -> isAlly(b) && b.getType() == BuildingType.FACTION_BASE)
+          .findFirst()
+          .orElse(null);
+    }
+
+    /** Whether the ally is within the attack range, plus {@link #SAFETY_EPS}, of an enemy. */
+    boolean isAllyInDanger(LivingUnit ally) {
+      // A clear square is farther than DANGER_FALLOFF from every enemy's range.
+      if (ally.getRadius() + DangerMap.HALF_DIAGONAL < DANGER_FALLOFF
+          && team.dangerMap.isClear(ally.getX(), ally.getY())) {
+        return false;
+      }
+      return team.enemies.anyInRange(ally.getX(), ally.getY(), ally.getRadius());
+    }
+
+    private Tree getTargetTree(Point selfPoint, Point walkingTarget) {
+      return field.getWeakTreeOnLine(selfPoint, walkingTarget);
+    }
+
+    /** Tests the {@link VisionMap}, and only for the squares it cannot decide, the allies. */
+    boolean canSee(Point point) {
+      if (team.visionMap.isCovered(point.getX(), point.getY())) {
+        return true;
+      }
+      if (!team.visionMap.isTouched(point.getX(), point.getY())) {
+        return false;
+      }
+      return team.allies.anyInRange(point.getX(), point.getY(), 0);
+    }
+
+    /**
+     * The farthest square on the path to the target that can be walked to in a straight line. A
+     * target whose square was already walked to this tick reuses that path.
+     */
+    private Point getShortWalkingTarget(Point walkingTarget) {
+      Square end = Square.containing(walkingTarget);
+      if (!shortcuts.containsKey(end)) {
+        shortcuts.put(end, findShortcut(end));
+      }
+      Square shortcut = shortcuts.get(end);
+      return shortcut == null ? walkingTarget : shortcut.getCenter();
+    }
+
+    private Square findShortcut(Square end) {
+      List<Square> path = field.findPath(Square.containing(self), end);
+
+      if (path == null) {
+        return null;
+      }
+
+      int shortcut = 0;
+      while (shortcut + 1 < path.size() && field.isLineClear(path.get(0), path.get(shortcut + 1))) {
+        ++shortcut;
+      }
+      if (shortcut == 0 && 1 < path.size()) {
+        shortcut = 1;
+      }
+
+      if (debugChannels.path.active) {
+        for (int i = 1; i < path.size(); ++i) {
+          debug.drawLine(
+              path.get(i - 1).getCenterX(),
+              path.get(i - 1).getCenterY(),
+              path.get(i).getCenterX(),
+              path.get(i).getCenterY(),
+              debugChannels.searchTree.active ? Color.black : Color.lightGray);
+        }
+        debug.drawBeforeScene();
+      }
+
+      return path.get(shortcut);
+    }
+
+    private void updateObservers(Wizard self, World world, Game game) {
+      this.self = self;
+      this.world = world;
+      this.game = game;
+      team.update(self, world);
+      drawTeamModel();
+      worldChanges.update(self, world);
+      for (WorldObserver observer : observers) {
+        observer.update(self, world, game);
+      }
+    }
+
+    String reportObserverStats() {
+      StringBuilder sb = new StringBuilder();
+      for (WorldObserver observer : observers) {
+        sb.append(observer.reportStats());
+      }
+      sb.append(team.scheduler.report());
+      sb.append(team.reportGrids());
+      return sb.toString();
+    }
+
+    private void drawTeamModel() {
+      if (debugChannels.vision.active) {
+        for (Square square : team.visionMap.getRevealed()) {
+          debug.fillRect(
+              square.getLeftX(),
+              square.getTopY(),
+              square.getRightX(),
+              square.getBottomY(),
+              Color.green);
+        }
+        for (Square square : team.visionMap.getHidden()) {
+          debug.fillRect(
+              square.getLeftX(),
+              square.getTopY(),
+              square.getRightX(),
+              square.getBottomY(),
+              Color.gray);
+        }
+        debug.drawBeforeScene();
+      }
+
+      if (debugChannels.danger.active) {
+        for (int q = 0; q * SQUARE_CRUDENESS < world.getHeight(); ++q) {
+          for (int p = 0; p * SQUARE_CRUDENESS < world.getWidth(); ++p) {
+            Square square = new Square(p, q);
+            double danger = team.dangerMap.get(square);
+            if (danger > 0) {
+              int shade = 255 - (int) (255 * Math.min(1, danger));
+              debug.fillRect(
+                  square.getLeftX(),
+                  square.getTopY(),
+                  square.getRightX(),
+                  square.getBottomY(),
+                  new Color(255, shade, shade));
+            }
+          }
+        }
+        debug.drawBeforeScene();
+      }
+    }
+
+    private Tree getClosestTree(Wizard self, World world) {
+      Tree closestTree = null;
+      double closestTreeDistance = 0;
+      for (Tree tree : world.getTrees()) {
+        double distance = self.getDistanceTo(tree);
+        if (closestTree == null || distance < closestTreeDistance) {
+          closestTree = tree;
+          closestTreeDistance = distance;
+        }
+      }
+      return closestTree;
+    }
+
+    boolean isEnemy(Unit unit) {
+      return unit.getFaction() == ENEMY_FRACTION;
+    }
+
+    boolean isAlly(Unit unit) {
+      return unit.getFaction() == ALLY_FRACTION;
+    }
+
+    Point predictPosition(Unit unit, double ticksFromNow) {
+      return new Point(
+          unit.getX() + unit.getSpeedX() * ticksFromNow,
+          unit.getY() + unit.getSpeedY() * ticksFromNow);
+    }
+
+    void drawWaves(
+        double x, double y, double radius, double startAngle, double arcAngle, Color color) {
+      final int N = 10;
+      for (int i = 1; i <= N; ++i) {
+        debug.drawArc(x, y, radius * i / N, startAngle, arcAngle, color);
+      }
+    }
+
+    boolean isMe(Unit unit) {
+      return unit.getId() == self.getId();
+    }
+
+    double getAttackDamage(Wizard self) {
+      boolean empowered =
+          Arrays.stream(self.getStatuses()).anyMatch(s -> s.getType() == StatusType.EMPOWERED);
+      double multiplier = empowered ? game.getEmpoweredDamageFactor() : 1;
+      return multiplier * game.getMagicMissileDirectDamage();
+    }
+  }
+
+  /**
+   * Refreshes what need not be exact on every tick at a rate of its own. A {@link Job} restarts
+   * every {@code period} ticks and does an even share of its steps on each of them, so that a
+   * large recomputation is spread over the period instead of making one tick slow. A job may also
+   * be given a time slice per tick, past which it stops early and goes on on the next tick; this
+   * makes the moves depend on timing, so Replay checksums then differ between runs.
+   */
+  static final class Scheduler {
+
+    interface Job {
+
+      /** Starts a recomputation from the current world and returns the number of its steps. */
+      int start();
+
+      void step(int index);
+
+      /** Makes the result of all steps current. */
+      void finish();
+    }
+
+    private final List<Entry> entries = new ArrayList<>();
+
+    void add(String name, Job job, int period, long sliceNanos) {
+      entries.add(new Entry(name, job, period, sliceNanos));
+    }
+
+    /** Runs the share of every job for the tick; a job that has no result yet runs in full. */
+    void run(int tick) {
+      for (Entry entry : entries) {
+        if (!entry.running) {
+          if (entry.startTick != -1 && tick - entry.startTick < entry.period) {
+            entry.recordAge(tick);
+            continue;
+          }
+          entry.steps = entry.job.start();
+          entry.nextStep = 0;
+          entry.startTick = tick;
+          entry.running = true;
+        }
+
+        boolean first = entry.resultTick == -1;
+        int share = first ? entry.steps : (entry.steps + entry.period - 1) / entry.period;
+        long deadline = System.nanoTime() + entry.sliceNanos;
+        for (int i = 0; i < share && entry.nextStep < entry.steps; ++i) {
+          entry.job.step(entry.nextStep++);
+          if (!first && entry.sliceNanos != 0 && System.nanoTime() > deadline) {
+            break;
+          }
+        }
+        if (entry.nextStep == entry.steps) {
+          entry.job.finish();
+          entry.resultTick = entry.startTick;
+          entry.running = false;
+          ++entry.refreshes;
+        }
+        entry.recordAge(tick);
+      }
+    }
+
+    /** How many ticks old the result of each job was, over the ticks it was run on. */
+    String report() {
+      StringBuilder sb = new StringBuilder();
+      for (Entry entry : entries) {
+        sb.append(entry.name)
+            .append(": period = ")
+            .append(entry.period)
+            .append(", refreshes = ")
+            .append(entry.refreshes)
+            .append(", mean age = ")
+            .append(String.format("%.1f", (double) entry.ageSum / Math.max(1, entry.ticks)))
+            .append(", max age = ")
+            .append(entry.maxAge)
+            .append('\n');
+      }
+      return sb.toString();
+    }
+
+    private static final class Entry {
+
+      final String name;
+      final Job job;
+      final int period;
+      final long sliceNanos;
+      boolean running;
+      int steps;
+      int nextStep;
+      int startTick = -1;
+      int resultTick = -1;
+      int ticks;
+      int refreshes;
+      long ageSum;
+      int maxAge;
+
+      Entry(String name, Job job, int period, long sliceNanos) {
+        this.name = name;
+        this.job = job;
+        this.period = period;
+        this.sliceNanos = sliceNanos;
+      }
+
+      void recordAge(int tick) {
+        if (resultTick == -1) {
+          return;
+        }
+        int age = tick - resultTick;
+        ++ticks;
+        ageSum += age;
+        maxAge = Math.max(maxAge, age);
+      }
+    }
+  }
+
+  /** The parts of the world that a {@link WorldObserver} reads, see {@link WorldChanges}. */
+  enum WorldPart {
+    SELF,
+    /** The skills and statuses of our wizard. */
+    SKILLS,
+    WIZARDS,
+    MINIONS,
+    BUILDINGS,
+    TREES,
+    PROJECTILES,
+    BONUSES,
+  }
+
+  /**
+   * The last tick on which each {@link WorldPart} changed. A part changes when a fingerprint of the
+   * unit fields the observers read does, so e.g. the trees only change when one is hit or cut.
+   */
+  static final class WorldChanges {
+
+    private static final long MULTIPLIER = 0x9E3779B97F4A7C15L;
+
+    private final long[] fingerprints = new long[WorldPart.values().length];
+    private final int[] changedTicks = new int[WorldPart.values().length];
+
+    void update(Wizard self, World world) {
+      int tick = world.getTickIndex();
+      long selfFingerprint = fingerprint(0, self);
+      selfFingerprint = mix(selfFingerprint, self.getCastRange());
+      selfFingerprint = mix(selfFingerprint, self.getVisionRange());
+      record(WorldPart.SELF, selfFingerprint, tick);
+      long skillsFingerprint = self.getSkills().length;
+      for (SkillType skill : self.getSkills()) {
+        skillsFingerprint = mix(skillsFingerprint, skill.ordinal());
+      }
+      for (Status status : self.getStatuses()) {
+        skillsFingerprint = mix(skillsFingerprint, status.getType().ordinal());
+      }
+      record(WorldPart.SKILLS, skillsFingerprint, tick);
+      record(WorldPart.WIZARDS, fingerprint(world.getWizards()), tick);
+      record(WorldPart.MINIONS, fingerprint(world.getMinions()), tick);
+      record(WorldPart.BUILDINGS, fingerprint(world.getBuildings()), tick);
+      record(WorldPart.TREES, fingerprint(world.getTrees()), tick);
+      record(WorldPart.PROJECTILES, fingerprint(world.getProjectiles()), tick);
+      record(WorldPart.BONUSES, fingerprint(world.getBonuses()), tick);
+    }
+
+    /** Whether any of the parts changed after the tick. */
+    boolean changedSince(Set<WorldPart> parts, int tick) {
+      for (WorldPart part : parts) {
+        if (changedTicks[part.ordinal()] > tick) {
+          return true;
+        }
+      }
+      return false;
+    }
+
+    private void record(WorldPart part, long fingerprint, int tick) {
+      if (fingerprints[part.ordinal()] != fingerprint) {
+        fingerprints[part.ordinal()] = fingerprint;
+        changedTicks[part.ordinal()] = tick;
+      }
+    }
+
+    private static long fingerprint(Unit[] units) {
+      long hash = units.length;
+      for (Unit unit : units) {
+        hash = fingerprint(hash, unit);
+      }
+      return hash;
+    }
+
+    private static long fingerprint(long hash, Unit unit) {
+      hash = mix(hash, unit.getId());
+      hash = mix(hash, unit.getX());
+      hash = mix(hash, unit.getY());
+      hash = mix(hash, unit.getSpeedX());
+      hash = mix(hash, unit.getSpeedY());
+      hash = mix(hash, unit.getAngle());
+      hash = mix(hash, unit.getFaction().ordinal());
+      if (unit instanceof LivingUnit) {
+        hash = mix(hash, ((LivingUnit) unit).getLife());
+        hash = mix(hash, ((LivingUnit) unit).getRadius());
+      }
+      return hash;
+    }
+
+    private static long mix(long hash, double value) {
+      return (hash + Double.doubleToLongBits(value)) * MULTIPLIER;
+    }
+  }
+
+  /**
+   * Derives state from the world on every tick. Observers declare the {@link WorldPart}s their
+   * {@link #update()} reads. An eager observer updates on every tick, which the ones that keep
+   * history between ticks need. A lazy one updates on the first access within a tick, through
+   * {@link #ensureUpdated}, and keeps its results instead while none of its inputs changed.
+   */
+  abstract static class WorldObserver {
+
+    enum Evaluation {
+      EAGER,
+      LAZY,
+    }
+
+    protected final Brain brain;
+    protected final Visualizer debug;
+    protected final DebugChannels debugChannels;
+    protected Wizard self;
+    protected World world;
+    protected Game game;
+
+    private final Evaluation evaluation;
+    private final Set<WorldPart> inputs;
+    private boolean stale;
+    private int updatedTick = -1;
+    private int ticks;
+    private int updates;
+    private int skips;
+
+    public WorldObserver(
+        Brain brain, Visualizer debug, Evaluation evaluation, WorldPart... inputs) {
+      this.brain = brain;
+      this.debug = debug;
+      this.debugChannels = brain.debugChannels;
+      this.evaluation = evaluation;
+      this.inputs = EnumSet.noneOf(WorldPart.class);
+      this.inputs.addAll(Arrays.asList(inputs));
+    }
+
+    public void update(Wizard self, World world, Game game) {
+      this.self = self;
+      this.world = world;
+      this.game = game;
+      ++ticks;
+      stale = true;
+      if (evaluation == Evaluation.EAGER) {
+        ensureUpdated();
+      }
+    }
+
+    /** Runs {@link #update()} if it has not run on this tick and its inputs changed since. */
+    protected final void ensureUpdated() {
+      if (!stale) {
+        return;
+      }
+      stale = false;
+      if (evaluation == Evaluation.LAZY
+          && !brain.worldChanges.changedSince(inputs, updatedTick)) {
+        ++skips;
+        return;
+      }
+      updatedTick = world.getTickIndex();
+      ++updates;
+      update();
+    }
+
+    protected void update() {}
+
+    /** How many ticks the observer updated on, skipped as unchanged, and was not used on. */
+    String reportStats() {
+      return getClass().getSimpleName()
+          + ": ticks = "
+          + ticks
+          + ", updated = "
+          + updates
+          + ", skipped (inputs unchanged) = "
+          + skips
+          + ", not used = "
+          + (ticks - updates - skips)
+          + '\n';
+    }
+  }
+
+  static class Stuck extends WorldObserver {
+
+    private static final int STUCK_DETECTION_TICKS = 2;
+    private static final double SPEED_EPS = 0.01;
+    private static final double MIN_WALKING_SPEED = 1;
+
+    private Random random;
+
+    private State state;
+    private boolean lastMoveSucceeded;
+
+    private List<Point> positionHistory = new LinkedList<>();
+    private Point requestedSpeed;
+    private Point unstuckDirection;
+    private int stuckTicks;
+
+    public Stuck(Brain brain, Visualizer debug, Random random) {
+      super(brain, debug, Evaluation.EAGER, WorldPart.SELF);
+      this.random = random;
+    }
+
+    @Override
+    protected void update() {
+      positionHistory.add(0, new Point(self));
+      if (positionHistory.size() > STUCK_DETECTION_TICKS) {
+        positionHistory.remove(STUCK_DETECTION_TICKS);
+      }
+    }
+
+    public void unstuck(Move move) {
+      updateStuckState();
+
+      if (state == State.STUCK) {
+        ++stuckTicks;
+        if (stuckTicks == 1) {
+          unstuckDirection = Point.fromPolar(100, requestedSpeed.getAngle() + Math.PI / 2);
+        } else if (stuckTicks == 2) {
+          unstuckDirection = unstuckDirection.negate();
+        } else if (!lastMoveSucceeded) {
+          unstuckDirection = Point.fromPolar(100, (random.nextDouble() * 2 - 1) * Math.PI);
+        }
+        brain.walker.goTo(unstuckDirection.add(new Point(self)), move);
+      }
+
+      setRequestedMove(move);
+    }
+
+    /** Remembers the speed the move asks for, to tell on the next tick whether it was blocked. */
+    void setRequestedMove(Move move) {
+      Point strafeSpeed = Point.fromPolar(move.getStrafeSpeed(), self.getAngle() + Math.PI / 2);
+      requestedSpeed = Point.fromPolar(move.getSpeed(), self.getAngle()).add(strafeSpeed);
+    }
+
+    private void updateStuckState() {
+      if (positionHistory.size() < STUCK_DETECTION_TICKS) {
+        state = State.STANDING;
+        return;
+      }
+      Point position = positionHistory.get(0);
+      Point lastPosition = positionHistory.get(1);
+      Point speed = position.sub(lastPosition);
+      lastMoveSucceeded = speed.getDistanceTo(requestedSpeed) < SPEED_EPS;
+      if (!lastMoveSucceeded) {
+        state = State.STUCK;
+      } else {
+        state = speed.length() > MIN_WALKING_SPEED ? State.WALKING : State.STANDING;
+        stuckTicks = 0;
+      }
+    }
+
+    private enum State {
+      STANDING,
+      WALKING,
+      STUCK,
+    }
+  }
+
+  static class BonusFinder extends WorldObserver {
+
+    private static final int BONUS_ANTICIPATION_TICKS = 250;
+
+    private int nextBonusTick;
+    private Point bonus;
+
+    public BonusFinder(Brain brain, Visualizer debug, Game game) {
+      super(
+          brain,
+          debug,
+          Evaluation.EAGER,
+          WorldPart.SELF,
+          WorldPart.WIZARDS,
+          WorldPart.MINIONS,
+          WorldPart.BUILDINGS,
+          WorldPart.BONUSES);
+      nextBonusTick = game.getBonusAppearanceIntervalTicks() + 1;
+    }
+
+    @Override
+    public void update() {
+      int tick = world.getTickIndex();
+      if (bonus == null
+          && tick >= nextBonusTick - BONUS_ANTICIPATION_TICKS
+          && nextBonusTick < game.getTickCount()) {
+        bonus =
+            new Point(
+                game.getMapSize() * 0.7 - game.getBonusRadius() - self.getRadius(),
+                game.getMapSize() * 0.7 - game.getBonusRadius() - self.getRadius());
+        if (debug != null) {
+          System.out.println("anticipating a bonus");
+        }
+      }
+
+      if (tick >= nextBonusTick) {
+        nextBonusTick += game.getBonusAppearanceIntervalTicks();
+        bonus = new Point(game.getMapSize() * 0.7, game.getMapSize() * 0.7);
+      }
+
+      if (bonus != null && tick < nextBonusTick - BONUS_ANTICIPATION_TICKS && brain.canSee(bonus)) {
+        boolean bonusExists =
+            Arrays.stream(world.getBonuses()).anyMatch(b -> brain.canSee(new Point(b)));
+        if (!bonusExists) {
+          if (debug != null) {
+            System.out.println("bonus disappeared");
+          }
+          bonus = null;
+        }
+      }
+    }
+
+    public Point findBonus() {
+      return bonus;
+    }
+  }
+
+  /**
+   * The squares a line from the center of one {@link Square} to the center of another passes, as
+   * offsets from the first. They only depend on where the second square is relative to the first,
+   * so each template is computed once, in integers, and kept for the game. Rays longer than {@link
+   * #maxLength} squares along either axis are computed on every call instead.
+   */
+  static final class RayTemplates {
+
+    private final int maxLength;
+    private final int side;
+    private final int[][] templates;
+
+    RayTemplates(int maxLength) {
+      this.maxLength = maxLength;
+      side = 2 * maxLength + 1;
+      templates = new int[side * side][];
+    }
+
+    /** The (dp, dq) pairs of the squares on the ray, from (0, 0) to the end, without repeats. */
+    int[] get(int dp, int dq) {
+      if (Math.abs(dp) > maxLength || Math.abs(dq) > maxLength) {
+        return compute(dp, dq);
+      }
+      int index = (dq + maxLength) * side + dp + maxLength;
+      int[] template = templates[index];
+      if (template == null) {
+        template = compute(dp, dq);
+        templates[index] = template;
+      }
+      return template;
+    }
+
+    /**
+     * Samples the ray at the same steps as {@link Field#getPointsOnLine}: the i-th of n + 1 points
+     * is in the square floor(1/2 + d * i / n) from the first along each axis.
+     */
+    private static int[] compute(int dp, int dq) {
+      double length = SQUARE_CRUDENESS * Math.sqrt((double) dp * dp + (double) dq * dq);
+      int n = (int) Math.ceil(length / SQUARE_CRUDENESS) + 1;
+      int[] result = new int[2 * (n + 1)];
+      int count = 0;
+      for (int i = 0; i <= n; ++i) {
+        int p = Math.floorDiv(n + 2 * dp * i, 2 * n);
+        int q = Math.floorDiv(n + 2 * dq * i, 2 * n);
+        if (count == 0 || p != result[count - 2] || q != result[count - 1]) {
+          result[count++] = p;
+          result[count++] = q;
+        }
+      }
+      return Arrays.copyOf(result, count);
+    }
+  }
+
+  static class Field extends WorldObserver {
+
+    /** The steps of a search, which reach as far on the map at any {@link #SQUARE_CRUDENESS}. */
+    private static final int FIND_PATH_MAX_STEPS =
+        200 * DEFAULT_SQUARE_CRUDENESS / SQUARE_CRUDENESS;
+    /** How many squares from ours along either axis walls do not count. */
+    static final int SELF_CLEARANCE = Math.max(1, DEFAULT_SQUARE_CRUDENESS / SQUARE_CRUDENESS);
+    /** The Manhattan distance in squares from which {@link #findPath} searches from both ends. */
+    private static final int BIDIRECTIONAL_SEARCH_MIN_DISTANCE =
+        40 * DEFAULT_SQUARE_CRUDENESS / SQUARE_CRUDENESS;
+    private static final int MAX_RAY_TEMPLATE_LENGTH = 64;
+    private static final int PATH_CACHE_CAPACITY = 8;
+    private static final int WEAK_TREE_PRIORITY = -100;
+    private static final int MOVING_UNIT_PRIORITY = -1000;
+    private static final int FORWARD_SQUARE_PRIORITY = 1000;
+    /** The cost of stepping on a square per unit of its danger, which is damage per tick. */
+    private static final double DANGER_COST = 50;
+
+    private final Point[] waypoints;
+    private Square selfSquare;
+    private Set<Square> selfSquares = new HashSet<>();
+    private final Set<Square> forwardSquares = new HashSet<>();
+    private final PathfinderStats stats = new PathfinderStats();
+    private final RayTemplates rays = new RayTemplates(MAX_RAY_TEMPLATE_LENGTH);
+    private final PathCache pathCache = new PathCache(PATH_CACHE_CAPACITY, stats);
+
+    public Field(Brain brain, Visualizer debug, Wizard self, Game game) {
+      super(
+          brain,
+          debug,
+          Evaluation.LAZY,
+          WorldPart.SELF);
+
+      double mapSize = game.getMapSize();
+
+      waypoints =
+          new Point[] {
+            new Point(mapSize * 0.05, mapSize * 0.95),
+            new Point(mapSize * 0.25, mapSize * 0.82),
+            new Point(mapSize * 0.35, mapSize * 0.70),
+            new Point(mapSize * 0.60, mapSize * 0.60),
+            new Point(mapSize * 0.65, mapSize * 0.40),
+            new Point(mapSize * 0.75, mapSize * 0.25),
+          };
+    }
+
+    @Override
+    public void update() {
+      selfSquare = Square.containing(self);
+      selfSquares = new HashSet<>(brain.team.getSquares(self));
+      forwardSquares.clear();
+      for (Square square : getNeighbors(selfSquare)) {
+        double angle = self.getAngleTo(square.getCenterX(), square.getCenterY());
+        if (Math.abs(angle) < Math.PI / 2) {
+          forwardSquares.add(square);
+        }
+      }
+
+      if (debugChannels.waypoints.active) {
+        for (int i = 0; i < waypoints.length; ++i) {
+          debug.fillCircle(waypoints[i].getX(), waypoints[i].getY(), 5, Color.lightGray);
+          if (i != 0) {
+            debug.drawLine(
+                waypoints[i - 1].getX(),
+                waypoints[i - 1].getY(),
+                waypoints[i].getX(),
+                waypoints[i].getY(),
+                Color.lightGray);
+          }
+        }
+        debug.drawBeforeScene();
+      }
+
+      if (debugChannels.walls.active) {
+        brain
+            .team
+            .getWallSquares()
+            .filter(this::isBlocked)
+            .forEach(
+                square ->
+                    debug.fillRect(
+                        square.getLeftX(),
+                        square.getTopY(),
+                        square.getRightX(),
+                        square.getBottomY(),
+                        Color.pink));
+        debug.drawBeforeScene();
+      }
+
+      if (debugChannels.weakTrees.active) {
+        for (Square square : brain.team.getWeakTreeSquares()) {
+          debug.drawRect(
+              square.getLeftX(),
+              square.getTopY(),
+              square.getRightX(),
+              square.getBottomY(),
+              Color.pink);
+        }
+        debug.drawBeforeScene();
+      }
+
+      if (debugChannels.movingUnits.active) {
+        for (Square square : brain.team.getMovingUnitSquares()) {
+          if (isTakenByOthers(square)) {
+            debug.drawRect(
+                square.getLeftX(),
+                square.getTopY(),
+                square.getRightX(),
+                square.getBottomY(),
+                Color.orange);
+          }
+        }
+        debug.drawBeforeScene();
+      }
+    }
+
+    /** Whether a wall is on the square, except on ours and within {@link #SELF_CLEARANCE}. */
+    private boolean isBlocked(Square square) {
+      if (Math.abs(square.getP() - selfSquare.getP()) <= SELF_CLEARANCE
+          && Math.abs(square.getQ() - selfSquare.getQ()) <= SELF_CLEARANCE) {
+        return false;
+      }
+      return brain.team.isWall(square);
+    }
+
+    /** Whether a wizard or minion other than ours is in the way on the square. */
+    private boolean isTakenByOthers(Square square) {
+      return brain.team.getMovingUnitCount(square) > (selfSquares.contains(square) ? 1 : 0);
+    }
+
+    private int getPriority(Square square) {
+      if (isTakenByOthers(square)) {
+        return MOVING_UNIT_PRIORITY;
+      }
+      if (forwardSquares.contains(square)) {
+        return FORWARD_SQUARE_PRIORITY;
+      }
+      return brain.team.getWeakTree(square) != null ? WEAK_TREE_PRIORITY : 0;
+    }
+
+    public Stream<Point> getPointsOnLine(Point a, Point b) {
+      Point ab = b.sub(a);
+      int n = (int) Math.ceil(ab.length() / SQUARE_CRUDENESS) + 1;
+      return IntStream.rangeClosed(0, n).mapToObj(i -> a.add(ab.mul((double) i / n)));
+    }
+
+    public Stream<Square> getSquaresOnLine(Point a, Point b) {
+      final Square[] prev = {null};
+      return getPointsOnLine(a, b)
+          .map(Square::containing)
+          .filter(
+              square -> {
+                if (square.equals(prev[0])) {
+                  return false;
+                }
+                prev[0] = square;
+                return true;
+              });
+    }
+
+    public Stream<Square> getSquaresOnLine(Square a, Square b) {
+      return getSquaresOnLine(a.getCenter(), b.getCenter());
+    }
+
+    /** Whether no wall and no unit but ours is on the line between the centers of the squares. */
+    boolean isLineClear(Square a, Square b) {
+      ensureUpdated();
+      int[] ray = rays.get(b.getP() - a.getP(), b.getQ() - a.getQ());
+      for (int i = 0; i < ray.length; i += 2) {
+        Square square = new Square(a.getP() + ray[i], a.getQ() + ray[i + 1]);
+        if (isBlocked(square) || isTakenByOthers(square)) {
+          return false;
+        }
+      }
+      return true;
+    }
+
+    /** The first weak tree on the line, sampled as in {@link #getPointsOnLine}. */
+    Tree getWeakTreeOnLine(Point a, Point b) {
+      double dx = b.getX() - a.getX();
+      double dy = b.getY() - a.getY();
+      int n = (int) Math.ceil(Math.sqrt(dx * dx + dy * dy) / SQUARE_CRUDENESS) + 1;
+      for (int i = 0; i <= n; ++i) {
+        double k = (double) i / n;
+        Tree tree = getWeakTree(Square.containing(a.getX() + k * dx, a.getY() + k * dy));
+        if (tree != null) {
+          return tree;
+        }
+      }
+      return null;
+    }
+
+    public Point getNextWaypoint() {
+      int lastWaypointIndex = waypoints.length - 1;
+      Point lastWaypoint = waypoints[lastWaypointIndex];
+
+      for (int waypointIndex = 0; waypointIndex < lastWaypointIndex; ++waypointIndex) {
+        Point waypoint = waypoints[waypointIndex];
+
+        if (distanceLessThan(waypoint, self, self.getRadius() * 4)) {
+          return waypoints[waypointIndex + 1];
+        }
+
+        if (lastWaypoint.getDistanceTo(waypoint) < lastWaypoint.getDistanceTo(self)) {
+          return waypoint;
+        }
+      }
+
+      return lastWaypoint;
+    }
+
+    public Point getPreviousWaypoint() {
+      Point firstWaypoint = waypoints[0];
+
+      for (int waypointIndex = waypoints.length - 1; waypointIndex > 0; --waypointIndex) {
+        Point waypoint = waypoints[waypointIndex];
+
+        if (distanceLessThan(waypoint, self, self.getRadius() * 3)) {
+          return waypoints[waypointIndex - 1];
+        }
+
+        if (firstWaypoint.getDistanceTo(waypoint) < firstWaypoint.getDistanceTo(self)) {
+          return waypoint;
+        }
+      }
+
+      return firstWaypoint;
+    }
+
+    /** A path from start towards end, from {@link PathCache} if it has a valid one. */
+    public List<Square> findPath(Square start, Square end) {
+      if (start == null || end == null) {
+        return null;
+      }
+      ensureUpdated();
+
+      List<Square> path = pathCache.find(start, end, this);
+      if (path == null) {
+        path =
+            USE_BIDIRECTIONAL_SEARCH
+                    && manhattanDistance(start, end) >= BIDIRECTIONAL_SEARCH_MIN_DISTANCE
+                ? searchPathBidirectional(start, end)
+                : searchPath(start, end);
+        if (path.get(path.size() - 1).equals(end)) {
+          pathCache.add(path, this);
+        }
+      }
+      return path;
+    }
+
+    /** Finds a path with A*, or towards the nearest square it reached if it gives up. */
+    List<Square> searchPath(Square start, Square end) {
+      ensureUpdated();
+
+      if (brain.profiler != null) {
+        brain.profiler.findPathStarted();
+      }
+      Square goal = end;
+
+      Map<Square, Square> cameFrom = new HashMap<>();
+      Map<Square, Integer> distance = new HashMap<>();
+      Map<Square, Integer> distanceGuess = new HashMap<>();
+      SortedSet<Square> queue = new TreeSet<>(byGuess(distanceGuess));
+      Set<Square> done = new HashSet<>();
+
+      cameFrom.put(start, null);
+      distance.put(start, 0);
+      distanceGuess.put(start, 0);
+      queue.add(start);
+
+      int pushes = 1;
+      int decreaseKeys = 0;
+      int steps = 0;
+      for (int i = 0; !queue.isEmpty() && i < FIND_PATH_MAX_STEPS; ++i) {
+        ++steps;
+        Square point = queue.first();
+        queue.remove(point);
+        done.add(point);
+
+        if (point.equals(end)) {
+          break;
+        }
+
+        int distanceToPoint = distance.get(point);
+        for (Square neighbor : getNeighbors(point)) {
+          if (isBlocked(neighbor) || done.contains(neighbor)) {
+            continue;
+          }
+
+          Integer oldDistance = distance.get(neighbor);
+          int newDistance =
+              distanceToPoint + squaredDistance(point, neighbor) + getDangerCost(neighbor);
+          if (oldDistance == null || newDistance < oldDistance) {
+            int newGuess =
+                newDistance + squaredDistance(neighbor, end) - getPriority(neighbor);
+            if (oldDistance != null) {
+              // Before the guess changes, or the queue cannot find it.
+              queue.remove(neighbor);
+            }
+            cameFrom.put(neighbor, point);
+            distance.put(neighbor, newDistance);
+            distanceGuess.put(neighbor, newGuess);
+            queue.add(neighbor);
+            if (oldDistance == null) {
+              ++pushes;
+            } else {
+              ++decreaseKeys;
+            }
+          }
+        }
+      }
+
+      boolean capped =
+          !done.contains(end) && !queue.isEmpty() && steps == FIND_PATH_MAX_STEPS;
+      if (!done.contains(end)) {
+        Square bestEnd = null;
+        double bestSquaredDistance = 0;
+        for (Square option : done) {
+          double optionSquaredDistance = squaredDistance(option, end);
+          if (bestEnd == null || optionSquaredDistance < bestSquaredDistance) {
+            bestEnd = option;
+            bestSquaredDistance = optionSquaredDistance;
+          }
+        }
+        end = bestEnd;
+      }
+
+      List<Square> path = new ArrayList<>();
+      for (Square point = end; point != null; point = cameFrom.get(point)) {
+        path.add(point);
+      }
+      Collections.reverse(path);
+
+      stats.record(
+          done.size(),
+          pushes,
+          decreaseKeys,
+          capped,
+          end == goal ? -1 : Math.sqrt(squaredDistance(end, goal)),
+          path.size());
+
+      if (brain.profiler != null) {
+        brain.profiler.findPathFinished(
+            start.getP(), start.getQ(), goal.getP(), goal.getQ(), done.size(), end == goal);
+      }
+
+      if (debugChannels.searchTree.active) {
+        drawSearchTree(cameFrom, done);
+        debug.drawBeforeScene();
+      }
+
+      return path;
+    }
+
+    /**
+     * Like {@link #searchPath}, but searches from start and from end at once and joins the two
+     * searches where they meet, returning the cheapest path. The guesses are Manhattan distances,
+     * which never overestimate: a step costs at least 1 per square it moves along each axis. The
+     * priorities only order the queues, so a square may get cheaper after it was expanded, and is
+     * then expanded again. The search stops once the cheapest path through a square reached from
+     * both sides costs no more than the smallest guess on either side, as no path can then cost
+     * less. Both sides share the step budget, and each step expands the side with the smaller
+     * queue. Gives up like {@link #searchPath}, towards the nearest square reached from start.
+     */
+    List<Square> searchPathBidirectional(Square start, Square end) {
+      ensureUpdated();
+      if (isBlocked(end)) {
+        // Nothing can be searched from a wall.
+        return searchPath(start, end);
+      }
+
+      if (brain.profiler != null) {
+        brain.profiler.findPathStarted();
+      }
+      Frontier forward = new Frontier(start, end, true);
+      Frontier backward = new Frontier(end, start, false);
+
+      Square meeting = start.equals(end) ? start : null;
+      int meetingDistance = 0;
+      int steps = 0;
+      while (steps < FIND_PATH_MAX_STEPS) {
+        if (meeting == null
+            ? forward.queue.isEmpty() || backward.queue.isEmpty()
+            : meetingDistance <= Math.max(forward.getMinGuess(), backward.getMinGuess())) {
+          break;
+        }
+        ++steps;
+        Frontier side = forward.queue.size() <= backward.queue.size() ? forward : backward;
+        Frontier other = side == forward ? backward : forward;
+        for (Square square : side.expand()) {
+          Integer otherDistance = other.distance.get(square);
+          if (otherDistance != null) {
+            int distance = side.distance.get(square) + otherDistance;
+            if (meeting == null || distance < meetingDistance) {
+              meeting = square;
+              meetingDistance = distance;
+            }
+          }
+        }
+      }
+
+      boolean capped = meeting == null && steps == FIND_PATH_MAX_STEPS;
+      Square last = meeting;
+      if (meeting == null) {
+        last = start;
+        double bestSquaredDistance = squaredDistance(start, end);
+        for (Square option : forward.done) {
+          double optionSquaredDistance = squaredDistance(option, end);
+          if (optionSquaredDistance < bestSquaredDistance) {
+            last = option;
+            bestSquaredDistance = optionSquaredDistance;
+          }
+        }
+      }
+
+      List<Square> path = new ArrayList<>();
+      for (Square point = last; point != null; point = forward.cameFrom.get(point)) {
+        path.add(point);
+      }
+      Collections.reverse(path);
+      if (meeting != null) {
+        for (Square point = backward.cameFrom.get(meeting);
+            point != null;
+            point = backward.cameFrom.get(point)) {
+          path.add(point);
+        }
+      }
+      Square reached = path.get(path.size() - 1);
+
+      stats.recordBidirectional();
+      stats.record(
+          forward.done.size() + backward.done.size(),
+          forward.pushes + backward.pushes,
+          forward.decreaseKeys + backward.decreaseKeys,
+          capped,
+          reached.equals(end) ? -1 : Math.sqrt(squaredDistance(reached, end)),
+          path.size());
+
+      if (brain.profiler != null) {
+        brain.profiler.findPathFinished(
+            start.getP(),
+            start.getQ(),
+            end.getP(),
+            end.getQ(),
+            forward.done.size() + backward.done.size(),
+            reached.equals(end));
+      }
+
+      if (debugChannels.searchTree.active) {
+        drawSearchTree(forward.cameFrom, forward.done);
+        drawSearchTree(backward.cameFrom, backward.done);
+        debug.drawBeforeScene();
+      }
+
+      return path;
+    }
+
+    /**
+     * One side of {@link #searchPathBidirectional}: A* from origin towards target. Going backward,
+     * a step from a square to its neighbor costs what the step from the neighbor to the square
+     * costs going forward, so that the two distances to a square add up to a path cost.
+     */
+    private final class Frontier {
+
+      private final Square target;
+      private final boolean forward;
+      private final Map<Square, Square> cameFrom = new HashMap<>();
+      private final Map<Square, Integer> distance = new HashMap<>();
+      /** The distance plus the guess of the rest, a lower bound on a path through the square. */
+      private final Map<Square, Integer> distanceGuess = new HashMap<>();
+      /** The distance guess less the priority, which orders the queue. */
+      private final Map<Square, Integer> order = new HashMap<>();
+      private final SortedSet<Square> queue = new TreeSet<>(byGuess(order));
+      private final SortedSet<Square> bounds = new TreeSet<>(byGuess(distanceGuess));
+      private final Set<Square> done = new HashSet<>();
+      private int pushes = 1;
+      private int decreaseKeys;
+
+      Frontier(Square origin, Square target, boolean forward) {
+        this.target = target;
+        this.forward = forward;
+        cameFrom.put(origin, null);
+        distance.put(origin, 0);
+        distanceGuess.put(origin, manhattanDistance(origin, target));
+        order.put(origin, distanceGuess.get(origin));
+        queue.add(origin);
+        bounds.add(origin);
+      }
+
+      /** The smallest distance guess in the queue, or the largest int if it is empty. */
+      int getMinGuess() {
+        return bounds.isEmpty() ? Integer.MAX_VALUE : distanceGuess.get(bounds.first());
+      }
+
+      /** Expands the first square of the queue and returns the squares it got closer to. */
+      List<Square> expand() {
+        Square point = queue.first();
+        queue.remove(point);
+        bounds.remove(point);
+        done.add(point);
+
+        List<Square> relaxed = new ArrayList<>();
+        int distanceToPoint = distance.get(point);
+        for (Square neighbor : getNeighbors(point)) {
+          if (isBlocked(neighbor)) {
+            continue;
+          }
+
+          Integer oldDistance = distance.get(neighbor);
+          int newDistance =
+              distanceToPoint
+                  + squaredDistance(point, neighbor)
+                  + getDangerCost(forward ? neighbor : point);
+          if (oldDistance == null || newDistance < oldDistance) {
+            if (oldDistance != null && !done.remove(neighbor)) {
+              // Before the guesses change, or the queues cannot find it.
+              queue.remove(neighbor);
+              bounds.remove(neighbor);
+            }
+            int newGuess = newDistance + manhattanDistance(neighbor, target);
+            cameFrom.put(neighbor, point);
+            distance.put(neighbor, newDistance);
+            distanceGuess.put(neighbor, newGuess);
+            order.put(neighbor, newGuess - getPriority(neighbor));
+            queue.add(neighbor);
+            bounds.add(neighbor);
+            if (oldDistance == null) {
+              ++pushes;
+            } else {
+              ++decreaseKeys;
+            }
+            relaxed.add(neighbor);
+          }
+        }
+        return relaxed;
+      }
+    }
+
+    /**
+     * Orders a search queue by guess, then by position: squares with equal guesses are distinct
+     * entries, so none is dropped or removed in place of another.
+     */
+    private static Comparator<Square> byGuess(Map<Square, Integer> distanceGuess) {
+      return (Square a, Square b) -> {
+        int byGuess = Integer.compare(distanceGuess.get(a), distanceGuess.get(b));
+        if (byGuess != 0) {
+          return byGuess;
+        }
+        return a.getP() != b.getP()
+            ? Integer.compare(a.getP(), b.getP())
+            : Integer.compare(a.getQ(), b.getQ());
+      };
+    }
+
+    private void drawSearchTree(Map<Square, Square> cameFrom, Set<Square> done) {
+      for (Map.Entry<Square, Square> entry : cameFrom.entrySet()) {
+        if (entry.getValue() == null) {
+          continue;
+        }
+        if (!done.contains(entry.getKey())) {
+          debug.fillCircle(
+              entry.getKey().getCenterX(), entry.getKey().getCenterY(), 3, Color.lightGray);
+        }
+        debug.drawLine(
+            entry.getKey().getCenterX(),
+            entry.getKey().getCenterY(),
+            entry.getValue().getCenterX(),
+            entry.getValue().getCenterY(),
+            Color.lightGray);
+      }
+    }
+
+    boolean isWall(Square square) {
+      ensureUpdated();
+      return isBlocked(square);
+    }
+
+    boolean hasMovingUnit(Square square) {
+      ensureUpdated();
+      return isTakenByOthers(square);
+    }
+
+    Tree getWeakTree(Square square) {
+      return brain.team.getWeakTree(square);
+    }
+
+    private Square[] getNeighbors(Square square) {
+      int p = square.getP();
+      int q = square.getQ();
+      return new Square[] {
+        new Square(p - 1, q),
+        new Square(p, q - 1),
+        new Square(p + 1, q),
+        new Square(p, q + 1),
+        new Square(p - 1, q - 1),
+        new Square(p + 1, q - 1),
+        new Square(p - 1, q + 1),
+        new Square(p + 1, q + 1),
+      };
+    }
+
+    int getDangerCost(Square square) {
+      return (int) Math.round(DANGER_COST * brain.team.dangerMap.get(square));
+    }
+
+    private int squaredDistance(Square a, Square b) {
+      return (a.getP() - b.getP()) * (a.getP() - b.getP())
+          + (a.getQ() - b.getQ()) * (a.getQ() - b.getQ());
+    }
+
+    private int manhattanDistance(Square a, Square b) {
+      return Math.abs(a.getP() - b.getP()) + Math.abs(a.getQ() - b.getQ());
+    }
+
+    List<LivingUnit> getAllObstacles() {
+      List<LivingUnit> units = new ArrayList<>();
+      units.addAll(
+          Arrays.stream(world.getWizards()).filter(w -> !w.isMe()).collect(Collectors.toList()));
+      units.addAll(Arrays.asList(world.getMinions()));
+      units.addAll(Arrays.asList(world.getBuildings()));
+      units.addAll(Arrays.asList(world.getTrees()));
+      return units;
+    }
+
+    public Point getFactionBaseWaypoint() {
+      return new Point(world.getWidth() * 0.15, world.getHeight() * 0.85);
+    }
+
+    public PathfinderStats getStats() {
+      return stats;
+    }
+  }
+
+  static class PathfinderStats {
+
+    private long searches;
+    private long completed;
+    private long capped;
+    private long exhausted;
+    private final Histogram nodesExpanded = new Histogram(1024);
+    private final Histogram pushes = new Histogram(4096);
+    private final Histogram decreaseKeys = new Histogram(4096);
+    private final Histogram fallbackDistance = new Histogram(1024);
+    private final Histogram pathLength = new Histogram(1024);
+    private long cacheHits;
+    private long cacheTrims;
+    private long cacheMisses;
+    private long cacheInvalidations;
+    private long bidirectional;
+
+    void record(
+        int nodesExpanded,
+        int pushes,
+        int decreaseKeys,
+        boolean capped,
+        double fallbackDistance,
+        int pathLength) {
+      ++searches;
+      if (fallbackDistance < 0) {
+        ++completed;
+      } else {
+        if (capped) {
+          ++this.capped;
+        } else {
+          ++exhausted;
+        }
+        this.fallbackDistance.add((int) Math.round(fallbackDistance));
+      }
+      this.nodesExpanded.add(nodesExpanded);
+      this.pushes.add(pushes);
+      this.decreaseKeys.add(decreaseKeys);
+      this.pathLength.add(pathLength);
+    }
+
+    void recordBidirectional() {
+      ++bidirectional;
+    }
+
+    void recordCacheHit(boolean trimmed) {
+      ++cacheHits;
+      if (trimmed) {
+        ++cacheTrims;
+      }
+    }
+
+    void recordCacheMiss() {
+      ++cacheMisses;
+    }
+
+    void recordCacheInvalidation() {
+      ++cacheInvalidations;
+    }
+
+    public long getSearches() {
+      return searches;
+    }
+
+    public long getCapped() {
+      return capped;
+    }
+
+    public String report() {
+      StringBuilder sb = new StringBuilder();
+      sb.append("searches = ")
+          .append(searches)
+          .append(" (")
+          .append(bidirectional)
+          .append(" bidirectional)")
+          .append('\n');
+      sb.append("completed = ").append(completed).append('\n');
+      sb.append("capped at ")
+          .append(Field.FIND_PATH_MAX_STEPS)
+          .append(" steps = ")
+          .append(capped)
+          .append('\n');
+      sb.append("exhausted (goal unreachable) = ").append(exhausted).append('\n');
+      sb.append("nodes expanded: ").append(nodesExpanded).append('\n');
+      sb.append("heap pushes: ").append(pushes).append('\n');
+      sb.append("decrease-keys: ").append(decreaseKeys).append('\n');
+      sb.append("fallback goal distance (squares): ").append(fallbackDistance).append('\n');
+      sb.append("path length (squares): ").append(pathLength).append('\n');
+      sb.append("path cache hits = ")
+          .append(cacheHits)
+          .append(" (")
+          .append(cacheTrims)
+          .append(" trimmed), misses = ")
+          .append(cacheMisses)
+          .append(", invalidated = ")
+          .append(cacheInvalidations)
+          .append('\n');
+      return sb.toString();
+    }
+  }
+
+  /**
+   * Paths found by {@link Field#findPath}, reused while every square on them stays as it was: the
+   * same {@link TeamModel#getObstacleGeneration} and the same danger cost. A path is also found
+   * from any square on it and trimmed to start there. Squares within {@link Field#SELF_CLEARANCE}
+   * of where the search started may be walls, which do not count there, so they are tested again.
+   * Keeps the most recently used {@link #capacity} paths; only paths that reach the goal are kept.
+   */
+  static final class PathCache {
+
+    private static final class Entry {
+
+      final Square origin;
+      final Square goal;
+      final List<Square> path;
+      final int[] generations;
+      final int[] dangerCosts;
+
+      Entry(Square origin, List<Square> path, int[] generations, int[] dangerCosts) {
+        this.origin = origin;
+        this.goal = path.get(path.size() - 1);
+        this.path = path;
+        this.generations = generations;
+        this.dangerCosts = dangerCosts;
+      }
+
+      Entry trim(int from) {
+        return new Entry(
+            origin,
+            path.subList(from, path.size()),
+            Arrays.copyOfRange(generations, from, generations.length),
+            Arrays.copyOfRange(dangerCosts, from, dangerCosts.length));
+      }
+    }
+
+    private final int capacity;
+    private final Map<List<Square>, Entry> entries;
+    private final PathfinderStats stats;
+
+    PathCache(int capacity, PathfinderStats stats) {
+      this.capacity = capacity;
+      this.stats = stats;
+      entries =
+          new LinkedHashMap<List<Square>, Entry>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<List<Square>, Entry> eldest) {
+              return size() > PathCache.this.capacity;
+            }
+          };
+    }
+
+    /** The path from start to goal if it is still valid, or null. */
+    List<Square> find(Square start, Square goal, Field field) {
+      List<Square> key = Arrays.asList(start, goal);
+      Entry entry = entries.get(key);
+      int from = 0;
+      if (entry == null) {
+        for (Entry option : entries.values()) {
+          if (option.goal.equals(goal)) {
+            int index = option.path.indexOf(start);
+            if (index > 0) {
+              entry = option;
+              from = index;
+              break;
+            }
+          }
+        }
+      }
+      if (entry == null) {
+        stats.recordCacheMiss();
+        return null;
+      }
+      if (!isValid(entry, from, field)) {
+        entries.values().remove(entry);
+        stats.recordCacheInvalidation();
+        return null;
+      }
+      if (from > 0) {
+        entries.values().remove(entry);
+        entry = entry.trim(from);
+        entries.put(key, entry);
+      }
+      stats.recordCacheHit(from > 0);
+      return entry.path;
+    }
+
+    void add(List<Square> path, Field field) {
+      int[] generations = new int[path.size()];
+      int[] dangerCosts = new int[path.size()];
+      for (int i = 0; i < path.size(); ++i) {
+        generations[i] = field.brain.team.getObstacleGeneration(path.get(i));
+        dangerCosts[i] = field.getDangerCost(path.get(i));
+      }
+      Entry entry = new Entry(path.get(0), List.copyOf(path), generations, dangerCosts);
+      entries.put(Arrays.asList(entry.origin, entry.goal), entry);
+    }
+
+    private static boolean isValid(Entry entry, int from, Field field) {
+      for (int i = from + 1; i < entry.path.size(); ++i) {
+        Square square = entry.path.get(i);
+        if (field.brain.team.getObstacleGeneration(square) != entry.generations[i]
+            || field.getDangerCost(square) != entry.dangerCosts[i]) {
+          return false;
+        }
+        if (Math.abs(square.getP() - entry.origin.getP()) <= Field.SELF_CLEARANCE
+            && Math.abs(square.getQ() - entry.origin.getQ()) <= Field.SELF_CLEARANCE
+            && field.isBlocked(square)) {
+          return false;
+        }
+      }
+      return true;
+    }
+  }
+
+  static class Histogram {
+
+    private final long[] counts;
+    private long count;
+    private long sum;
+    private int min = Integer.MAX_VALUE;
+    private int max = Integer.MIN_VALUE;
+
+    public Histogram(int maxValue) {
+      counts = new long[maxValue + 1];
+    }
+
+    public void add(int value) {
+      ++counts[Math.max(0, Math.min(value, counts.length - 1))];
+      ++count;
+      sum += value;
+      min = Math.min(min, value);
+      max = Math.max(max, value);
+    }
+
+    public long getCount() {
+      return count;
+    }
+
+    public double getMean() {
+      return count == 0 ? 0 : (double) sum / count;
+    }
+
+    public int getPercentile(double percentile) {
+      long rank = (long) Math.ceil(percentile / 100 * count);
+      long seen = 0;
+      for (int value = 0; value < counts.length; ++value) {
+        seen += counts[value];
+        if (seen >= rank && seen > 0) {
+          return value;
+        }
+      }
+      return counts.length - 1;
+    }
+
+    @Override
+    public String toString() {
+      if (count == 0) {
+        return "n=0";
+      }
+      return String.format(
+          "n=%d mean=%.1f min=%d p50=%d p90=%d p99=%d max=%d",
+          count,
+          getMean(),
+          min,
+          getPercentile(50),
+          getPercentile(90),
+          getPercentile(99),
+          max);
+    }
+  }
+
+  static class Walker extends WorldObserver {
+
+    public Walker(Brain brain, Visualizer debug) {
+      super(brain, debug, Evaluation.LAZY);
+    }
+
+    public void goTo(Point target, Move move) {
+      double angle = self.getAngleTo(target.getX(), target.getY());
+
+      boolean hastened =
+          Arrays.stream(self.getStatuses()).anyMatch(s -> s.getType() == StatusType.HASTENED);
+      double speedMultiplier = hastened ? 1 + game.getHastenedMovementBonusFactor() : 1;
+
+      int aSign = Math.abs(angle) < Math.PI / 2 ? 1 : -1;
+      Point a =
+          aSign == 1
+              ? Point.fromPolar(speedMultiplier * game.getWizardForwardSpeed(), self.getAngle())
+              : Point.fromPolar(speedMultiplier * game.getWizardBackwardSpeed(), self.getAngle())
+                  .negate();
+
+      int bSign = angle > 0 ? 1 : -1;
+      Point b =
+          bSign == 1
+              ? Point.fromPolar(
+                  speedMultiplier * game.getWizardStrafeSpeed(), self.getAngle() + Math.PI / 2)
+              : Point.fromPolar(
+                  speedMultiplier * game.getWizardStrafeSpeed(), self.getAngle() - Math.PI / 2);
+
+      Point ba = a.sub(b);
+      boolean aIsClockwiseToB = a.isClockwiseTo(b);
+      Point direction = target.sub(new Point(self));
+      double k =
+          binarySearch(
+              0,
+              1,
+              m -> {
+                Point v = direction.mul(m);
+                Point bv = v.sub(b);
+                return bv.isClockwiseTo(ba) == aIsClockwiseToB;
+              });
+      Point v = direction.mul(k);
+
+      move.setSpeed(aSign * v.project(a));
+      move.setStrafeSpeed(bSign * v.project(b));
+    }
+
+    public void turnTo(Point point, Move move) {
+      double angle = self.getAngleTo(point.getX(), point.getY());
+      move.setTurn(angle);
+    }
+
+    public void turnTo(Unit unit, Move move) {
+      turnTo(new Point(unit), move);
+    }
+  }
+
+  static class Skiller extends WorldObserver {
+
+    private SkillType[] MISSILE = {
+      SkillType.RANGE_BONUS_PASSIVE_1,
+      SkillType.RANGE_BONUS_AURA_1,
+      SkillType.RANGE_BONUS_PASSIVE_2,
+      SkillType.RANGE_BONUS_AURA_2,
+      SkillType.ADVANCED_MAGIC_MISSILE,
+    };
+
+    private SkillType[] FROST_BOLD = {
+      SkillType.MAGICAL_DAMAGE_BONUS_AURA_1,
+      SkillType.MAGICAL_DAMAGE_BONUS_PASSIVE_2,
+      SkillType.MAGICAL_DAMAGE_BONUS_AURA_2,
+      SkillType.FROST_BOLT,
+    };
+
+    private SkillType[] FIREBALL = {
+      SkillType.STAFF_DAMAGE_BONUS_PASSIVE_1,
+      SkillType.STAFF_DAMAGE_BONUS_AURA_1,
+      SkillType.STAFF_DAMAGE_BONUS_PASSIVE_2,
+      SkillType.STAFF_DAMAGE_BONUS_AURA_2,
+      SkillType.FIREBALL,
+    };
+
+    private SkillType[] HASTE = {
+      SkillType.MOVEMENT_BONUS_FACTOR_PASSIVE_1,
+      SkillType.MOVEMENT_BONUS_FACTOR_AURA_1,
+      SkillType.MOVEMENT_BONUS_FACTOR_PASSIVE_2,
+      SkillType.MOVEMENT_BONUS_FACTOR_AURA_2,
+      SkillType.HASTE,
+    };
+
+    private SkillType[] SHIELD = {
+      SkillType.MAGICAL_DAMAGE_ABSORPTION_PASSIVE_1,
+      SkillType.MAGICAL_DAMAGE_ABSORPTION_AURA_1,
+      SkillType.MAGICAL_DAMAGE_ABSORPTION_PASSIVE_2,
+      SkillType.MAGICAL_DAMAGE_ABSORPTION_AURA_2,
+      SkillType.SHIELD,
+    };
+
+    private HashSet<SkillType> mySkills = new HashSet<>();
+
+    public Skiller(Brain brain, Visualizer debug) {
+      super(brain, debug, Evaluation.LAZY, WorldPart.SKILLS);
+    }
+
+    @Override
+    protected void update() {
+      mySkills.clear();
+      Arrays.stream(self.getSkills()).forEach(s -> mySkills.add(s));
+    }
+
+    public SkillType getSkillToLearn() {
+      ensureUpdated();
+      return Stream.of(SHIELD, HASTE, FROST_BOLD, FIREBALL, MISSILE)
+          .flatMap(Arrays::stream)
+          .filter(s -> !mySkills.contains(s))
+          .findFirst()
+          .orElse(null);
+    }
+
+    public void maybeLearnSkill(Move move) {
+      SkillType nextSkill = getSkillToLearn();
+      move.setSkillToLearn(nextSkill);
+
+      if (debugChannels.decisions.active) {
+        debug.showText(10, 10, "Next skill: " + nextSkill, Color.black);
+        debug.drawAbsolute();
+      }
+    }
+
+    public boolean hasSkill(SkillType skill) {
+      ensureUpdated();
+      return mySkills.contains(skill);
+    }
+  }
+
+  static class Shooter extends WorldObserver {
+
+    private static final int BUILDING = 0;
+    private static final int WIZARD = 1;
+    private static final int FETISH = 2;
+    private static final int WOODCUTTER = 3;
+
+    private Point staff1;
+    private Point staff2;
+    private Point staff3;
+
+    private final InterceptSolver intercepts = new InterceptSolver();
+    private LivingUnit[] enemies = new LivingUnit[64];
+    private int[] enemyKinds = new int[64];
+
+    public Shooter(Brain brain, Visualizer debug) {
+      super(
+          brain,
+          debug,
+          Evaluation.LAZY,
+          WorldPart.SELF,
+          WorldPart.SKILLS,
+          WorldPart.WIZARDS,
+          WorldPart.MINIONS,
+          WorldPart.BUILDINGS);
+    }
+
+    @Override
+    protected void update() {
+      Point selfPoint = new Point(self);
+      staff1 =
+          Point.fromPolar(game.getStaffRange(), self.getAngle() + game.getStaffSector() / 2)
+              .add(selfPoint);
+      staff2 = Point.fromPolar(game.getStaffRange(), self.getAngle()).add(selfPoint);
+      staff3 =
+          Point.fromPolar(game.getStaffRange(), self.getAngle() - game.getStaffSector() / 2)
+              .add(selfPoint);
+
+      intercepts.clear();
+      for (Building building : world.getBuildings()) {
+        addEnemy(building, BUILDING, 0);
+      }
+      for (Wizard wizard : world.getWizards()) {
+        addEnemy(wizard, WIZARD, game.getWizardStrafeSpeed());
+      }
+      for (Minion minion : world.getMinions()) {
+        addEnemy(
+            minion, minion.getType() == MinionType.FETISH_BLOWDART ? FETISH : WOODCUTTER, 0);
+      }
+      intercepts.solve(
+          self.getX(),
+          self.getY(),
+          self.getCastRange(),
+          game.getMagicMissileSpeed(),
+          game.getMagicMissileRadius(),
+          brain.getAttackDamage(self));
+
+      if (debugChannels.staff.active) {
+        brain.drawWaves(
+            self.getX(),
+            self.getY(),
+            self.getCastRange(),
+            self.getAngle() - game.getStaffSector() / 2,
+            game.getStaffSector(),
+            Color.pink);
+        debug.drawBeforeScene();
+
+        brain.drawWaves(
+            self.getX(),
+            self.getY(),
+            game.getStaffRange(),
+            self.getAngle() - game.getStaffSector() / 2,
+            game.getStaffSector(),
+            Color.red);
+        debug.drawAfterScene();
+      }
+    }
+
+    /** Whether a missile cast now, within the staff sector, hits the target where it will be. */
+    public boolean missileCanReach(LivingUnit target) {
+      ensureUpdated();
+      int i = indexOf(target);
+      if (i == -1) {
+        return Math.abs(self.getAngleTo(target)) < game.getStaffSector() / 2
+            && distanceLessThan(self, target, self.getCastRange());
+      }
+      return intercepts.isFeasible(i)
+          && Math.abs(self.getAngleTo(intercepts.getInterceptX(i), intercepts.getInterceptY(i)))
+              < game.getStaffSector() / 2;
+    }
+
+    public double getCastAngle(LivingUnit target) {
+      ensureUpdated();
+      int i = indexOf(target);
+      return i == -1
+          ? self.getAngleTo(target)
+          : self.getAngleTo(intercepts.getInterceptX(i), intercepts.getInterceptY(i));
+    }
+
+    public double getMinCastDistance(LivingUnit target) {
+      ensureUpdated();
+      int i = indexOf(target);
+      return i == -1
+          ? self.getDistanceTo(target) - target.getRadius() + game.getMagicMissileRadius()
+          : intercepts.getMinCastDistance(i);
+    }
+
+    public boolean staffCanReach(LivingUnit target) {
+      ensureUpdated();
+      return Math.abs(self.getAngleTo(target)) < game.getStaffSector() / 2
+          && (distanceLessThan(staff1, target, target.getRadius())
+              || distanceLessThan(staff2, target, target.getRadius())
+              || distanceLessThan(staff3, target, target.getRadius()));
+    }
+
+    public LivingUnit getTarget(double range) {
+      ensureUpdated();
+      LivingUnit buildingTarget = getTargetHomo(BUILDING, range);
+      LivingUnit wizardTarget = getTargetHomo(WIZARD, range);
+      LivingUnit closestWoodcutter = getClosestWoodcutter();
+      if (closestWoodcutter != null
+          && distanceLessThan(
+              self,
+              closestWoodcutter,
+              SAFETY_EPS
+                  + self.getRadius()
+                  + closestWoodcutter.getRadius()
+                  + game.getOrcWoodcutterAttackRange())) {
+        return closestWoodcutter;
+      }
+      if (buildingTarget == null && wizardTarget == null) {
+        LivingUnit fetishTarget = getTargetHomo(FETISH, range);
+        LivingUnit woodcutterTarget = getTargetHomo(WOODCUTTER, range);
+        if (fetishTarget != null
+            && woodcutterTarget != null
+            && woodcutterTarget.getLife() <= game.getMagicMissileDirectDamage()) {
+          return woodcutterTarget;
+        }
+        return fetishTarget != null ? fetishTarget : woodcutterTarget;
+      }
+      if (wizardTarget != null && wizardTarget.getLife() < brain.getAttackDamage(self)) {
+        return wizardTarget;
+      }
+      return buildingTarget != null ? buildingTarget : wizardTarget;
+    }
+
+    private LivingUnit getClosestWoodcutter() {
+      return brain.team.enemyWoodcutters.nearest(self.getX(), self.getY());
+    }
+
+    private LivingUnit getTargetHomo(int kind, double range) {
+      int best = -1;
+      for (int i = 0; i < intercepts.size(); ++i) {
+        if (enemyKinds[i] != kind || !distanceLessThan(self, enemies[i], range)) {
+          continue;
+        }
+        if (best == -1 || isBetterTarget(i, best)) {
+          best = i;
+        }
+      }
+      return best == -1 ? null : enemies[best];
+    }
+
+    /**
+     * Prefers targets a missile can hit, then the largest expected share of the target's life taken
+     * by the missile, then the lowest life.
+     */
+    private boolean isBetterTarget(int i, int j) {
+      if (intercepts.isFeasible(i) != intercepts.isFeasible(j)) {
+        return intercepts.isFeasible(i);
+      }
+      double shareI = intercepts.getExpectedDamage(i) / enemies[i].getLife();
+      double shareJ = intercepts.getExpectedDamage(j) / enemies[j].getLife();
+      if (shareI != shareJ) {
+        return shareI > shareJ;
+      }
+      return enemies[i].getLife() < enemies[j].getLife();
+    }
+
+    private void addEnemy(LivingUnit unit, int kind, double dodgeSpeed) {
+      if (!brain.isEnemy(unit)) {
+        return;
+      }
+      int i =
+          intercepts.add(
+              unit.getX(),
+              unit.getY(),
+              unit.getSpeedX(),
+              unit.getSpeedY(),
+              unit.getRadius(),
+              dodgeSpeed,
+              unit.getLife());
+      if (i == enemies.length) {
+        enemies = Arrays.copyOf(enemies, 2 * i);
+        enemyKinds = Arrays.copyOf(enemyKinds, 2 * i);
+      }
+      enemies[i] = unit;
+      enemyKinds[i] = kind;
+    }
+
+    /**
+     * Matches by id: the enemies may come from an earlier tick's world, kept while the inputs were
+     * unchanged, and the target from a different source such as the team model.
+     */
+    private int indexOf(LivingUnit target) {
+      for (int i = 0; i < intercepts.size(); ++i) {
+        if (enemies[i].getId() == target.getId()) {
+          return i;
+        }
+      }
+      return -1;
+    }
+  }
+
+  /**
+   * Where and when a magic missile meets each of a batch of targets that keep their speed.
+   *
+   * <p>Targets are added to primitive arrays and {@link #solve} handles all of them in one pass:
+   * the missile flies {@code s} per tick from the shooter, so it touches a target at {@code P + Vt}
+   * when {@code |P + Vt| = st + R}, with R the sum of both radii, a quadratic in t. A target is hit
+   * if the missile does not have to fly past the cast range to pass the
+   * {@linkplain #getMinCastDistance minimum cast distance} at which the game lets it collide. The
+   * expected damage assumes that a target which can run out of the missile's way during its flight
+   * does so in proportion to how far it can get.
+   */
+  static final class InterceptSolver {
+
+    private static final double EPS = 1e-9;
+
+    private int count;
+    private double[] x = new double[64];
+    private double[] y = new double[64];
+    private double[] speedX = new double[64];
+    private double[] speedY = new double[64];
+    private double[] radius = new double[64];
+    private double[] dodgeSpeed = new double[64];
+    private double[] life = new double[64];
+
+    private double[] time = new double[64];
+    private double[] interceptX = new double[64];
+    private double[] interceptY = new double[64];
+    private double[] minCastDistance = new double[64];
+    private double[] expectedDamage = new double[64];
+
+    void clear() {
+      count = 0;
+    }
+
+    int size() {
+      return count;
+    }
+
+    /**
+     * Adds a target; {@code dodgeSpeed} is how fast it would step aside from a missile, 0 for
+     * targets that do not dodge. Returns its index.
+     */
+    int add(
+        double x,
+        double y,
+        double speedX,
+        double speedY,
+        double radius,
+        double dodgeSpeed,
+        double life) {
+      if (count == this.x.length) {
+        grow();
+      }
+      this.x[count] = x;
+      this.y[count] = y;
+      this.speedX[count] = speedX;
+      this.speedY[count] = speedY;
+      this.radius[count] = radius;
+      this.dodgeSpeed[count] = dodgeSpeed;
+      this.life[count] = life;
+      return count++;
+    }
+
+    void solve(
+        double shooterX,
+        double shooterY,
+        double castRange,
+        double missileSpeed,
+        double missileRadius,
+        double damage) {
+      double ss = missileSpeed * missileSpeed;
+      for (int i = 0; i < count; ++i) {
+        double dx = x[i] - shooterX;
+        double dy = y[i] - shooterY;
+        double vx = speedX[i];
+        double vy = speedY[i];
+        double reach = radius[i] + missileRadius;
+        double a = vx * vx + vy * vy - ss;
+        double b = dx * vx + dy * vy - missileSpeed * reach;
+        double c = dx * dx + dy * dy - reach * reach;
+        double t;
+        if (c <= 0) {
+          t = 0;
+        } else if (Math.abs(a) < EPS) {
+          t = b < 0 ? -c / (2 * b) : Double.NaN;
+        } else {
+          double discriminant = b * b - a * c;
+          if (discriminant < 0) {
+            t = Double.NaN;
+          } else {
+            double root = Math.sqrt(discriminant);
+            double t1 = (-b - root) / a;
+            double t2 = (-b + root) / a;
+            t = t1 >= 0 && (t1 <= t2 || t2 < 0) ? t1 : t2 >= 0 ? t2 : Double.NaN;
+          }
+        }
+
+        time[i] = t;
+        interceptX[i] = x[i] + vx * t;
+        interceptY[i] = y[i] + vy * t;
+        double ix = interceptX[i] - shooterX;
+        double iy = interceptY[i] - shooterY;
+        minCastDistance[i] = Math.sqrt(ix * ix + iy * iy) - radius[i] + missileRadius;
+        if (!(minCastDistance[i] < castRange)) {
+          expectedDamage[i] = 0;
+          continue;
+        }
+        double escape = dodgeSpeed[i] * t;
+        double hitProbability = escape <= reach ? 1 : reach / escape;
+        expectedDamage[i] = hitProbability * Math.min(damage, life[i]);
+      }
+    }
+
+    /** Whether the missile hits target i, if the target keeps its speed. */
+    boolean isFeasible(int i) {
+      return expectedDamage[i] > 0;
+    }
+
+    /** Ticks until the missile touches target i, NaN if it never catches up. */
+    double getTime(int i) {
+      return time[i];
+    }
+
+    /** Where the center of target i is when the missile touches it. */
+    double getInterceptX(int i) {
+      return interceptX[i];
+    }
+
+    double getInterceptY(int i) {
+      return interceptY[i];
+    }
+
+    /**
+     * The distance to set as {@link Move#setMinCastDistance} so that the missile does not hit
+     * anything in front of target i, measured like {@link Brain#move} did for a standing target.
+     */
+    double getMinCastDistance(int i) {
+      return minCastDistance[i];
+    }
+
+    double getExpectedDamage(int i) {
+      return expectedDamage[i];
+    }
+
+    private void grow() {
+      int capacity = 2 * count;
+      x = Arrays.copyOf(x, capacity);
+      y = Arrays.copyOf(y, capacity);
+      speedX = Arrays.copyOf(speedX, capacity);
+      speedY = Arrays.copyOf(speedY, capacity);
+      radius = Arrays.copyOf(radius, capacity);
+      dodgeSpeed = Arrays.copyOf(dodgeSpeed, capacity);
+      life = Arrays.copyOf(life, capacity);
+      time = Arrays.copyOf(time, capacity);
+      interceptX = Arrays.copyOf(interceptX, capacity);
+      interceptY = Arrays.copyOf(interceptY, capacity);
+      minCastDistance = Arrays.copyOf(minCastDistance, capacity);
+      expectedDamage = Arrays.copyOf(expectedDamage, capacity);
+    }
+  }
+
+  /**
+   * Steers our wizard out of the way of enemy projectiles.
+   *
+   * <p>Every tick {@link #update} turns each enemy projectile that can still reach us into a
+   * threat: its position and speed relative to us, the sum of both radii and the ticks it has left
+   * to fly, which follow from the position where it was first seen and its owner's cast range.
+   * While we keep a velocity, a threat sweeps a capsule, so whether that velocity gets us hit is
+   * the closest approach of two lines within the threat's flight, in closed form. {@link #dodge}
+   * tests the requested velocity, the edges of every threat's velocity obstacle closest to it and a
+   * ring of full-speed velocities, all limited the way {@link Walker#goTo} limits them, and takes
+   * the safe one closest to the requested velocity. Only if none is safe does it try the corners
+   * where the edges of two obstacles cross.
+   *
+   * <p>Threats, candidates and first-seen positions are kept in primitive arrays that only grow, so
+   * a tick allocates nothing per projectile. Turning during a projectile's flight is ignored.
+   */
+  static class Dodger extends WorldObserver {
+
+    private static final double MARGIN = 2;
+    private static final double PUSH = 0.01;
+    private static final int RING_DIRECTIONS = 16;
+    private static final double[] RING_COS = new double[RING_DIRECTIONS];
+    private static final double[] RING_SIN = new double[RING_DIRECTIONS];
+
+    static {
+      for (int i = 0; i < RING_DIRECTIONS; ++i) {
+        RING_COS[i] = Math.cos(2 * Math.PI * i / RING_DIRECTIONS);
+        RING_SIN[i] = Math.sin(2 * Math.PI * i / RING_DIRECTIONS);
+      }
+    }
+
+    State state = State.SAFE;
+
+    private double headingX;
+    private double headingY;
+    private double forwardSpeed;
+    private double backwardSpeed;
+    private double strafeSpeed;
+    private double maxSpeed;
+
+    private int threatCount;
+    private double[] threatX = new double[16];
+    private double[] threatY = new double[16];
+    private double[] threatSpeedX = new double[16];
+    private double[] threatSpeedY = new double[16];
+    private double[] threatRadius = new double[16];
+    private double[] threatTicks = new double[16];
+    private double[] edgeX = new double[32];
+    private double[] edgeY = new double[32];
+    private int[] reachableEdges = new int[32];
+
+    private int lastHit;
+    private int candidateCount;
+    private double[] candidateX = new double[64];
+    private double[] candidateY = new double[64];
+
+    // Open addressing by projectile id, 0 marks a free slot. Rebuilt into next* every tick.
+    private long[] seenIds = new long[64];
+    private double[] seenX = new double[64];
+    private double[] seenY = new double[64];
+    private long[] nextIds = new long[64];
+    private double[] nextX = new double[64];
+    private double[] nextY = new double[64];
+
+    public Dodger(Brain brain, Visualizer debug) {
+      super(
+          brain,
+          debug,
+          Evaluation.EAGER,
+          WorldPart.SELF,
+          WorldPart.SKILLS,
+          WorldPart.WIZARDS,
+          WorldPart.PROJECTILES);
+    }
+
+    @Override
+    protected void update() {
+      boolean hastened =
+          Arrays.stream(self.getStatuses()).anyMatch(s -> s.getType() == StatusType.HASTENED);
+      double speedMultiplier = hastened ? 1 + game.getHastenedMovementBonusFactor() : 1;
+      forwardSpeed = speedMultiplier * game.getWizardForwardSpeed();
+      backwardSpeed = speedMultiplier * game.getWizardBackwardSpeed();
+      strafeSpeed = speedMultiplier * game.getWizardStrafeSpeed();
+      headingX = FastMath.cos(self.getAngle());
+      headingY = FastMath.sin(self.getAngle());
+      maxSpeed = Math.max(forwardSpeed, Math.max(backwardSpeed, strafeSpeed));
+
+      Projectile[] projectiles = world.getProjectiles();
+      Wizard[] wizards = world.getWizards();
+      ensureSeenCapacity(projectiles.length);
+      Arrays.fill(nextIds, 0);
+      threatCount = 0;
+      for (Projectile projectile : projectiles) {
+        if (brain.isAlly(projectile)) {
+          continue;
+        }
+        int seen = findSlot(seenIds, projectile.getId());
+        int next = findSlot(nextIds, projectile.getId());
+        nextIds[next] = projectile.getId();
+        nextX[next] = seenIds[seen] != 0 ? seenX[seen] : projectile.getX();
+        nextY[next] = seenIds[seen] != 0 ? seenY[seen] : projectile.getY();
+
+        double speed = FastMath.hypot(projectile.getSpeedX(), projectile.getSpeedY());
+        double flown =
+            FastMath.hypot(projectile.getX() - nextX[next], projectile.getY() - nextY[next]);
+        double ticks = (getRange(projectile, wizards) - flown) / speed;
+        double radius = self.getRadius() + getBlastRadius(projectile) + MARGIN;
+        double dx = self.getX() - projectile.getX();
+        double dy = self.getY() - projectile.getY();
+        double distance = Math.sqrt(dx * dx + dy * dy);
+        if (!(ticks > 0) || distance - radius > (speed + maxSpeed) * ticks) {
+          continue;
+        }
+        if (distance <= radius) {
+          // Already touching: it hits on this tick whatever we do.
+          continue;
+        }
+        addThreat(dx, dy, projectile.getSpeedX(), projectile.getSpeedY(), radius, ticks);
+      }
+      long[] ids = seenIds;
+      seenIds = nextIds;
+      nextIds = ids;
+      double[] x = seenX;
+      seenX = nextX;
+      nextX = x;
+      double[] y = seenY;
+      seenY = nextY;
+      nextY = y;
+
+      if (debugChannels.projectiles.active) {
+        for (int k = 0; k < threatCount; ++k) {
+          double startX = self.getX() - threatX[k];
+          double startY = self.getY() - threatY[k];
+          double endX = startX + threatSpeedX[k] * threatTicks[k];
+          double endY = startY + threatSpeedY[k] * threatTicks[k];
+          debug.drawLine(startX, startY, endX, endY, Color.orange);
+          debug.drawCircle(endX, endY, threatRadius[k] - self.getRadius(), Color.orange);
+        }
+        debug.drawBeforeScene();
+      }
+    }
+
+    /**
+     * Replaces the speed and strafe speed of the move with the closest ones that are not hit by any
+     * projectile. Leaves the move as it is if it is safe already ({@link State#SAFE}) or if every
+     * velocity we can reach is hit ({@link State#UNAVOIDABLE}).
+     */
+    public State dodge(Move move) {
+      candidateCount = 0;
+      addCandidate(
+          move.getSpeed() * headingX - move.getStrafeSpeed() * headingY,
+          move.getSpeed() * headingY + move.getStrafeSpeed() * headingX);
+      double requestedX = candidateX[0];
+      double requestedY = candidateY[0];
+      if (isSafe(requestedX, requestedY)) {
+        state = State.SAFE;
+        return state;
+      }
+
+      for (int k = 0; k < threatCount; ++k) {
+        addObstacleEdges(k, requestedX, requestedY);
+      }
+      for (int i = 0; i < RING_DIRECTIONS; ++i) {
+        double speed = RING_COS[i] * (RING_COS[i] > 0 ? forwardSpeed : backwardSpeed);
+        double strafe = RING_SIN[i] * strafeSpeed;
+        addCandidate(speed * headingX - strafe * headingY, speed * headingY + strafe * headingX);
+      }
+      addCandidate(0, 0);
+      int best = findClosestSafe(1, requestedX, requestedY);
+
+      if (best == -1) {
+        // Between several projectiles the way out is often a corner where two edges cross.
+        int edgeCount = 0;
+        for (int e = 0; e < 2 * threatCount; ++e) {
+          if (isReachable(e)) {
+            reachableEdges[edgeCount++] = e;
+          }
+        }
+        int from = candidateCount;
+        for (int i = 0; i < edgeCount; ++i) {
+          for (int j = i + 1; j < edgeCount; ++j) {
+            addEdgeCrossing(reachableEdges[i], reachableEdges[j]);
+          }
+        }
+        best = findClosestSafe(from, requestedX, requestedY);
+      }
+      if (best == -1) {
+        state = State.UNAVOIDABLE;
+        return state;
+      }
+
+      move.setSpeed(candidateX[best] * headingX + candidateY[best] * headingY);
+      move.setStrafeSpeed(candidateY[best] * headingX - candidateX[best] * headingY);
+      state = State.DODGING;
+
+      if (debugChannels.projectiles.active) {
+        double scale = 10;
+        debug.drawLine(
+            self.getX(),
+            self.getY(),
+            self.getX() + candidateX[best] * scale,
+            self.getY() + candidateY[best] * scale,
+            Color.orange);
+        debug.drawAfterScene();
+      }
+      return state;
+    }
+
+    int getThreatCount() {
+      return threatCount;
+    }
+
+    private int findClosestSafe(int from, double requestedX, double requestedY) {
+      int best = -1;
+      double bestDistance = 0;
+      for (int i = from; i < candidateCount; ++i) {
+        double distance =
+            square(candidateX[i] - requestedX) + square(candidateY[i] - requestedY);
+        if ((best == -1 || distance < bestDistance) && isSafe(candidateX[i], candidateY[i])) {
+          best = i;
+          bestDistance = distance;
+        }
+      }
+      return best;
+    }
+
+    /** Tests the threat that hit the previous velocity first, since it likely hits this one too. */
+    private boolean isSafe(double speedX, double speedY) {
+      if (lastHit < threatCount && isHitBy(lastHit, speedX, speedY)) {
+        return false;
+      }
+      for (int k = 0; k < threatCount; ++k) {
+        if (isHitBy(k, speedX, speedY)) {
+          lastHit = k;
+          return false;
+        }
+      }
+      return true;
+    }
+
+    /** Whether threat k comes closer than its radius while we keep the velocity. */
+    private boolean isHitBy(int k, double speedX, double speedY) {
+      double wx = speedX - threatSpeedX[k];
+      double wy = speedY - threatSpeedY[k];
+      double ww = wx * wx + wy * wy;
+      double t = ww == 0 ? 0 : -(threatX[k] * wx + threatY[k] * wy) / ww;
+      t = Math.max(0, Math.min(threatTicks[k], t));
+      double cx = threatX[k] + wx * t;
+      double cy = threatY[k] + wy * t;
+      return cx * cx + cy * cy < square(threatRadius[k]);
+    }
+
+    /**
+     * Adds the points closest to the requested velocity on the boundary of the velocity obstacle of
+     * threat k: a cone from the projectile's speed towards the projectile whose tip is cut off by a
+     * circle, the relative speeds that hit exactly when the projectile runs out of range.
+     */
+    private void addObstacleEdges(int k, double requestedX, double requestedY) {
+      double dx = threatX[k];
+      double dy = threatY[k];
+      double ux = threatSpeedX[k];
+      double uy = threatSpeedY[k];
+      double wx = requestedX - ux;
+      double wy = requestedY - uy;
+      double radius = threatRadius[k];
+
+      double capX = -dx / threatTicks[k];
+      double capY = -dy / threatTicks[k];
+      double capRadius = radius / threatTicks[k] + PUSH;
+      double ex = wx - capX;
+      double ey = wy - capY;
+      double e = Math.sqrt(ex * ex + ey * ey);
+      if (e == 0) {
+        ex = dx;
+        ey = dy;
+        e = Math.sqrt(dx * dx + dy * dy);
+      }
+      addCandidate(ux + capX + ex / e * capRadius, uy + capY + ey / e * capRadius);
+
+      double distance = Math.sqrt(dx * dx + dy * dy);
+      double axisX = -dx / distance;
+      double axisY = -dy / distance;
+      double cos = Math.sqrt(distance * distance - radius * radius) / distance;
+      double sin = radius / distance;
+      edgeX[2 * k] = axisX * cos - axisY * sin;
+      edgeY[2 * k] = axisX * sin + axisY * cos;
+      edgeX[2 * k + 1] = axisX * cos + axisY * sin;
+      edgeY[2 * k + 1] = -axisX * sin + axisY * cos;
+      for (int edge = 2 * k; edge <= 2 * k + 1; ++edge) {
+        double along = Math.max(0, wx * edgeX[edge] + wy * edgeY[edge]);
+        addCandidate(
+            ux + edgeX[edge] * along + getEdgeNormalX(edge) * PUSH,
+            uy + edgeY[edge] * along + getEdgeNormalY(edge) * PUSH);
+      }
+    }
+
+    /** Whether edge e passes closer to zero than our top speed. */
+    private boolean isReachable(int e) {
+      double ux = threatSpeedX[e / 2];
+      double uy = threatSpeedY[e / 2];
+      double along = Math.max(0, -(ux * edgeX[e] + uy * edgeY[e]));
+      return square(ux + edgeX[e] * along) + square(uy + edgeY[e] * along) <= square(maxSpeed);
+    }
+
+    /** Adds the point where the straight edges e and f cross, if they do. */
+    private void addEdgeCrossing(int e, int f) {
+      double cross = edgeX[e] * edgeY[f] - edgeY[e] * edgeX[f];
+      if (Math.abs(cross) < 1e-9) {
+        return;
+      }
+      double bx = threatSpeedX[f / 2] - threatSpeedX[e / 2];
+      double by = threatSpeedY[f / 2] - threatSpeedY[e / 2];
+      double a = (bx * edgeY[f] - by * edgeX[f]) / cross;
+      double b = (bx * edgeY[e] - by * edgeX[e]) / cross;
+      if (a < 0 || b < 0) {
+        return;
+      }
+      double speedX =
+          threatSpeedX[e / 2] + edgeX[e] * a + (getEdgeNormalX(e) + getEdgeNormalX(f)) * PUSH;
+      double speedY =
+          threatSpeedY[e / 2] + edgeY[e] * a + (getEdgeNormalY(e) + getEdgeNormalY(f)) * PUSH;
+      // Scaled down, the crossing would not be on either edge anymore.
+      if (getReachNorm(speedX, speedY) <= 1) {
+        addCandidate(speedX, speedY);
+      }
+    }
+
+    /** Edge 2k is the left edge of threat k's obstacle, 2k + 1 the right; normals point out. */
+    private double getEdgeNormalX(int e) {
+      return e % 2 == 0 ? -edgeY[e] : edgeY[e];
+    }
+
+    private double getEdgeNormalY(int e) {
+      return e % 2 == 0 ? edgeX[e] : -edgeX[e];
+    }
+
+    /** Adds the velocity, scaled down to the speed limits of our wizard as the game does. */
+    private void addCandidate(double speedX, double speedY) {
+      double norm = getReachNorm(speedX, speedY);
+      if (norm > 1) {
+        speedX /= norm;
+        speedY /= norm;
+      }
+      if (candidateCount == candidateX.length) {
+        candidateX = Arrays.copyOf(candidateX, 2 * candidateCount);
+        candidateY = Arrays.copyOf(candidateY, 2 * candidateCount);
+      }
+      candidateX[candidateCount] = speedX;
+      candidateY[candidateCount] = speedY;
+      ++candidateCount;
+    }
+
+    /** How far the velocity is outside of the speed limits (more than 1) or inside of them. */
+    private double getReachNorm(double speedX, double speedY) {
+      double speed = speedX * headingX + speedY * headingY;
+      double strafe = speedY * headingX - speedX * headingY;
+      return Math.sqrt(
+          square(speed / (speed >= 0 ? forwardSpeed : backwardSpeed))
+              + square(strafe / strafeSpeed));
+    }
+
+    private void addThreat(
+        double dx, double dy, double speedX, double speedY, double radius, double ticks) {
+      if (threatCount == threatX.length) {
+        int capacity = 2 * threatCount;
+        threatX = Arrays.copyOf(threatX, capacity);
+        threatY = Arrays.copyOf(threatY, capacity);
+        threatSpeedX = Arrays.copyOf(threatSpeedX, capacity);
+        threatSpeedY = Arrays.copyOf(threatSpeedY, capacity);
+        threatRadius = Arrays.copyOf(threatRadius, capacity);
+        threatTicks = Arrays.copyOf(threatTicks, capacity);
+        edgeX = Arrays.copyOf(edgeX, 2 * capacity);
+        edgeY = Arrays.copyOf(edgeY, 2 * capacity);
+        reachableEdges = new int[2 * capacity];
+      }
+      threatX[threatCount] = dx;
+      threatY[threatCount] = dy;
+      threatSpeedX[threatCount] = speedX;
+      threatSpeedY[threatCount] = speedY;
+      threatRadius[threatCount] = radius;
+      threatTicks[threatCount] = ticks;
+      ++threatCount;
+    }
+
+    private double getRange(Projectile projectile, Wizard[] wizards) {
+      if (projectile.getType() == ProjectileType.DART) {
+        return game.getFetishBlowdartAttackRange();
+      }
+      for (Wizard wizard : wizards) {
+        if (wizard.getId() == projectile.getOwnerUnitId()) {
+          return wizard.getCastRange();
+        }
+      }
+      return game.getWizardCastRange();
+    }
+
+    private double getBlastRadius(Projectile projectile) {
+      return projectile.getType() == ProjectileType.FIREBALL
+          ? Math.max(projectile.getRadius(), game.getFireballExplosionMinDamageRange())
+          : projectile.getRadius();
+    }
+
+    /** Keeps the tables at most half full, so that probing stays short. */
+    private void ensureSeenCapacity(int projectileCount) {
+      if (2 * projectileCount <= seenIds.length) {
+        return;
+      }
+      int capacity = Integer.highestOneBit(4 * projectileCount - 1);
+      long[] ids = new long[capacity];
+      double[] x = new double[capacity];
+      double[] y = new double[capacity];
+      for (int i = 0; i < seenIds.length; ++i) {
+        if (seenIds[i] != 0) {
+          int slot = findSlot(ids, seenIds[i]);
+          ids[slot] = seenIds[i];
+          x[slot] = seenX[i];
+          y[slot] = seenY[i];
+        }
+      }
+      seenIds = ids;
+      seenX = x;
+      seenY = y;
+      nextIds = new long[capacity];
+      nextX = new double[capacity];
+      nextY = new double[capacity];
+    }
+
+    private static int findSlot(long[] ids, long id) {
+      int mask = ids.length - 1;
+      int slot = (int) ((id * 0x9E3779B97F4A7C15L) >>> 32) & mask;
+      while (ids[slot] != 0 && ids[slot] != id) {
+        slot = (slot + 1) & mask;
+      }
+      return slot;
+    }
+
+    private static double square(double x) {
+      return x * x;
+    }
+
+    enum State {
+      SAFE,
+      DODGING,
+      UNAVOIDABLE,
+    }
+  }
+
+  /**
+   * A copy of the neighbourhood of our wizard in primitive arrays that can be stepped forward tick
+   * by tick, so that candidate moves can be scored by their simulated outcome.
+   *
+   * <p>Covers movement with collisions, projectile flight, cooldowns, mana and the attacks of
+   * minions, towers, bases and other wizards, the latter with simple policies: wizards keep their
+   * speed and shoot magic missiles at the closest enemy, minions walk to the closest visible enemy
+   * and attack it, buildings attack the weakest enemy in range. Only our wizard is blocked by other
+   * units; everyone is blocked by trees. Statuses, skills, bonuses, trees taking damage and
+   * resurrection are ignored, and a projectile already in flight is assumed to have its full range
+   * ahead of it.
+   *
+   * <p>{@link #copyFrom} only copies arrays, so a rollout can start from a snapshot cheaply.
+   */
+  static final class Simulation {
+
+    /** Units this far from our wizard cannot reach it within a rollout of a few dozen ticks. */
+    static final double RADIUS = 900;
+
+    private static final int RETARGET_TICKS = 5;
+    private static final double TREE_CELL_SIZE = 200;
+
+    private static final int SELF = 0;
+    private static final int WIZARD = 0;
+    private static final int ORC = 1;
+    private static final int FETISH = 2;
+    private static final int BUILDING = 3;
+
+    private static final int MAGIC_MISSILE = ProjectileType.MAGIC_MISSILE.ordinal();
+    private static final int FROST_BOLT = ProjectileType.FROST_BOLT.ordinal();
+    private static final int FIREBALL = ProjectileType.FIREBALL.ordinal();
+    private static final int DART = ProjectileType.DART.ordinal();
+
+    private static final int ACADEMY = Faction.ACADEMY.ordinal();
+    private static final int RENEGADES = Faction.RENEGADES.ordinal();
+
+    private static final double SELF_DAMAGE_WEIGHT = 2;
+    private static final double DEATH_PENALTY = 1000;
+
+    private final Game game;
+    private final double mapSize;
+
+    private final int treeCount;
+    private final double[] treeX;
+    private final double[] treeY;
+    private final double[] treeRadius;
+    private final int treeColumns;
+    private final int[] treeCellStart;
+    private final int[] treeCellTrees;
+
+    private final int unitCount;
+    private final int[] unitKind;
+    private final int[] unitFaction;
+    private final double[] unitX;
+    private final double[] unitY;
+    private final double[] unitSpeedX;
+    private final double[] unitSpeedY;
+    private final double[] unitAngle;
+    private final double[] unitRadius;
+    private final double[] unitAttackRange;
+    private final int[] unitDamage;
+    private final int[] unitCooldownTicks;
+    private final int[][] enemiesByFaction;
+    private final double[] life;
+    private final double[] mana;
+    private final int[] maxMana;
+    private final double[] manaRegeneration;
+    private final int[] cooldown;
+    private final int[] missileCooldown;
+    private final int[] selfCooldowns = new int[ActionType.values().length];
+    private final int[] minionTarget;
+    private int tick;
+
+    private int projectileCount;
+    private int[] projectileType;
+    private int[] projectileOwner;
+    private int[] projectileFaction;
+    private double[] projectileX;
+    private double[] projectileY;
+    private double[] projectileSpeedX;
+    private double[] projectileSpeedY;
+    private double[] projectileRadius;
+    private double[] projectileRange;
+
+    private double damageDealt;
+    private double damageTaken;
+
+    /** Takes the units within {@link #RADIUS} of {@code self}; {@code self} gets index 0. */
+    Simulation(Wizard self, World world, Game game) {
+      this.game = game;
+      mapSize = game.getMapSize();
+
+      List<Tree> trees = new ArrayList<>();
+      for (Tree tree : world.getTrees()) {
+        if (distanceLessThan(self, tree, RADIUS)) {
+          trees.add(tree);
+        }
+      }
+      treeCount = trees.size();
+      treeX = new double[treeCount];
+      treeY = new double[treeCount];
+      treeRadius = new double[treeCount];
+      for (int i = 0; i < treeCount; ++i) {
+        treeX[i] = trees.get(i).getX();
+        treeY[i] = trees.get(i).getY();
+        treeRadius[i] = trees.get(i).getRadius();
+      }
+      treeColumns = (int) Math.ceil(mapSize / TREE_CELL_SIZE);
+      treeCellStart = new int[treeColumns * treeColumns + 1];
+      treeCellTrees = new int[treeCount];
+      for (int i = 0; i < treeCount; ++i) {
+        ++treeCellStart[treeCell(treeX[i], treeY[i]) + 1];
+      }
+      for (int cell = 0; cell < treeColumns * treeColumns; ++cell) {
+        treeCellStart[cell + 1] += treeCellStart[cell];
+      }
+      int[] cellFill = Arrays.copyOf(treeCellStart, treeColumns * treeColumns);
+      for (int i = 0; i < treeCount; ++i) {
+        treeCellTrees[cellFill[treeCell(treeX[i], treeY[i])]++] = i;
+      }
+
+      List<LivingUnit> units = new ArrayList<>();
+      units.add(self);
+      for (LivingUnit[] group :
+          new LivingUnit[][] {world.getWizards(), world.getMinions(), world.getBuildings()}) {
+        for (LivingUnit unit : group) {
+          if (unit.getId() != self.getId() && distanceLessThan(self, unit, RADIUS)) {
+            units.add(unit);
+          }
+        }
+      }
+      unitCount = units.size();
+      unitKind = new int[unitCount];
+      unitFaction = new int[unitCount];
+      unitX = new double[unitCount];
+      unitY = new double[unitCount];
+      unitSpeedX = new double[unitCount];
+      unitSpeedY = new double[unitCount];
+      unitAngle = new double[unitCount];
+      unitRadius = new double[unitCount];
+      unitAttackRange = new double[unitCount];
+      unitDamage = new int[unitCount];
+      unitCooldownTicks = new int[unitCount];
+      life = new double[unitCount];
+      mana = new double[unitCount];
+      maxMana = new int[unitCount];
+      manaRegeneration = new double[unitCount];
+      cooldown = new int[unitCount];
+      missileCooldown = new int[unitCount];
+      minionTarget = new int[unitCount];
+      for (int i = 0; i < unitCount; ++i) {
+        LivingUnit unit = units.get(i);
+        unitFaction[i] = unit.getFaction().ordinal();
+        unitX[i] = unit.getX();
+        unitY[i] = unit.getY();
+        unitSpeedX[i] = unit.getSpeedX();
+        unitSpeedY[i] = unit.getSpeedY();
+        unitAngle[i] = unit.getAngle();
+        unitRadius[i] = unit.getRadius();
+        life[i] = unit.getLife();
+        if (unit instanceof Wizard) {
+          Wizard wizard = (Wizard) unit;
+          unitKind[i] = WIZARD;
+          unitAttackRange[i] = wizard.getCastRange();
+          unitDamage[i] = game.getMagicMissileDirectDamage();
+          mana[i] = wizard.getMana();
+          maxMana[i] = wizard.getMaxMana();
+          manaRegeneration[i] =
+              game.getWizardBaseManaRegeneration()
+                  + wizard.getLevel() * game.getWizardManaRegenerationGrowthPerLevel();
+          cooldown[i] = wizard.getRemainingActionCooldownTicks();
+          missileCooldown[i] =
+              wizard.getRemainingCooldownTicksByAction()[ActionType.MAGIC_MISSILE.ordinal()];
+        } else if (unit instanceof Minion) {
+          Minion minion = (Minion) unit;
+          boolean fetish = minion.getType() == MinionType.FETISH_BLOWDART;
+          unitKind[i] = fetish ? FETISH : ORC;
+          unitAttackRange[i] =
+              fetish ? game.getFetishBlowdartAttackRange() : game.getOrcWoodcutterAttackRange();
+          unitDamage[i] = minion.getDamage();
+          unitCooldownTicks[i] = minion.getCooldownTicks();
+          cooldown[i] = minion.getRemainingActionCooldownTicks();
+        } else {
+          Building building = (Building) unit;
+          unitKind[i] = BUILDING;
+          unitAttackRange[i] = building.getAttackRange();
+          unitDamage[i] = building.getDamage();
+          unitCooldownTicks[i] = building.getCooldownTicks();
+          cooldown[i] = building.getRemainingActionCooldownTicks();
+        }
+      }
+      System.arraycopy(
+          self.getRemainingCooldownTicksByAction(), 0, selfCooldowns, 0, selfCooldowns.length);
+
+      enemiesByFaction = new int[Faction.values().length][];
+      for (int faction = 0; faction < enemiesByFaction.length; ++faction) {
+        int[] enemies = new int[unitCount];
+        int count = 0;
+        for (int j = 0; j < unitCount; ++j) {
+          if (areEnemies(faction, unitFaction[j])) {
+            enemies[count++] = j;
+          }
+        }
+        enemiesByFaction[faction] = Arrays.copyOf(enemies, count);
+      }
+
+      allocateProjectiles(world.getProjectiles().length + unitCount);
+      for (Projectile projectile : world.getProjectiles()) {
+        if (!distanceLessThan(self, projectile, RADIUS)) {
+          continue;
+        }
+        int owner = -1;
+        for (int i = 0; i < unitCount; ++i) {
+          if (units.get(i).getId() == projectile.getOwnerUnitId()) {
+            owner = i;
+          }
+        }
+        int type = projectile.getType().ordinal();
+        double range =
+            type == DART
+                ? game.getFetishBlowdartAttackRange()
+                : owner != -1 ? unitAttackRange[owner] : game.getWizardCastRange();
+        int p = projectileCount++;
+        projectileType[p] = type;
+        projectileOwner[p] = owner;
+        projectileFaction[p] = projectile.getFaction().ordinal();
+        projectileX[p] = projectile.getX();
+        projectileY[p] = projectile.getY();
+        projectileSpeedX[p] = projectile.getSpeedX();
+        projectileSpeedY[p] = projectile.getSpeedY();
+        projectileRadius[p] = projectile.getRadius();
+        projectileRange[p] = range;
       }
+    }
+
+    /** A copy of {@code other} that shares its immutable parts. */
+    Simulation(Simulation other) {
+      game = other.game;
+      mapSize = other.mapSize;
+      treeCount = other.treeCount;
+      treeX = other.treeX;
+      treeY = other.treeY;
+      treeRadius = other.treeRadius;
+      treeColumns = other.treeColumns;
+      treeCellStart = other.treeCellStart;
+      treeCellTrees = other.treeCellTrees;
+      unitCount = other.unitCount;
+      unitKind = other.unitKind;
+      unitFaction = other.unitFaction;
+      unitRadius = other.unitRadius;
+      unitAttackRange = other.unitAttackRange;
+      unitDamage = other.unitDamage;
+      unitCooldownTicks = other.unitCooldownTicks;
+      enemiesByFaction = other.enemiesByFaction;
+      maxMana = other.maxMana;
+      manaRegeneration = other.manaRegeneration;
+      unitX = new double[unitCount];
+      unitY = new double[unitCount];
+      unitSpeedX = new double[unitCount];
+      unitSpeedY = new double[unitCount];
+      unitAngle = new double[unitCount];
+      life = new double[unitCount];
+      mana = new double[unitCount];
+      cooldown = new int[unitCount];
+      missileCooldown = new int[unitCount];
+      minionTarget = new int[unitCount];
+      allocateProjectiles(other.projectileType.length);
+      copyFrom(other);
+    }
+
+    /** Whether both simulations were copied from the same snapshot. */
+    boolean isCopyOf(Simulation other) {
+      return unitKind == other.unitKind;
+    }
+
+    /** Resets this simulation to the state of {@code other}, a copy of the same snapshot. */
+    void copyFrom(Simulation other) {
+      System.arraycopy(other.unitX, 0, unitX, 0, unitCount);
+      System.arraycopy(other.unitY, 0, unitY, 0, unitCount);
+      System.arraycopy(other.unitSpeedX, 0, unitSpeedX, 0, unitCount);
+      System.arraycopy(other.unitSpeedY, 0, unitSpeedY, 0, unitCount);
+      System.arraycopy(other.unitAngle, 0, unitAngle, 0, unitCount);
+      System.arraycopy(other.life, 0, life, 0, unitCount);
+      System.arraycopy(other.mana, 0, mana, 0, unitCount);
+      System.arraycopy(other.cooldown, 0, cooldown, 0, unitCount);
+      System.arraycopy(other.missileCooldown, 0, missileCooldown, 0, unitCount);
+      System.arraycopy(other.selfCooldowns, 0, selfCooldowns, 0, selfCooldowns.length);
+      System.arraycopy(other.minionTarget, 0, minionTarget, 0, unitCount);
+      tick = other.tick;
+
+      if (projectileType.length < other.projectileCount) {
+        allocateProjectiles(other.projectileType.length);
+      }
+      projectileCount = other.projectileCount;
+      System.arraycopy(other.projectileType, 0, projectileType, 0, projectileCount);
+      System.arraycopy(other.projectileOwner, 0, projectileOwner, 0, projectileCount);
+      System.arraycopy(other.projectileFaction, 0, projectileFaction, 0, projectileCount);
+      System.arraycopy(other.projectileX, 0, projectileX, 0, projectileCount);
+      System.arraycopy(other.projectileY, 0, projectileY, 0, projectileCount);
+      System.arraycopy(other.projectileSpeedX, 0, projectileSpeedX, 0, projectileCount);
+      System.arraycopy(other.projectileSpeedY, 0, projectileSpeedY, 0, projectileCount);
+      System.arraycopy(other.projectileRadius, 0, projectileRadius, 0, projectileCount);
+      System.arraycopy(other.projectileRange, 0, projectileRange, 0, projectileCount);
+
+      damageDealt = other.damageDealt;
+      damageTaken = other.damageTaken;
+    }
+
+    /**
+     * Holds the controls of {@code candidate} for {@code ticks} ticks, with its action on the
+     * first one, and returns {@link #getScore}.
+     */
+    double evaluate(Move candidate, int ticks) {
+      for (int tick = 0; tick < ticks && life[SELF] > 0; ++tick) {
+        step(
+            candidate.getSpeed(),
+            candidate.getStrafeSpeed(),
+            candidate.getTurn(),
+            tick == 0 ? candidate.getAction() : null,
+            candidate.getCastAngle());
+      }
+      return getScore();
+    }
+
+    /** Damage dealt by our wizard minus weighted damage taken, with a penalty for dying. */
+    double getScore() {
+      return damageDealt
+          - SELF_DAMAGE_WEIGHT * damageTaken
+          - (life[SELF] <= 0 ? DEATH_PENALTY : 0);
+    }
+
+    double getSelfX() {
+      return unitX[SELF];
+    }
+
+    double getSelfY() {
+      return unitY[SELF];
+    }
 
-      return lastWaypoint;
+    double getSelfLife() {
+      return life[SELF];
     }
 
-    public Point getPreviousWaypoint() {
-      Point firstWaypoint = waypoints[0];
+    int getUnitCount() {
+      return unitCount;
+    }
 
-      for (int waypointIndex = waypoints.length - 1; waypointIndex > 0; --waypointIndex) {
-        Point waypoint = waypoints[waypointIndex];
+    int getProjectileCount() {
+      return projectileCount;
+    }
 
-        if (distanceLessThan(waypoint, self, self.getRadius() * 3)) {
-          return waypoints[waypointIndex - 1];
+    void step(double speed, double strafeSpeed, double turn, ActionType action, double castAngle) {
+      if (action != null) {
+        actSelf(action, castAngle);
+      }
+      for (int i = 1; i < unitCount; ++i) {
+        if (life[i] > 0 && cooldown[i] == 0) {
+          act(i);
         }
+      }
 
-        if (firstWaypoint.getDistanceTo(waypoint) < firstWaypoint.getDistanceTo(self)) {
-          return waypoint;
+      moveSelf(speed, strafeSpeed, turn);
+      for (int i = 1; i < unitCount; ++i) {
+        if (life[i] > 0 && unitKind[i] != BUILDING) {
+          steer(i);
+          moveUnit(i);
         }
       }
+      moveProjectiles();
 
-      return firstWaypoint;
+      for (int i = 0; i < unitCount; ++i) {
+        if (cooldown[i] > 0) {
+          --cooldown[i];
+        }
+        if (missileCooldown[i] > 0) {
+          --missileCooldown[i];
+        }
+        if (unitKind[i] == WIZARD) {
+          mana[i] = Math.min(mana[i] + manaRegeneration[i], maxMana[i]);
+        }
+      }
+      for (int i = 0; i < selfCooldowns.length; ++i) {
+        if (selfCooldowns[i] > 0) {
+          --selfCooldowns[i];
+        }
+      }
+      ++tick;
     }
 
-    public List<Square> findPath(Square start, Square end) {
-      if (start == null || end == null) {
-        return null;
+    private void actSelf(ActionType action, double castAngle) {
+      if (cooldown[SELF] > 0 || selfCooldowns[action.ordinal()] > 0) {
+        return;
       }
+      double angle = unitAngle[SELF] + castAngle;
+      switch (action) {
+        case STAFF:
+          for (int i = 1; i < unitCount; ++i) {
+            if (life[i] > 0
+                && isEnemy(SELF, i)
+                && distanceLess(SELF, i, game.getStaffRange() + unitRadius[i])
+                && Math.abs(angleTo(SELF, unitX[i], unitY[i])) <= game.getStaffSector() / 2) {
+              damage(i, game.getStaffDamage(), SELF);
+            }
+          }
+          selfCooldowns[action.ordinal()] = game.getStaffCooldownTicks();
+          break;
+        case MAGIC_MISSILE:
+          if (!spendMana(game.getMagicMissileManacost())) {
+            return;
+          }
+          launch(MAGIC_MISSILE, SELF, angle);
+          selfCooldowns[action.ordinal()] = game.getMagicMissileCooldownTicks();
+          break;
+        case FROST_BOLT:
+          if (!spendMana(game.getFrostBoltManacost())) {
+            return;
+          }
+          launch(FROST_BOLT, SELF, angle);
+          selfCooldowns[action.ordinal()] = game.getFrostBoltCooldownTicks();
+          break;
+        case FIREBALL:
+          if (!spendMana(game.getFireballManacost())) {
+            return;
+          }
+          launch(FIREBALL, SELF, angle);
+          selfCooldowns[action.ordinal()] = game.getFireballCooldownTicks();
+          break;
+        default:
+          return;
+      }
+      cooldown[SELF] = game.getWizardActionCooldownTicks();
+    }
 
-      Map<Square, Square> cameFrom = new HashMap<>();
-      Map<Square, Integer> distance = new HashMap<>();
-      Map<Square, Integer> distanceGuess = new HashMap<>();
-      SortedSet<Square> queue =
-          new TreeSet<>((Square a, Square b) -> distanceGuess.get(a) - distanceGuess.get(b));
-      Set<Square> done = new HashSet<>();
-
-      cameFrom.put(start, null);
-      distance.put(start, 0);
-      distanceGuess.put(start, 0);
-      queue.add(start);
-
-      for (int i = 0; !queue.isEmpty() && i < FIND_PATH_MAX_STEPS; ++i) {
-        Square point = queue.first();
-        queue.remove(point);
-        done.add(point);
+    private boolean spendMana(int cost) {
+      if (mana[SELF] < cost) {
+        return false;
+      }
+      mana[SELF] -= cost;
+      return true;
+    }
 
-        if (point.equals(end)) {
+    private void act(int i) {
+      switch (unitKind[i]) {
+        case WIZARD:
+          if (missileCooldown[i] == 0 && mana[i] >= game.getMagicMissileManacost()) {
+            int target = findTarget(i, unitAttackRange[i], false);
+            if (target != -1) {
+              launch(MAGIC_MISSILE, i, directionTo(i, target));
+              mana[i] -= game.getMagicMissileManacost();
+              cooldown[i] = game.getWizardActionCooldownTicks();
+              missileCooldown[i] = game.getMagicMissileCooldownTicks();
+            }
+          }
           break;
-        }
-
-        int distanceToPoint = distance.get(point);
-        for (Square neighbor : getNeighbors(point)) {
-          if (walls.contains(neighbor) || done.contains(neighbor)) {
-            continue;
+        case ORC:
+          {
+            int target = findTarget(i, unitAttackRange[i], false);
+            if (target != -1) {
+              damage(target, unitDamage[i], i);
+              cooldown[i] = unitCooldownTicks[i];
+            }
+          }
+          break;
+        case FETISH:
+          {
+            int target = findTarget(i, unitAttackRange[i], false);
+            if (target != -1) {
+              launch(DART, i, directionTo(i, target));
+              cooldown[i] = unitCooldownTicks[i];
+            }
           }
+          break;
+        default:
+          {
+            int target = findTarget(i, unitAttackRange[i], true);
+            if (target != -1) {
+              damage(target, unitDamage[i], i);
+              cooldown[i] = unitCooldownTicks[i];
+            }
+          }
+          break;
+      }
+    }
 
-          Integer oldDistance = distance.get(neighbor);
-          int newDistance = distanceToPoint + squaredDistance(point, neighbor);
-          if (oldDistance == null || newDistance < oldDistance) {
-            int newGuess =
-                newDistance + squaredDistance(neighbor, end) - priority.getOrDefault(neighbor, 0);
-            cameFrom.put(neighbor, point);
-            distance.put(neighbor, newDistance);
-            distanceGuess.put(neighbor, newGuess);
-            queue.remove(neighbor);
-            queue.add(neighbor);
+    /** The closest (or the weakest) living enemy whose edge is within {@code range} of unit i. */
+    private int findTarget(int i, double range, boolean weakest) {
+      int best = -1;
+      double bestValue = Double.POSITIVE_INFINITY;
+      for (int j : enemiesByFaction[unitFaction[i]]) {
+        if (life[j] <= 0) {
+          continue;
+        }
+        double dx = unitX[j] - unitX[i];
+        double dy = unitY[j] - unitY[i];
+        double distanceSquared = dx * dx + dy * dy;
+        double reach = range + unitRadius[j];
+        if (distanceSquared < reach * reach) {
+          double value = weakest ? life[j] : distanceSquared;
+          if (value < bestValue) {
+            best = j;
+            bestValue = value;
           }
         }
       }
+      return best;
+    }
 
-      if (!done.contains(end)) {
-        Square bestEnd = null;
-        double bestSquaredDistance = 0;
-        for (Square option : done) {
-          double optionSquaredDistance = squaredDistance(option, end);
-          if (bestEnd == null || optionSquaredDistance < bestSquaredDistance) {
-            bestEnd = option;
-            bestSquaredDistance = optionSquaredDistance;
+    /**
+     * Minions head for the closest enemy they see and stop once it is in range. The target is
+     * chosen again only every {@link #RETARGET_TICKS} ticks, or when it dies.
+     */
+    private void steer(int i) {
+      if (unitKind[i] != ORC && unitKind[i] != FETISH) {
+        return;
+      }
+      int target = minionTarget[i] - 1;
+      if ((tick + i) % RETARGET_TICKS == 0 || target != -1 && life[target] <= 0) {
+        target = findTarget(i, game.getMinionVisionRange(), false);
+        minionTarget[i] = target + 1;
+      }
+      if (target == -1) {
+        return;
+      }
+      double dx = unitX[target] - unitX[i];
+      double dy = unitY[target] - unitY[i];
+      double distance = Math.sqrt(dx * dx + dy * dy);
+      unitAngle[i] = directionTo(i, target);
+      if (distance < unitAttackRange[i] + unitRadius[target]) {
+        unitSpeedX[i] = 0;
+        unitSpeedY[i] = 0;
+      } else {
+        unitSpeedX[i] = dx / distance * game.getMinionSpeed();
+        unitSpeedY[i] = dy / distance * game.getMinionSpeed();
+      }
+    }
+
+    private void moveSelf(double speed, double strafeSpeed, double turn) {
+      double forward = speed >= 0 ? game.getWizardForwardSpeed() : game.getWizardBackwardSpeed();
+      double strafe = game.getWizardStrafeSpeed();
+      speed = Math.max(-game.getWizardBackwardSpeed(), Math.min(forward, speed));
+      strafeSpeed = Math.max(-strafe, Math.min(strafe, strafeSpeed));
+      double norm = Math.sqrt(square(speed / forward) + square(strafeSpeed / strafe));
+      if (norm > 1) {
+        speed /= norm;
+        strafeSpeed /= norm;
+      }
+      double angle = unitAngle[SELF];
+      double cos = FastMath.cos(angle);
+      double sin = FastMath.sin(angle);
+      unitSpeedX[SELF] = speed * cos - strafeSpeed * sin;
+      unitSpeedY[SELF] = speed * sin + strafeSpeed * cos;
+      moveUnit(SELF);
+
+      double maxTurn = game.getWizardMaxTurnAngle();
+      unitAngle[SELF] = normalizeAngle(angle + Math.max(-maxTurn, Math.min(maxTurn, turn)));
+    }
+
+    /** Moves unit i by its speed, or stops it if it would collide. */
+    private void moveUnit(int i) {
+      double x = unitX[i] + unitSpeedX[i];
+      double y = unitY[i] + unitSpeedY[i];
+      double r = unitRadius[i];
+      boolean blocked =
+          x < r || y < r || x > mapSize - r || y > mapSize - r || hitsTree(x, y, r);
+      for (int j = 0; j < unitCount && i == SELF && !blocked; ++j) {
+        blocked = j != i && life[j] > 0 && overlaps(x, y, r, unitX[j], unitY[j], unitRadius[j]);
+      }
+      if (blocked) {
+        unitSpeedX[i] = 0;
+        unitSpeedY[i] = 0;
+      } else {
+        unitX[i] = x;
+        unitY[i] = y;
+      }
+    }
+
+    private boolean hitsTree(double x, double y, double r) {
+      int column = (int) (x / TREE_CELL_SIZE);
+      int row = (int) (y / TREE_CELL_SIZE);
+      for (int p = Math.max(0, column - 1); p <= Math.min(treeColumns - 1, column + 1); ++p) {
+        for (int q = Math.max(0, row - 1); q <= Math.min(treeColumns - 1, row + 1); ++q) {
+          int cell = q * treeColumns + p;
+          for (int k = treeCellStart[cell]; k < treeCellStart[cell + 1]; ++k) {
+            int j = treeCellTrees[k];
+            if (overlaps(x, y, r, treeX[j], treeY[j], treeRadius[j])) {
+              return true;
+            }
           }
         }
-        end = bestEnd;
       }
+      return false;
+    }
 
-      List<Square> path = new ArrayList<>();
-      for (Square point = end; point != null; point = cameFrom.get(point)) {
-        path.add(point);
+    private int treeCell(double x, double y) {
+      int column = Math.min(treeColumns - 1, Math.max(0, (int) (x / TREE_CELL_SIZE)));
+      int row = Math.min(treeColumns - 1, Math.max(0, (int) (y / TREE_CELL_SIZE)));
+      return row * treeColumns + column;
+    }
+
+    private void launch(int type, int owner, double angle) {
+      if (projectileCount == projectileType.length) {
+        growProjectiles();
       }
-      Collections.reverse(path);
+      double speed;
+      double radius;
+      if (type == MAGIC_MISSILE) {
+        speed = game.getMagicMissileSpeed();
+        radius = game.getMagicMissileRadius();
+      } else if (type == FROST_BOLT) {
+        speed = game.getFrostBoltSpeed();
+        radius = game.getFrostBoltRadius();
+      } else if (type == FIREBALL) {
+        speed = game.getFireballSpeed();
+        radius = game.getFireballRadius();
+      } else {
+        speed = game.getDartSpeed();
+        radius = game.getDartRadius();
+      }
+      int p = projectileCount++;
+      projectileType[p] = type;
+      projectileOwner[p] = owner;
+      projectileFaction[p] = unitFaction[owner];
+      projectileX[p] = unitX[owner];
+      projectileY[p] = unitY[owner];
+      projectileSpeedX[p] = FastMath.cos(angle) * speed;
+      projectileSpeedY[p] = FastMath.sin(angle) * speed;
+      projectileRadius[p] = radius;
+      projectileRange[p] = unitAttackRange[owner];
+    }
 
-      if (debug != null && DEBUG_FIND_PATH) {
-        for (Map.Entry<Square, Square> entry : cameFrom.entrySet()) {
-          if (entry.getValue() == null) {
+    /** Moves every projectile along its path and applies the first hit on the way, if any. */
+    private void moveProjectiles() {
+      for (int p = 0; p < projectileCount; ) {
+        double x = projectileX[p];
+        double y = projectileY[p];
+        double dx = projectileSpeedX[p];
+        double dy = projectileSpeedY[p];
+        double length = Math.sqrt(dx * dx + dy * dy);
+        double travel = Math.min(1, projectileRange[p] / length);
+
+        double hitT = travel;
+        int hitUnit = -1;
+        boolean hitTree = false;
+        for (int i = 0; i < unitCount; ++i) {
+          if (i == projectileOwner[p] || life[i] <= 0) {
             continue;
           }
-          if (!done.contains(entry.getKey())) {
-            debug.fillCircle(
-                entry.getKey().getCenterX(), entry.getKey().getCenterY(), 3, Color.lightGray);
+          double t = hitTime(x, y, dx, dy, projectileRadius[p] + unitRadius[i], unitX[i], unitY[i]);
+          if (t < hitT) {
+            hitT = t;
+            hitUnit = i;
+          }
+        }
+        for (int i = 0; i < treeCount; ++i) {
+          double t = hitTime(x, y, dx, dy, projectileRadius[p] + treeRadius[i], treeX[i], treeY[i]);
+          if (t < hitT) {
+            hitT = t;
+            hitUnit = -1;
+            hitTree = true;
           }
-          debug.drawLine(
-              entry.getKey().getCenterX(),
-              entry.getKey().getCenterY(),
-              entry.getValue().getCenterX(),
-              entry.getValue().getCenterY(),
-              Color.lightGray);
         }
-        debug.drawBeforeScene();
-      }
 
-      return path;
+        projectileX[p] = x + dx * hitT;
+        projectileY[p] = y + dy * hitT;
+        projectileRange[p] -= length * hitT;
+        boolean done = hitUnit != -1 || hitTree || travel < 1;
+        if (!done) {
+          ++p;
+          continue;
+        }
+        if (projectileType[p] == FIREBALL) {
+          explode(p);
+        } else if (hitUnit != -1) {
+          double damage =
+              projectileType[p] == MAGIC_MISSILE
+                  ? game.getMagicMissileDirectDamage()
+                  : projectileType[p] == FROST_BOLT
+                      ? game.getFrostBoltDirectDamage()
+                      : game.getDartDirectDamage();
+          if (unitFaction[hitUnit] == projectileFaction[p]) {
+            damage *= game.getFriendlyFireDamageFactor();
+          }
+          damage(hitUnit, damage, projectileOwner[p]);
+        }
+        removeProjectile(p);
+      }
     }
 
-    private Square[] getNeighbors(Square square) {
-      int p = square.getP();
-      int q = square.getQ();
-      return new Square[] {
-        new Square(p - 1, q),
-        new Square(p, q - 1),
-        new Square(p + 1, q),
-        new Square(p, q + 1),
-        new Square(p - 1, q - 1),
-        new Square(p + 1, q - 1),
-        new Square(p - 1, q + 1),
-        new Square(p + 1, q + 1),
-      };
+    private void explode(int p) {
+      double minRange = game.getFireballExplosionMinDamageRange();
+      double maxRange = game.getFireballExplosionMaxDamageRange();
+      for (int i = 0; i < unitCount; ++i) {
+        if (life[i] <= 0) {
+          continue;
+        }
+        double dx = unitX[i] - projectileX[p];
+        double dy = unitY[i] - projectileY[p];
+        double distance = Math.sqrt(dx * dx + dy * dy) - unitRadius[i];
+        if (distance > minRange) {
+          continue;
+        }
+        double damage =
+            distance <= maxRange
+                ? game.getFireballExplosionMaxDamage()
+                : game.getFireballExplosionMaxDamage()
+                    - (game.getFireballExplosionMaxDamage() - game.getFireballExplosionMinDamage())
+                        * (distance - maxRange)
+                        / (minRange - maxRange);
+        if (unitFaction[i] == projectileFaction[p]) {
+          damage *= game.getFriendlyFireDamageFactor();
+        }
+        damage(i, damage, projectileOwner[p]);
+      }
     }
 
-    private int squaredDistance(Square a, Square b) {
-      return (a.getP() - b.getP()) * (a.getP() - b.getP())
-          + (a.getQ() - b.getQ()) * (a.getQ() - b.getQ());
+    private void damage(int target, double damage, int attacker) {
+      damage = Math.min(damage, life[target]);
+      life[target] -= damage;
+      if (target == SELF) {
+        damageTaken += damage;
+      } else if (attacker == SELF && isEnemy(SELF, target)) {
+        damageDealt += damage;
+      }
     }
 
-    List<LivingUnit> getAllObstacles() {
-      List<LivingUnit> units = new ArrayList<>();
-      units.addAll(
-          Arrays.stream(world.getWizards()).filter(w -> !w.isMe()).collect(Collectors.toList()));
-      units.addAll(Arrays.asList(world.getMinions()));
-      units.addAll(Arrays.asList(world.getBuildings()));
-      units.addAll(Arrays.asList(world.getTrees()));
-      return units;
+    private void removeProjectile(int p) {
+      int last = --projectileCount;
+      projectileType[p] = projectileType[last];
+      projectileOwner[p] = projectileOwner[last];
+      projectileFaction[p] = projectileFaction[last];
+      projectileX[p] = projectileX[last];
+      projectileY[p] = projectileY[last];
+      projectileSpeedX[p] = projectileSpeedX[last];
+      projectileSpeedY[p] = projectileSpeedY[last];
+      projectileRadius[p] = projectileRadius[last];
+      projectileRange[p] = projectileRange[last];
     }
 
-    public Point getFactionBaseWaypoint() {
-      return new Point(world.getWidth() * 0.15, world.getHeight() * 0.85);
+    private void allocateProjectiles(int capacity) {
+      capacity = Math.max(capacity, 16);
+      projectileType = new int[capacity];
+      projectileOwner = new int[capacity];
+      projectileFaction = new int[capacity];
+      projectileX = new double[capacity];
+      projectileY = new double[capacity];
+      projectileSpeedX = new double[capacity];
+      projectileSpeedY = new double[capacity];
+      projectileRadius = new double[capacity];
+      projectileRange = new double[capacity];
     }
-  }
 
-  private static class Walker extends WorldObserver {
+    private void growProjectiles() {
+      int capacity = projectileType.length * 2;
+      projectileType = Arrays.copyOf(projectileType, capacity);
+      projectileOwner = Arrays.copyOf(projectileOwner, capacity);
+      projectileFaction = Arrays.copyOf(projectileFaction, capacity);
+      projectileX = Arrays.copyOf(projectileX, capacity);
+      projectileY = Arrays.copyOf(projectileY, capacity);
+      projectileSpeedX = Arrays.copyOf(projectileSpeedX, capacity);
+      projectileSpeedY = Arrays.copyOf(projectileSpeedY, capacity);
+      projectileRadius = Arrays.copyOf(projectileRadius, capacity);
+      projectileRange = Arrays.copyOf(projectileRange, capacity);
+    }
 
-    public Walker(Brain brain, Visualizer debug) {
-      super(brain, debug);
+    private boolean isEnemy(int i, int j) {
+      return areEnemies(unitFaction[i], unitFaction[j]);
     }
 
-    public void goTo(Point target, Move move) {
-      double angle = self.getAngleTo(target.getX(), target.getY());
+    private static boolean areEnemies(int a, int b) {
+      return a != b && (a == ACADEMY || a == RENEGADES) && (b == ACADEMY || b == RENEGADES);
+    }
 
-      boolean hastened =
-          Arrays.stream(self.getStatuses()).anyMatch(s -> s.getType() == StatusType.HASTENED);
-      double speedMultiplier = hastened ? 1 + game.getHastenedMovementBonusFactor() : 1;
+    private boolean distanceLess(int i, int j, double distance) {
+      double dx = unitX[i] - unitX[j];
+      double dy = unitY[i] - unitY[j];
+      return dx * dx + dy * dy < distance * distance;
+    }
 
-      int aSign = Math.abs(angle) < Math.PI / 2 ? 1 : -1;
-      Point a =
-          aSign == 1
-              ? Point.fromPolar(speedMultiplier * game.getWizardForwardSpeed(), self.getAngle())
-              : Point.fromPolar(speedMultiplier * game.getWizardBackwardSpeed(), self.getAngle())
-                  .negate();
+    private double directionTo(int i, int j) {
+      return FastMath.atan2(unitY[j] - unitY[i], unitX[j] - unitX[i]);
+    }
 
-      int bSign = angle > 0 ? 1 : -1;
-      Point b =
-          bSign == 1
-              ? Point.fromPolar(
-                  speedMultiplier * game.getWizardStrafeSpeed(), self.getAngle() + Math.PI / 2)
-              : Point.fromPolar(
-                  speedMultiplier * game.getWizardStrafeSpeed(), self.getAngle() - Math.PI / 2);
+    private double angleTo(int i, double x, double y) {
+      return normalizeAngle(FastMath.atan2(y - unitY[i], x - unitX[i]) - unitAngle[i]);
+    }
 
-      Point ba = a.sub(b);
-      boolean aIsClockwiseToB = a.isClockwiseTo(b);
-      Point direction = target.sub(new Point(self));
-      double k =
-          binarySearch(
-              0,
-              1,
-              m -> {
-                Point v = direction.mul(m);
-                Point bv = v.sub(b);
-                return bv.isClockwiseTo(ba) == aIsClockwiseToB;
-              });
-      Point v = direction.mul(k);
+    private static boolean overlaps(
+        double x1, double y1, double r1, double x2, double y2, double r2) {
+      double dx = x1 - x2;
+      double dy = y1 - y2;
+      double r = r1 + r2;
+      return dx * dx + dy * dy < r * r;
+    }
 
-      move.setSpeed(aSign * v.project(a));
-      move.setStrafeSpeed(bSign * v.project(b));
+    /**
+     * The first t in [0, 1] at which a point moving from (x, y) by (dx, dy) comes within {@code r}
+     * of (cx, cy), or infinity.
+     */
+    private static double hitTime(
+        double x, double y, double dx, double dy, double r, double cx, double cy) {
+      double fx = x - cx;
+      double fy = y - cy;
+      double c = fx * fx + fy * fy - r * r;
+      if (c <= 0) {
+        return 0;
+      }
+      double a = dx * dx + dy * dy;
+      double b = fx * dx + fy * dy;
+      if (b >= 0) {
+        return Double.POSITIVE_INFINITY;
+      }
+      double discriminant = b * b - a * c;
+      if (discriminant < 0) {
+        return Double.POSITIVE_INFINITY;
+      }
+      double t = (-b - Math.sqrt(discriminant)) / a;
+      return t <= 1 ? t : Double.POSITIVE_INFINITY;
     }
 
-    public void turnTo(Point point, Move move) {
-      double angle = self.getAngleTo(point.getX(), point.getY());
-      move.setTurn(angle);
+    private static double square(double x) {
+      return x * x;
     }
 
-    public void turnTo(Unit unit, Move move) {
-      turnTo(new Point(unit), move);
+    private static double normalizeAngle(double angle) {
+      while (angle > Math.PI) {
+        angle -= 2 * Math.PI;
+      }
+      while (angle < -Math.PI) {
+        angle += 2 * Math.PI;
+      }
+      return angle;
     }
   }
 
-  private static class Skiller extends WorldObserver {
-
-    private SkillType[] MISSILE = {
-      SkillType.RANGE_BONUS_PASSIVE_1,
-      SkillType.RANGE_BONUS_AURA_1,
-      SkillType.RANGE_BONUS_PASSIVE_2,
-      SkillType.RANGE_BONUS_AURA_2,
-      SkillType.ADVANCED_MAGIC_MISSILE,
-    };
-
-    private SkillType[] FROST_BOLD = {
-      SkillType.MAGICAL_DAMAGE_BONUS_AURA_1,
-      SkillType.MAGICAL_DAMAGE_BONUS_PASSIVE_2,
-      SkillType.MAGICAL_DAMAGE_BONUS_AURA_2,
-      SkillType.FROST_BOLT,
-    };
-
-    private SkillType[] FIREBALL = {
-      SkillType.STAFF_DAMAGE_BONUS_PASSIVE_1,
-      SkillType.STAFF_DAMAGE_BONUS_AURA_1,
-      SkillType.STAFF_DAMAGE_BONUS_PASSIVE_2,
-      SkillType.STAFF_DAMAGE_BONUS_AURA_2,
-      SkillType.FIREBALL,
-    };
-
-    private SkillType[] HASTE = {
-      SkillType.MOVEMENT_BONUS_FACTOR_PASSIVE_1,
-      SkillType.MOVEMENT_BONUS_FACTOR_AURA_1,
-      SkillType.MOVEMENT_BONUS_FACTOR_PASSIVE_2,
-      SkillType.MOVEMENT_BONUS_FACTOR_AURA_2,
-      SkillType.HASTE,
-    };
-
-    private SkillType[] SHIELD = {
-      SkillType.MAGICAL_DAMAGE_ABSORPTION_PASSIVE_1,
-      SkillType.MAGICAL_DAMAGE_ABSORPTION_AURA_1,
-      SkillType.MAGICAL_DAMAGE_ABSORPTION_PASSIVE_2,
-      SkillType.MAGICAL_DAMAGE_ABSORPTION_AURA_2,
-      SkillType.SHIELD,
-    };
+  /**
+   * Scores candidate moves with one {@link Simulation} rollout each, in parallel on a {@link
+   * ForkJoinPool}. The candidates are split recursively so that idle workers steal halves from busy
+   * ones, every worker reuses its own simulation, and the best result so far is kept in an atomic
+   * reference. Rollouts that have not started by the deadline are skipped, except for the first
+   * candidate, which is always scored.
+   */
+  static final class RolloutSearch {
+
+    private final ForkJoinPool pool;
+    private final int horizon;
+    private final ThreadLocal<Simulation> workerSimulation = new ThreadLocal<>();
+    private final AtomicReference<Result> best = new AtomicReference<>();
+    private final AtomicInteger rollouts = new AtomicInteger();
+    private final AtomicInteger skippedRollouts = new AtomicInteger();
+
+    private Simulation snapshot;
+    private List<Move> candidates;
+    private double[] scores;
+    private long deadline;
+
+    RolloutSearch(int parallelism, int horizon) {
+      pool = new ForkJoinPool(parallelism);
+      this.horizon = horizon;
+    }
 
-    private HashSet<SkillType> mySkills = new HashSet<>();
+    /**
+     * Returns the index of the best candidate, preferring lower indices on ties. Afterwards {@link
+     * #getScore} gives the score of every candidate that was rolled out.
+     */
+    int search(Simulation snapshot, List<Move> candidates, long deadline) {
+      this.snapshot = snapshot;
+      this.candidates = candidates;
+      this.deadline = deadline;
+      scores = new double[candidates.size()];
+      Arrays.fill(scores, Double.NaN);
+      best.set(null);
+      pool.invoke(new RolloutTask(0, candidates.size()));
+      return best.get().index;
+    }
 
-    public Skiller(Brain brain, Visualizer debug) {
-      super(brain, debug);
+    /** The score of a candidate in the last search, or NaN if it was skipped. */
+    double getScore(int index) {
+      return scores[index];
     }
 
-    @Override
-    protected void update() {
-      mySkills.clear();
-      Arrays.stream(self.getSkills()).forEach(s -> mySkills.add(s));
+    int getRollouts() {
+      return rollouts.get();
     }
 
-    public SkillType getSkillToLearn() {
-      return Stream.of(SHIELD, HASTE, FROST_BOLD, FIREBALL, MISSILE)
-          .flatMap(Arrays::stream)
-          .filter(s -> !mySkills.contains(s))
-          .findFirst()
-          .orElse(null);
+    int getSkippedRollouts() {
+      return skippedRollouts.get();
     }
 
-    public void maybeLearnSkill(Move move) {
-      SkillType nextSkill = getSkillToLearn();
-      move.setSkillToLearn(nextSkill);
+    void shutdown() {
+      pool.shutdown();
+    }
 
-      if (debug != null) {
-        debug.showText(10, 10, "Next skill: " + nextSkill, Color.black);
-        debug.drawAbsolute();
+    private void rollOut(int index) {
+      if (index != 0 && System.nanoTime() > deadline) {
+        skippedRollouts.incrementAndGet();
+        return;
+      }
+      Simulation simulation = workerSimulation.get();
+      if (simulation == null || !simulation.isCopyOf(snapshot)) {
+        simulation = new Simulation(snapshot);
+        workerSimulation.set(simulation);
+      } else {
+        simulation.copyFrom(snapshot);
+      }
+      double score = simulation.evaluate(candidates.get(index), horizon);
+      scores[index] = score;
+      rollouts.incrementAndGet();
+
+      Result result = new Result(index, score);
+      while (true) {
+        Result current = best.get();
+        if (current != null && !result.isBetterThan(current)) {
+          return;
+        }
+        if (best.compareAndSet(current, result)) {
+          return;
+        }
       }
     }
 
-    public boolean hasSkill(SkillType skill) {
-      return mySkills.contains(skill);
-    }
-  }
+    @SuppressWarnings("serial")
+    private final class RolloutTask extends RecursiveAction {
 
-  private static class Shooter extends WorldObserver {
+      private final int from;
+      private final int to;
 
-    private Point staff1;
-    private Point staff2;
-    private Point staff3;
+      RolloutTask(int from, int to) {
+        this.from = from;
+        this.to = to;
+      }
 
-    public Shooter(Brain brain, Visualizer debug) {
-      super(brain, debug);
+      @Override
+      protected void compute() {
+        if (to - from <= 1) {
+          if (from < to) {
+            rollOut(from);
+          }
+          return;
+        }
+        int middle = (from + to) >>> 1;
+        invokeAll(new RolloutTask(from, middle), new RolloutTask(middle, to));
+      }
     }
 
-    @Override
-    protected void update() {
-      Point selfPoint = new Point(self);
-      staff1 =
-          Point.fromPolar(game.getStaffRange(), self.getAngle() + game.getStaffSector() / 2)
-              .add(selfPoint);
-      staff2 = Point.fromPolar(game.getStaffRange(), self.getAngle()).add(selfPoint);
-      staff3 =
-          Point.fromPolar(game.getStaffRange(), self.getAngle() - game.getStaffSector() / 2)
-              .add(selfPoint);
+    private static final class Result {
 
-      if (debug != null) {
-        brain.drawWaves(
-            self.getX(),
-            self.getY(),
-            self.getCastRange(),
-            self.getAngle() - game.getStaffSector() / 2,
-            game.getStaffSector(),
-            Color.pink);
-        debug.drawBeforeScene();
+      final int index;
+      final double score;
 
-        brain.drawWaves(
-            self.getX(),
-            self.getY(),
-            game.getStaffRange(),
-            self.getAngle() - game.getStaffSector() / 2,
-            game.getStaffSector(),
-            Color.red);
-        debug.drawAfterScene();
+      Result(int index, double score) {
+        this.index = index;
+        this.score = score;
       }
-    }
 
-    public boolean missileCanReach(LivingUnit target) {
-      return Math.abs(self.getAngleTo(target)) < game.getStaffSector() / 2
-          && distanceLessThan(self, target, self.getCastRange());
+      boolean isBetterThan(Result other) {
+        return score > other.score || score == other.score && index < other.index;
+      }
     }
+  }
 
-    public boolean staffCanReach(LivingUnit target) {
-      return Math.abs(self.getAngleTo(target)) < game.getStaffSector() / 2
-          && (distanceLessThan(staff1, target, target.getRadius())
-              || distanceLessThan(staff2, target, target.getRadius())
-              || distanceLessThan(staff3, target, target.getRadius()));
+  /**
+   * sin, cos, atan2 and hypot for geometry that can spare the last few bits: within 1e-15 of {@link
+   * StrictMath} for angles and coordinates of the game, as bench.TrigAccuracy checks. atan2 is
+   * about five times and hypot two to three times faster than in {@link Math}, where they are not
+   * intrinsics; sin and cos gain only a few nanoseconds. sin and cos reduce the angle to within
+   * pi/4 of a multiple of pi/2 and use the Taylor series there. atan2 reduces the ratio of the
+   * smaller to the larger coordinate to within 1/16 of a multiple of 1/8, whose arctangent is
+   * tabulated, and uses the Taylor series of the rest. hypot is a square root, without the overflow
+   * and underflow care that makes {@link Math#hypot} slow.
+   *
+   * <p>Where the exact value matters, call {@link Math} instead; cast angles come from {@link
+   * Unit#getAngleTo} and are exact.
+   */
+  static final class FastMath {
+
+    /** Beyond this the reduction loses precision, so {@link Math} takes over. */
+    private static final double MAX_REDUCED_ANGLE = 1 << 20;
+
+    private static final double TWO_OVER_PI = 2 / Math.PI;
+    private static final double PI_OVER_2_HIGH = 1.5707963267341256e+00;
+    private static final double PI_OVER_2_LOW = 6.0771005065061922e-11;
+
+    private static final int ATAN_STEPS = 8;
+    private static final double[] ATAN_TABLE = new double[ATAN_STEPS + 1];
+
+    static {
+      for (int i = 0; i <= ATAN_STEPS; ++i) {
+        ATAN_TABLE[i] = StrictMath.atan((double) i / ATAN_STEPS);
+      }
     }
 
-    public LivingUnit getTarget(double range) {
-      LivingUnit buildingTarget = getTargetHomo(world.getBuildings(), range);
-      LivingUnit wizardTarget = getTargetHomo(world.getWizards(), range);
-      LivingUnit closestWoodcutter = getClosestWoodcutter();
-      if (closestWoodcutter != null
-          && distanceLessThan(
-              self,
-              closestWoodcutter,
-              SAFETY_EPS
-                  + self.getRadius()
-                  + closestWoodcutter.getRadius()
-                  + game.getOrcWoodcutterAttackRange())) {
-        return closestWoodcutter;
-      }
-      if (buildingTarget == null && wizardTarget == null) {
-        LivingUnit fetishTarget = getTargetHomo(brain.getFetishes(), range);
-        LivingUnit woodcutterTarget = getTargetHomo(brain.getWoodcutters(), range);
-        if (fetishTarget != null
-            && woodcutterTarget != null
-            && woodcutterTarget.getLife() <= game.getMagicMissileDirectDamage()) {
-          return woodcutterTarget;
-        }
-        return fetishTarget != null ? fetishTarget : woodcutterTarget;
+    private FastMath() {}
+
+    static double sin(double angle) {
+      if (!(Math.abs(angle) < MAX_REDUCED_ANGLE)) {
+        return Math.sin(angle);
       }
-      if (wizardTarget != null && wizardTarget.getLife() < brain.getAttackDamage(self)) {
-        return wizardTarget;
+      double k = Math.rint(angle * TWO_OVER_PI);
+      double r = angle - k * PI_OVER_2_HIGH - k * PI_OVER_2_LOW;
+      switch ((int) k & 3) {
+        case 0:
+          return sinReduced(r);
+        case 1:
+          return cosReduced(r);
+        case 2:
+          return -sinReduced(r);
+        default:
+          return -cosReduced(r);
       }
-      return buildingTarget != null ? buildingTarget : wizardTarget;
     }
 
-    private LivingUnit getClosestWoodcutter() {
-      LivingUnit closestWoodcutter = null;
-      double closestWoodcutterDistance = 0;
-      for (Minion minion : world.getMinions()) {
-        if (!brain.isEnemy(minion) || minion.getType() != MinionType.ORC_WOODCUTTER) {
-          continue;
-        }
-        double distance = self.getDistanceTo(minion);
-        if (closestWoodcutter == null || distance < closestWoodcutterDistance) {
-          closestWoodcutter = minion;
-          closestWoodcutterDistance = distance;
-        }
+    static double cos(double angle) {
+      if (!(Math.abs(angle) < MAX_REDUCED_ANGLE)) {
+        return Math.cos(angle);
+      }
+      double k = Math.rint(angle * TWO_OVER_PI);
+      double r = angle - k * PI_OVER_2_HIGH - k * PI_OVER_2_LOW;
+      switch ((int) k & 3) {
+        case 0:
+          return cosReduced(r);
+        case 1:
+          return -sinReduced(r);
+        case 2:
+          return -cosReduced(r);
+        default:
+          return sinReduced(r);
       }
-      return closestWoodcutter;
     }
 
-    private LivingUnit getTargetHomo(LivingUnit[] units, double range) {
-      LivingUnit bestTarget = null;
-      for (LivingUnit target : units) {
-        if (!brain.isEnemy(target)) {
-          continue;
-        }
-        if (!distanceLessThan(self, target, range)) {
-          continue;
-        }
-        if (bestTarget == null || target.getLife() < bestTarget.getLife()) {
-          bestTarget = target;
-        }
+    static double atan2(double y, double x) {
+      double ax = Math.abs(x);
+      double ay = Math.abs(y);
+      if (!(ax < Double.POSITIVE_INFINITY && ay < Double.POSITIVE_INFINITY)
+          || (ax == 0 && ay == 0)) {
+        return Math.atan2(y, x);
+      }
+      boolean steep = ay > ax;
+      double z = steep ? ax / ay : ay / ax;
+      int i = (int) (z * ATAN_STEPS + 0.5);
+      double c = (double) i / ATAN_STEPS;
+      double t = (z - c) / (1 + z * c);
+      double angle = ATAN_TABLE[i] + atanReduced(t);
+      if (steep) {
+        angle = Math.PI / 2 - angle;
       }
-      return bestTarget;
+      if (x < 0) {
+        angle = Math.PI - angle;
+      }
+      return Math.copySign(angle, y);
+    }
+
+    static double hypot(double x, double y) {
+      return Math.sqrt(x * x + y * y);
+    }
+
+    /** sin(r) for |r| <= pi/4, to the r^15 term. */
+    private static double sinReduced(double r) {
+      double r2 = r * r;
+      double p = -1.0 / 1307674368000L;
+      p = p * r2 + 1.0 / 6227020800L;
+      p = p * r2 - 1.0 / 39916800;
+      p = p * r2 + 1.0 / 362880;
+      p = p * r2 - 1.0 / 5040;
+      p = p * r2 + 1.0 / 120;
+      p = p * r2 - 1.0 / 6;
+      return r + r * r2 * p;
+    }
+
+    /** cos(r) for |r| <= pi/4, to the r^16 term. */
+    private static double cosReduced(double r) {
+      double r2 = r * r;
+      double p = 1.0 / 20922789888000L;
+      p = p * r2 - 1.0 / 87178291200L;
+      p = p * r2 + 1.0 / 479001600;
+      p = p * r2 - 1.0 / 3628800;
+      p = p * r2 + 1.0 / 40320;
+      p = p * r2 - 1.0 / 720;
+      p = p * r2 + 1.0 / 24;
+      p = p * r2 - 1.0 / 2;
+      return 1 + r2 * p;
+    }
+
+    /** atan(t) for |t| <= 1/16, to the t^11 term. */
+    private static double atanReduced(double t) {
+      double t2 = t * t;
+      double p = -1.0 / 11;
+      p = p * t2 + 1.0 / 9;
+      p = p * t2 - 1.0 / 7;
+      p = p * t2 + 1.0 / 5;
+      p = p * t2 - 1.0 / 3;
+      return t + t * t2 * p;
     }
   }
 
-  private static class Point {
+  static class Point {
 
     private final double x;
     private final double y;
@@ -1438,7 +5650,7 @@ public final class MyStrategy implements Strategy {
     }
 
     public static Point fromPolar(double radius, double angle) {
-      return new Point(radius * Math.cos(angle), radius * Math.sin(angle));
+      return new Point(radius * FastMath.cos(angle), radius * FastMath.sin(angle));
     }
 
     public static boolean isClockwise(Point base, Point first, Point second) {
@@ -1477,7 +5689,7 @@ public final class MyStrategy implements Strategy {
     }
 
     public double getDistanceTo(double x, double y) {
-      return Math.hypot(this.x - x, this.y - y);
+      return FastMath.hypot(this.x - x, this.y - y);
     }
 
     public double getDistanceTo(Point point) {
@@ -1530,17 +5742,356 @@ public final class MyStrategy implements Strategy {
     }
 
     public Point rotate(double angle) {
-      double sin = Math.sin(angle);
-      double cos = Math.cos(angle);
+      double sin = FastMath.sin(angle);
+      double cos = FastMath.cos(angle);
       return new Point(x * cos - y * sin, y * cos + x * sin);
     }
 
     public double getAngle() {
-      return Math.atan2(y, x);
+      return FastMath.atan2(y, x);
+    }
+  }
+
+  /**
+   * A layer of the {@link Square} grid kept in tiles of {@link #TILE_SIZE} by {@link #TILE_SIZE}
+   * squares. A tile is allocated when one of its squares is first set and kept from then on, so
+   * memory follows the parts of the map that have been used rather than the map size and {@link
+   * #SQUARE_CRUDENESS}. Only the tiles set since the last {@link #clear} are cleared and walked.
+   * The grid reaches a tile past each edge of the map, where footprints of units on the edge go;
+   * squares farther off read as empty and are not set.
+   */
+  abstract static class TileGrid {
+
+    static final int TILE_SHIFT = 5;
+    static final int TILE_SIZE = 1 << TILE_SHIFT;
+    static final int TILE_AREA = TILE_SIZE * TILE_SIZE;
+    private static final int TILE_MASK = TILE_SIZE - 1;
+
+    private final int size;
+    private final int tileColumns;
+    private final boolean[] isWritten;
+    private final int[] written;
+    private int writtenCount;
+    private int allocated;
+
+    TileGrid(double mapSize) {
+      tileColumns = (((int) Math.ceil(mapSize / SQUARE_CRUDENESS) + TILE_MASK) >> TILE_SHIFT) + 2;
+      size = tileColumns * TILE_SIZE;
+      isWritten = new boolean[tileColumns * tileColumns];
+      written = new int[isWritten.length];
+    }
+
+    final int getTileCount() {
+      return isWritten.length;
+    }
+
+    /** The tile of the square, or -1 off the grid. */
+    final int getTile(Square square) {
+      int p = square.getP() + TILE_SIZE;
+      int q = square.getQ() + TILE_SIZE;
+      if (p < 0 || p >= size || q < 0 || q >= size) {
+        return -1;
+      }
+      return (q >> TILE_SHIFT) * tileColumns + (p >> TILE_SHIFT);
+    }
+
+    /** The index of the square within its tile, which the margin of a tile does not change. */
+    static int getCell(Square square) {
+      return (square.getQ() & TILE_MASK) << TILE_SHIFT | (square.getP() & TILE_MASK);
+    }
+
+    final Square getSquare(int tile, int cell) {
+      return new Square(
+          ((tile % tileColumns - 1) << TILE_SHIFT) + (cell & TILE_MASK),
+          ((tile / tileColumns - 1) << TILE_SHIFT) + (cell >> TILE_SHIFT));
+    }
+
+    /** Allocates the tile unless it is, and remembers it for {@link #clear}. */
+    final void write(int tile) {
+      if (isWritten[tile]) {
+        return;
+      }
+      isWritten[tile] = true;
+      written[writtenCount++] = tile;
+      if (!isAllocated(tile)) {
+        allocate(tile);
+        ++allocated;
+      }
+    }
+
+    /** Empties the grid, keeping its tiles. */
+    final void clear() {
+      for (int i = 0; i < writtenCount; ++i) {
+        clear(written[i]);
+        isWritten[written[i]] = false;
+      }
+      writtenCount = 0;
+    }
+
+    /** The tiles set since either grid was cleared, each once. */
+    final int[] getWrittenTiles(TileGrid other) {
+      int[] tiles = Arrays.copyOf(written, writtenCount + other.writtenCount);
+      int count = writtenCount;
+      for (int i = 0; i < other.writtenCount; ++i) {
+        if (!isWritten[other.written[i]]) {
+          tiles[count++] = other.written[i];
+        }
+      }
+      return Arrays.copyOf(tiles, count);
+    }
+
+    final int getAllocatedTileCount() {
+      return allocated;
+    }
+
+    /** The bytes of the tiles and of the tables of tiles. */
+    final long getBytes() {
+      return (long) allocated * getTileBytes() + (long) getTileCount() * (4 + 4 + 1);
+    }
+
+    abstract boolean isAllocated(int tile);
+
+    abstract void allocate(int tile);
+
+    abstract void clear(int tile);
+
+    abstract int getTileBytes();
+  }
+
+  /** A set of squares on a {@link TileGrid}, with a bit per square. */
+  static final class BitGrid extends TileGrid {
+
+    private static final int TILE_WORDS = TILE_AREA / 64;
+
+    private final long[][] tiles;
+
+    BitGrid(double mapSize) {
+      super(mapSize);
+      tiles = new long[getTileCount()][];
+    }
+
+    boolean contains(Square square) {
+      int tile = getTile(square);
+      if (tile == -1 || tiles[tile] == null) {
+        return false;
+      }
+      int cell = getCell(square);
+      return (tiles[tile][cell >> 6] & (1L << cell)) != 0;
+    }
+
+    void add(Square square) {
+      int tile = getTile(square);
+      if (tile == -1) {
+        return;
+      }
+      write(tile);
+      int cell = getCell(square);
+      tiles[tile][cell >> 6] |= 1L << cell;
+    }
+
+    void addAll(List<Square> squares) {
+      for (Square square : squares) {
+        add(square);
+      }
+    }
+
+    void forEach(Consumer<Square> action) {
+      forEachBit(getWrittenTiles(this), null, action);
+    }
+
+    /** Calls the action with the squares in only one of the grids. */
+    void forEachDifference(BitGrid other, Consumer<Square> action) {
+      forEachBit(getWrittenTiles(other), other, action);
+    }
+
+    private void forEachBit(int[] writtenTiles, BitGrid other, Consumer<Square> action) {
+      for (int tile : writtenTiles) {
+        for (int word = 0; word < TILE_WORDS; ++word) {
+          long bits = getWord(tile, word) ^ (other == null ? 0 : other.getWord(tile, word));
+          while (bits != 0) {
+            action.accept(getSquare(tile, (word << 6) + Long.numberOfTrailingZeros(bits)));
+            bits &= bits - 1;
+          }
+        }
+      }
+    }
+
+    private long getWord(int tile, int word) {
+      return tiles[tile] == null ? 0 : tiles[tile][word];
+    }
+
+    @Override
+    boolean isAllocated(int tile) {
+      return tiles[tile] != null;
+    }
+
+    @Override
+    void allocate(int tile) {
+      tiles[tile] = new long[TILE_WORDS];
+    }
+
+    @Override
+    void clear(int tile) {
+      Arrays.fill(tiles[tile], 0);
+    }
+
+    @Override
+    int getTileBytes() {
+      return TILE_WORDS * 8;
+    }
+  }
+
+  /** A number per square on a {@link TileGrid}, 0 by default. */
+  static final class IntGrid extends TileGrid {
+
+    private final int[][] tiles;
+
+    IntGrid(double mapSize) {
+      super(mapSize);
+      tiles = new int[getTileCount()][];
+    }
+
+    int get(Square square) {
+      int tile = getTile(square);
+      return tile == -1 || tiles[tile] == null ? 0 : tiles[tile][getCell(square)];
+    }
+
+    void add(Square square, int delta) {
+      int tile = getTile(square);
+      if (tile != -1) {
+        write(tile);
+        tiles[tile][getCell(square)] += delta;
+      }
+    }
+
+    void set(Square square, int value) {
+      int tile = getTile(square);
+      if (tile != -1) {
+        write(tile);
+        tiles[tile][getCell(square)] = value;
+      }
+    }
+
+    /** Calls the action with the squares whose numbers differ between the grids. */
+    void forEachDifference(IntGrid other, Consumer<Square> action) {
+      for (int tile : getWrittenTiles(other)) {
+        for (int cell = 0; cell < TILE_AREA; ++cell) {
+          if (get(tile, cell) != other.get(tile, cell)) {
+            action.accept(getSquare(tile, cell));
+          }
+        }
+      }
+    }
+
+    /** Calls the action with the squares whose number is not 0. */
+    void forEachNonZero(Consumer<Square> action) {
+      for (int tile : getWrittenTiles(this)) {
+        for (int cell = 0; cell < TILE_AREA; ++cell) {
+          if (tiles[tile][cell] != 0) {
+            action.accept(getSquare(tile, cell));
+          }
+        }
+      }
+    }
+
+    private int get(int tile, int cell) {
+      return tiles[tile] == null ? 0 : tiles[tile][cell];
+    }
+
+    @Override
+    boolean isAllocated(int tile) {
+      return tiles[tile] != null;
+    }
+
+    @Override
+    void allocate(int tile) {
+      tiles[tile] = new int[TILE_AREA];
+    }
+
+    @Override
+    void clear(int tile) {
+      Arrays.fill(tiles[tile], 0);
+    }
+
+    @Override
+    int getTileBytes() {
+      return TILE_AREA * 4;
+    }
+  }
+
+  /** An object per square on a {@link TileGrid}, null by default. */
+  static final class ObjectGrid<T> extends TileGrid {
+
+    private final Object[][] tiles;
+
+    ObjectGrid(double mapSize) {
+      super(mapSize);
+      tiles = new Object[getTileCount()][];
+    }
+
+    @SuppressWarnings("unchecked")
+    T get(Square square) {
+      int tile = getTile(square);
+      return tile == -1 || tiles[tile] == null ? null : (T) tiles[tile][getCell(square)];
+    }
+
+    void put(Square square, T value) {
+      int tile = getTile(square);
+      if (tile != -1) {
+        write(tile);
+        tiles[tile][getCell(square)] = value;
+      }
+    }
+
+    /** Calls the action with the squares that have an object in only one of the grids. */
+    void forEachDifference(ObjectGrid<T> other, Consumer<Square> action) {
+      for (int tile : getWrittenTiles(other)) {
+        for (int cell = 0; cell < TILE_AREA; ++cell) {
+          if ((get(tile, cell) == null) != (other.get(tile, cell) == null)) {
+            action.accept(getSquare(tile, cell));
+          }
+        }
+      }
+    }
+
+    /** Calls the action with the squares that have an object. */
+    void forEachKey(Consumer<Square> action) {
+      for (int tile : getWrittenTiles(this)) {
+        for (int cell = 0; cell < TILE_AREA; ++cell) {
+          if (tiles[tile][cell] != null) {
+            action.accept(getSquare(tile, cell));
+          }
+        }
+      }
+    }
+
+    private Object get(int tile, int cell) {
+      return tiles[tile] == null ? null : tiles[tile][cell];
+    }
+
+    @Override
+    boolean isAllocated(int tile) {
+      return tiles[tile] != null;
+    }
+
+    @Override
+    void allocate(int tile) {
+      tiles[tile] = new Object[TILE_AREA];
+    }
+
+    @Override
+    void clear(int tile) {
+      Arrays.fill(tiles[tile], null);
+    }
+
+    @Override
+    int getTileBytes() {
+      // Compressed references.
+      return TILE_AREA * 4;
     }
   }
 
-  private static class Square {
+  static class Square {
 
     private final int p;
     private final int q;
@@ -0,0 +1,143 @@
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.util.Arrays;
+import java.util.List;
+import java.util.zip.CRC32;
+
+import model.Move;
+import model.PlayerContext;
+import model.Wizard;
+
+/**
+ * Feeds a game recorded by {@link Runner} (see {@link GameLog}) into fresh {@link MyStrategy}
+ * instances, the same way {@link Runner#run} does, without a simulator.
+ *
+ * <p>Usage: {@code java -cp out/strategy.jar Replay <game log> [repetitions]}. Prints the time per
+ * repetition and a checksum of all moves, which must be the same across runs of the same build.
+ */
+public final class Replay {
+
+  private final GameLog.Recording recording;
+  private Strategy[] strategies;
+
+  public Replay(GameLog.Recording recording) {
+    this.recording = recording;
+  }
+
+  public static void main(String[] args) throws IOException {
+    if (args.length < 1) {
+      System.err.println("usage: Replay <game log> [repetitions]");
+      System.exit(2);
+    }
+    GameLog.Recording recording = GameLog.read(args[0]);
+    int repetitions = args.length > 1 ? Integer.parseInt(args[1]) : 1;
+
+    Replay replay = new Replay(recording);
+    System.out.println(
+        "ticks = " + recording.getTicks().size() + ", team size = " + recording.getTeamSize());
+    for (int i = 0; i < repetitions; ++i) {
+      long startTime = System.nanoTime();
+      long checksum = replay.run(null, null);
+      long elapsedMilliseconds = (System.nanoTime() - startTime) / 1000000;
+      System.out.println(
+          "run " + i + ": " + elapsedMilliseconds + " ms, "
+              + "moves checksum " + Long.toHexString(checksum));
+      replay.finish();
+    }
+  }
+
+  /**
+   * Replays the whole recording with new strategies and returns a checksum of all moves. The
+   * arrays, if not null, receive the duration and the bytes allocated by the current thread for
+   * every tick (all wizards of the team).
+   *
+   * <p>Only {@link Strategy#move} and the {@link MyStrategy} constructors are used, so this also
+   * runs builds from {@code strategies/} (see {@link LatencyGate}).
+   */
+  public long run(long[] tickNanos, long[] tickAllocatedBytes) {
+    com.sun.management.ThreadMXBean threadMXBean =
+        tickAllocatedBytes != null
+            ? (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean()
+            : null;
+    long threadId = Thread.currentThread().getId();
+
+    int teamSize = recording.getTeamSize();
+    strategies = createStrategies(teamSize);
+
+    CRC32 checksum = new CRC32();
+    List<PlayerContext> ticks = recording.getTicks();
+    Move[] moves = new Move[teamSize];
+    for (int tick = 0; tick < ticks.size(); ++tick) {
+      PlayerContext playerContext = ticks.get(tick);
+      Wizard[] playerWizards = playerContext.getWizards();
+
+      long startAllocatedBytes =
+          threadMXBean != null ? threadMXBean.getThreadAllocatedBytes(threadId) : 0;
+      long startTime = tickNanos != null ? System.nanoTime() : 0;
+      for (int wizardIndex = 0; wizardIndex < teamSize; ++wizardIndex) {
+        Move move = new Move();
+        moves[wizardIndex] = move;
+        strategies[wizardIndex].move(
+            playerWizards[wizardIndex], playerContext.getWorld(), recording.getGame(), move);
+      }
+      if (tickNanos != null && tick < tickNanos.length) {
+        tickNanos[tick] = System.nanoTime() - startTime;
+      }
+      if (threadMXBean != null && tick < tickAllocatedBytes.length) {
+        tickAllocatedBytes[tick] =
+            threadMXBean.getThreadAllocatedBytes(threadId) - startAllocatedBytes;
+      }
+
+      for (Move move : moves) {
+        update(checksum, move);
+      }
+    }
+
+    return checksum.getValue();
+  }
+
+  /**
+   * Creates the strategies of the team around one {@link MyStrategy.TeamModel}, as {@link Runner}
+   * does. Builds from {@code strategies/} that predate the model get the constructor they have.
+   */
+  private Strategy[] createStrategies(int teamSize) {
+    Strategy[] result = new Strategy[teamSize];
+    MyStrategy.TeamModel team =
+        hasTeamModel() ? new MyStrategy.TeamModel(recording.getGame()) : null;
+    for (int i = 0; i < teamSize; ++i) {
+      result[i] = team != null ? new MyStrategy(team) : new MyStrategy();
+    }
+    return result;
+  }
+
+  /** Whether the loaded {@link MyStrategy} has the model, which old builds do not declare. */
+  private static boolean hasTeamModel() {
+    return Arrays.stream(MyStrategy.class.getDeclaredClasses())
+        .anyMatch(c -> c.getSimpleName().equals("TeamModel"));
+  }
+
+  /** Lets the strategies of the last {@link #run} dump their end-of-game statistics. */
+  public void finish() {
+    for (Strategy strategy : strategies) {
+      ((MyStrategy) strategy).gameFinished();
+    }
+  }
+
+  private static void update(CRC32 checksum, Move move) {
+    update(checksum, Double.doubleToLongBits(move.getSpeed()));
+    update(checksum, Double.doubleToLongBits(move.getStrafeSpeed()));
+    update(checksum, Double.doubleToLongBits(move.getTurn()));
+    update(checksum, move.getAction() == null ? -1 : move.getAction().ordinal());
+    update(checksum, Double.doubleToLongBits(move.getCastAngle()));
+    update(checksum, Double.doubleToLongBits(move.getMinCastDistance()));
+    update(checksum, Double.doubleToLongBits(move.getMaxCastDistance()));
+    update(checksum, move.getStatusTargetId());
+    update(checksum, move.getSkillToLearn() == null ? -1 : move.getSkillToLearn().ordinal());
+  }
+
+  private static void update(CRC32 checksum, long value) {
+    for (int i = 0; i < 8; ++i) {
+      checksum.update((int) (value >>> (i * 8)));
+    }
+  }
+}
@@ -38,16 +38,23 @@ public final class Runner {
   }
 
   public void run() throws IOException {
+    GameLog.Writer recorder = null;
     try {
       remoteProcessClient.writeToken(token);
       remoteProcessClient.writeProtocolVersion();
       int teamSize = remoteProcessClient.readTeamSize();
       Game game = remoteProcessClient.readGameContext();
 
+      String recordPath = System.getProperty("record");
+      if (recordPath != null && !recordPath.isEmpty()) {
+        recorder = new GameLog.Writer(recordPath, teamSize, game);
+      }
+
       Strategy[] strategies = new Strategy[teamSize];
 
+      MyStrategy.TeamModel team = new MyStrategy.TeamModel(game);
       for (int strategyIndex = 0; strategyIndex < teamSize; ++strategyIndex) {
-        strategies[strategyIndex] = new MyStrategy();
+        strategies[strategyIndex] = new MyStrategy(team);
       }
 
       PlayerContext playerContext;
@@ -58,6 +65,10 @@ public final class Runner {
           break;
         }
 
+        if (recorder != null) {
+          recorder.writePlayerContext(playerContext);
+        }
+
         Move[] moves = new Move[teamSize];
 
         for (int wizardIndex = 0; wizardIndex < teamSize; ++wizardIndex) {
@@ -71,8 +82,20 @@ public final class Runner {
 
         remoteProcessClient.writeMoves(moves);
       }
+
+      for (Strategy strategy : strategies) {
+        if (strategy instanceof MyStrategy) {
+          ((MyStrategy) strategy).gameFinished();
+        }
+      }
     } finally {
-      remoteProcessClient.close();
+      try {
+        if (recorder != null) {
+          recorder.close();
+        }
+      } finally {
+        remoteProcessClient.close();
+      }
     }
   }
 }
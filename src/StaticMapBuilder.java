@@ -0,0 +1,33 @@
+import java.io.IOException;
+import java.util.List;
+
+import model.World;
+
+/**
+ * Writes the {@link MyStrategy.StaticMap} of a recorded game (see {@link GameLog}) ahead of time,
+ * so that a strategy started with {@code -Dstatic.map=<file>} maps it instead of building it on
+ * the first tick.
+ *
+ * <p>Usage: {@code java -cp out/strategy.jar StaticMapBuilder <game log> <static map>}. Uses the
+ * buildings of the first recorded tick and overwrites the file.
+ */
+public final class StaticMapBuilder {
+
+  public static void main(String[] args) throws IOException {
+    if (args.length < 2) {
+      System.err.println("usage: StaticMapBuilder <game log> <static map>");
+      System.exit(2);
+    }
+    GameLog.Recording recording = GameLog.read(args[0]);
+    if (recording.getTicks().isEmpty()) {
+      System.err.println("StaticMapBuilder: " + args[0] + " has no ticks");
+      System.exit(1);
+    }
+    World world = recording.getTicks().get(0).getWorld();
+
+    MyStrategy.TeamModel team = new MyStrategy.TeamModel(recording.getGame());
+    List<MyStrategy.StaticMap.BuildingSpec> buildings = team.getBuildingLayout(world);
+    MyStrategy.StaticMap.build(recording.getGame(), buildings, team).write(args[1]);
+    System.out.println(buildings.size() + " buildings written to " + args[1]);
+  }
+}
@@ -0,0 +1,108 @@
+import jdk.incubator.vector.DoubleVector;
+import jdk.incubator.vector.VectorMask;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * {@link MyStrategy.RangeKernels} on the widest vectors the CPU has. Needs {@code --add-modules
+ * jdk.incubator.vector} both to compile and to run; without it MyStrategy falls back to {@link
+ * MyStrategy.ScalarRangeKernels}, which gives the same results.
+ */
+public class VectorRangeKernels implements MyStrategy.RangeKernels {
+
+  private static final VectorSpecies<Double> SPECIES = DoubleVector.SPECIES_PREFERRED;
+
+  public int selectInRange(
+      double[] x,
+      double[] y,
+      double[] range,
+      double extra,
+      int count,
+      double px,
+      double py,
+      int[] out) {
+    int selected = 0;
+    int i = 0;
+    for (int bound = SPECIES.loopBound(count); i < bound; i += SPECIES.length()) {
+      VectorMask<Double> inRange = inRange(x, y, range, extra, i, px, py);
+      if (!inRange.anyTrue()) {
+        continue;
+      }
+      for (long lanes = inRange.toLong(); lanes != 0; lanes &= lanes - 1) {
+        out[selected++] = i + Long.numberOfTrailingZeros(lanes);
+      }
+    }
+    for (; i < count; ++i) {
+      if (isInRange(x, y, range, extra, i, px, py)) {
+        out[selected++] = i;
+      }
+    }
+    return selected;
+  }
+
+  public boolean anyInRange(
+      double[] x, double[] y, double[] range, double extra, int count, double px, double py) {
+    int i = 0;
+    for (int bound = SPECIES.loopBound(count); i < bound; i += SPECIES.length()) {
+      if (inRange(x, y, range, extra, i, px, py).anyTrue()) {
+        return true;
+      }
+    }
+    for (; i < count; ++i) {
+      if (isInRange(x, y, range, extra, i, px, py)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  public int nearest(double[] x, double[] y, int count, double px, double py) {
+    int nearest = -1;
+    double nearestDistance = Double.POSITIVE_INFINITY;
+    int i = 0;
+    for (int bound = SPECIES.loopBound(count); i < bound; i += SPECIES.length()) {
+      DoubleVector distances = distanceSquared(x, y, i, px, py);
+      // Only a block with a strictly closer unit is reduced, which keeps the first of equals.
+      if (distances.lt(nearestDistance).anyTrue()) {
+        nearestDistance = distances.reduceLanes(VectorOperators.MIN);
+        nearest = i + distances.eq(nearestDistance).firstTrue();
+      }
+    }
+    for (; i < count; ++i) {
+      double distance = distanceSquared(x[i], y[i], px, py);
+      if (distance < nearestDistance) {
+        nearest = i;
+        nearestDistance = distance;
+      }
+    }
+    return nearest;
+  }
+
+  private static VectorMask<Double> inRange(
+      double[] x, double[] y, double[] range, double extra, int i, double px, double py) {
+    DoubleVector r =
+        range == null
+            ? DoubleVector.broadcast(SPECIES, extra)
+            : DoubleVector.fromArray(SPECIES, range, i).add(extra);
+    return distanceSquared(x, y, i, px, py).lt(r.mul(r));
+  }
+
+  private static DoubleVector distanceSquared(
+      double[] x, double[] y, int i, double px, double py) {
+    DoubleVector dx = DoubleVector.fromArray(SPECIES, x, i).sub(px);
+    DoubleVector dy = DoubleVector.fromArray(SPECIES, y, i).sub(py);
+    return dx.mul(dx).add(dy.mul(dy));
+  }
+
+  private static boolean isInRange(
+      double[] x, double[] y, double[] range, double extra, int i, double px, double py) {
+    double r = range == null ? extra : range[i] + extra;
+    return distanceSquared(x[i], y[i], px, py) < r * r;
+  }
+
+  private static double distanceSquared(double x, double y, double px, double py) {
+    double dx = x - px;
+    double dy = y - py;
+    return dx * dx + dy * dy;
+  }
+}